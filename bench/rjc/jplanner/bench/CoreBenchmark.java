@@ -0,0 +1,351 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import rjc.jplanner.XmlLabels;
+import rjc.jplanner.model.Calendar;
+import rjc.jplanner.model.DateTime;
+import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.Predecessors;
+import rjc.jplanner.model.ResourceWork;
+import rjc.jplanner.model.TimeSpan;
+
+/*************************************************************************************************/
+/******************* Micro-benchmarks of the scheduling, calendar and XML core *******************/
+/*************************************************************************************************/
+
+// usage: CoreBenchmark [-tasks n,...] [-density d,...] [-calendar simple|complex,...] [-time ms] [benchmark ...]
+// each benchmark (default all) is run against a generated plan for every combination of task count,
+// dependency density (average predecessors per task) and calendar complexity, reporting the best and
+// mean time per operation over the measured iterations
+
+public class CoreBenchmark
+{
+  public static final String   SIMPLE     = "simple";   // standard calendar with a few holidays
+  public static final String   COMPLEX    = "complex";  // ten day cycle of mixed day-types and exceptions
+
+  public static final String[] BENCHMARKS = { "schedule", "workTimeSpan", "roundUp", "roundDown", "workBetween",
+      "predecessors", "available", "saveXML", "loadXML" };
+
+  private static final int     WARMUP     = 2;          // iterations run before measuring
+  private static final int     MEASURE    = 5;          // iterations measured
+  private static final int     SAMPLES    = 1000;       // operations per call for the finer grained benchmarks
+
+  private static long          time       = 250000000L; // minimum nanoseconds for each iteration
+  private static long          sink;                    // accumulates results so work cannot be optimised away
+  private static PrintStream   out        = System.out; // results stream, System.out is silenced while measuring
+
+  /******************************************** main *********************************************/
+  public static void main( String[] args ) throws XMLStreamException
+  {
+    // parse options, any other arguments are the benchmarks to run
+    int[] counts = { 1000, 10000 };
+    double[] densities = { 1.0 };
+    String[] calendars = { SIMPLE, COMPLEX };
+    ArrayList<String> names = new ArrayList<String>();
+    for ( int i = 0; i < args.length; i++ )
+      switch ( args[i] )
+      {
+        case "-tasks":
+          counts = Arrays.stream( args[++i].split( "," ) ).mapToInt( Integer::parseInt ).toArray();
+          break;
+        case "-density":
+          densities = Arrays.stream( args[++i].split( "," ) ).mapToDouble( Double::parseDouble ).toArray();
+          break;
+        case "-calendar":
+          calendars = args[++i].split( "," );
+          break;
+        case "-time":
+          time = Long.parseLong( args[++i] ) * 1000000L;
+          break;
+        default:
+          if ( !Arrays.asList( BENCHMARKS ).contains( args[i] ) )
+            throw new IllegalArgumentException( "Unknown benchmark '" + args[i] + "'" );
+          names.add( args[i] );
+          break;
+      }
+
+    if ( names.isEmpty() )
+      names.addAll( Arrays.asList( BENCHMARKS ) );
+
+    // model trace output would swamp the results
+    System.setOut( new PrintStream( new OutputStream()
+    {
+      @Override
+      public void write( int b )
+      {
+      }
+    } ) );
+
+    out.printf( "%-16s %8s %8s %-8s %14s %14s%n", "benchmark", "tasks", "density", "calendar", "best ns/op",
+        "mean ns/op" );
+    for ( int count : counts )
+      for ( double density : densities )
+        for ( String calendar : calendars )
+        {
+          Plan plan = generate( count, density, calendar );
+          plan.schedule();
+          String params = String.format( "%8d %8.2f %-8s", count, density, calendar );
+          for ( String name : names )
+            run( name, plan, params );
+        }
+
+    out.println( "Checksum " + sink );
+  }
+
+  /********************************************* run *********************************************/
+  private static void run( String name, Plan plan, String params ) throws XMLStreamException
+  {
+    // run named benchmark against plan, with same inputs every time
+    Random random = new Random( 2 );
+    Calendar cal = plan.calendar();
+    long[] instants = instants( plan, random );
+
+    switch ( name )
+    {
+      case "schedule":
+        measure( name, params, 1, () ->
+        {
+          plan.schedule();
+          return plan.end().milliseconds();
+        } );
+        break;
+
+      case "workTimeSpan":
+        for ( char units : TimeSpan.UNITS.toCharArray() )
+          workTimeSpan( cal, units, instants, params, random );
+        break;
+
+      case "roundUp":
+        measure( name, params, instants.length, () ->
+        {
+          long sum = 0;
+          for ( long dt : instants )
+            sum += cal.roundUp( dt );
+          return sum;
+        } );
+        break;
+
+      case "roundDown":
+        measure( name, params, instants.length, () ->
+        {
+          long sum = 0;
+          for ( long dt : instants )
+            sum += cal.roundDown( dt );
+          return sum;
+        } );
+        break;
+
+      case "workBetween":
+        long[] ends = instants( plan, random );
+        measure( name, params, instants.length, () ->
+        {
+          double sum = 0.0;
+          for ( int i = 0; i < instants.length; i++ )
+            sum += cal.workBetween( Math.min( instants[i], ends[i] ), Math.max( instants[i], ends[i] ) );
+          return (long) sum;
+        } );
+        break;
+
+      case "predecessors":
+        ArrayList<String> texts = new ArrayList<String>();
+        for ( int id = 1; id < plan.tasks.size(); id++ )
+          if ( plan.task( id ).predecessors().count() > 0 )
+            texts.add( plan.task( id ).predecessors().toString() );
+        measure( name, params, Math.max( 1, texts.size() ), () ->
+        {
+          long sum = 0;
+          for ( String text : texts )
+            sum += new Predecessors( plan, text ).count();
+          return sum;
+        } );
+        break;
+
+      case "available":
+        ResourceWork[] works = new ResourceWork[instants.length];
+        DateTime[] from = new DateTime[instants.length];
+        for ( int i = 0; i < instants.length; i++ )
+        {
+          works[i] = plan.resource( 1 + random.nextInt( plan.resources.size() - 1 ) ).m_work;
+          from[i] = new DateTime( instants[i] );
+        }
+        measure( name, params, instants.length, () ->
+        {
+          long sum = 0;
+          for ( int i = 0; i < works.length; i++ )
+            sum += works[i].available( from[i] ).dt.milliseconds();
+          return sum;
+        } );
+        break;
+
+      case "saveXML":
+        measure( name, params, 1, () -> save( plan ).size() );
+        break;
+
+      case "loadXML":
+        byte[] xml = save( plan ).toByteArray();
+        measure( name, params, 1, () -> load( xml ).tasks.size() );
+        break;
+
+      default:
+        throw new IllegalArgumentException( "Unknown benchmark '" + name + "'" );
+    }
+  }
+
+  /**************************************** workTimeSpan *****************************************/
+  private static void workTimeSpan( Calendar cal, char units, long[] instants, String params, Random random )
+  {
+    // measure working forward and backward from instants by spans of the specified units
+    double range = units == TimeSpan.UNIT_SECONDS ? 100000.0
+        : units == TimeSpan.UNIT_MINUTES ? 5000.0
+            : units == TimeSpan.UNIT_HOURS ? 500.0
+                : units == TimeSpan.UNIT_DAYS ? 100.0
+                    : units == TimeSpan.UNIT_WEEKS ? 20.0 : units == TimeSpan.UNIT_MONTHS ? 12.0 : 3.0;
+    double[] numbers = new double[instants.length];
+    for ( int i = 0; i < numbers.length; i++ )
+      numbers[i] = ( random.nextDouble() * 2.0 - 1.0 ) * range;
+
+    measure( "workTimeSpan " + units, params, instants.length, () ->
+    {
+      long sum = 0;
+      for ( int i = 0; i < instants.length; i++ )
+        sum += cal.workTimeSpan( instants[i], numbers[i], units );
+      return sum;
+    } );
+  }
+
+  /******************************************* measure *******************************************/
+  private static void measure( String name, String params, int ops, LongSupplier operation )
+  {
+    // call operation repeatedly for each iteration, and report nanoseconds per operation
+    double best = Double.MAX_VALUE;
+    double total = 0.0;
+    for ( int iteration = 0; iteration < WARMUP + MEASURE; iteration++ )
+    {
+      long calls = 0;
+      long elapsed = 0;
+      long start = System.nanoTime();
+      while ( elapsed < time )
+      {
+        sink += operation.getAsLong();
+        calls++;
+        elapsed = System.nanoTime() - start;
+      }
+
+      double perOp = (double) elapsed / calls / ops;
+      if ( iteration >= WARMUP )
+      {
+        best = Math.min( best, perOp );
+        total += perOp;
+      }
+    }
+
+    out.printf( "%-16s %s %14.1f %14.1f%n", name, params, best, total / MEASURE );
+  }
+
+  /****************************************** instants *******************************************/
+  private static long[] instants( Plan plan, Random random )
+  {
+    // return random epoch-ms spread over five years from plan start
+    long start = plan.start().milliseconds();
+    long[] instants = new long[SAMPLES];
+    for ( int i = 0; i < SAMPLES; i++ )
+      instants[i] = start + (long) ( random.nextDouble() * 5.0 * 365.0 * 86400000.0 );
+    return instants;
+  }
+
+  /****************************************** generate *******************************************/
+  private static Plan generate( int count, double density, String calendar )
+  {
+    // generate plan with predecessors averaging the density, complex calendar has mixed cycle and exceptions
+    PlanGenerator generator = new PlanGenerator( count, 1 );
+    generator.setFanIn( density );
+    if ( calendar.equals( COMPLEX ) )
+    {
+      generator.setCalendar( Calendar.DefaultCalendarTypes.FANCY );
+      generator.setExceptions( 600 );
+    }
+    else if ( !calendar.equals( SIMPLE ) )
+      throw new IllegalArgumentException( "Unknown calendar '" + calendar + "'" );
+
+    return generator.generate();
+  }
+
+  /******************************************** save *********************************************/
+  private static ByteArrayOutputStream save( Plan plan )
+  {
+    // save plan to XML in memory
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try
+    {
+      XMLStreamWriter xsw = XMLOutputFactory.newInstance().createXMLStreamWriter( output, XmlLabels.ENCODING );
+      xsw.writeStartDocument( XmlLabels.ENCODING, XmlLabels.VERSION );
+      xsw.writeStartElement( XmlLabels.XML_JPLANNER );
+      xsw.writeAttribute( XmlLabels.XML_FORMAT, XmlLabels.FORMAT );
+      if ( !plan.savePlan( xsw ) )
+        throw new XMLStreamException( "Failed to save plan" );
+      xsw.writeEndElement(); // XML_JPLANNER
+      xsw.writeEndDocument();
+      xsw.close();
+    }
+    catch ( XMLStreamException exception )
+    {
+      throw new IllegalStateException( exception );
+    }
+
+    return output;
+  }
+
+  /******************************************** load *********************************************/
+  private static Plan load( byte[] xml )
+  {
+    // load plan from XML in memory
+    Plan plan = new Plan();
+    try
+    {
+      XMLStreamReader xsr = XMLInputFactory.newInstance().createXMLStreamReader( new ByteArrayInputStream( xml ) );
+      while ( xsr.hasNext() && !xsr.isStartElement() )
+        xsr.next();
+      plan.loadXML( xsr, "benchmark", "" );
+      xsr.close();
+    }
+    catch ( XMLStreamException exception )
+    {
+      throw new IllegalStateException( exception );
+    }
+
+    return plan;
+  }
+
+}
@@ -0,0 +1,135 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.PlanBinaryReader;
+import rjc.jplanner.model.PlanBinaryWriter;
+
+/*************************************************************************************************/
+/******************************* Measures plan XML load throughput *******************************/
+/*************************************************************************************************/
+
+// usage: LoadBenchmark [-runs n] [-lazy] file ...
+// each plan XML file is read into memory then loaded repeatedly, reporting the best load time and the
+// throughput in tasks per second, so the file system does not affect the measurement, binary plan files
+// are memory-mapped by each load instead so repeated loads measure them from the page cache, with -lazy
+// binary plans are loaded without creating task objects, also reports heap used by the last plan loaded
+
+public class LoadBenchmark
+{
+  /******************************************** main *********************************************/
+  public static void main( String[] args ) throws IOException, XMLStreamException
+  {
+    // parse options, any other arguments are files to load
+    int runs = 5;
+    boolean lazy = false;
+    PrintStream out = System.out;
+    for ( int i = 0; i < args.length; i++ )
+    {
+      if ( args[i].equals( "-runs" ) )
+      {
+        runs = Integer.parseInt( args[++i] );
+        continue;
+      }
+      if ( args[i].equals( "-lazy" ) )
+      {
+        lazy = true;
+        continue;
+      }
+
+      File file = new File( args[i] );
+      boolean binary = file.getName().endsWith( PlanBinaryWriter.EXTENSION );
+      byte[] xml = binary ? null : Files.readAllBytes( file.toPath() );
+
+      // model trace output would swamp the results
+      System.setOut( new PrintStream( new OutputStream()
+      {
+        @Override
+        public void write( int b )
+        {
+        }
+      } ) );
+
+      long best = Long.MAX_VALUE;
+      long heap = usedHeap();
+      Plan plan = null;
+      for ( int run = 0; run < runs; run++ )
+      {
+        plan = null;
+        long start = System.nanoTime();
+        plan = binary ? loadBinary( file, lazy ) : load( xml, file );
+        best = Math.min( best, System.nanoTime() - start );
+        if ( plan.errors() != null )
+          throw new XMLStreamException( "Plan '" + file.getPath() + "' not valid (" + plan.errors() + ")" );
+      }
+      heap = usedHeap() - heap;
+
+      System.setOut( out );
+      int tasks = plan.tasks.size();
+      out.printf( "%s: %d tasks, %d bytes, best of %d loads %.3f seconds, %.0f tasks/second, %d MB heap%n",
+          file.getPath(), tasks, file.length(), runs, best / 1e9, tasks / ( best / 1e9 ), heap >> 20 );
+    }
+  }
+
+  /******************************************** load *********************************************/
+  private static Plan load( byte[] xml, File file ) throws XMLStreamException
+  {
+    // load plan from XML file contents the same way as the application
+    XMLStreamReader xsr = XMLInputFactory.newInstance().createXMLStreamReader( new ByteArrayInputStream( xml ) );
+    while ( xsr.hasNext() && !xsr.isStartElement() )
+      xsr.next();
+
+    Plan plan = new Plan();
+    plan.loadXML( xsr, file.getName(), file.getParent() );
+    xsr.close();
+    return plan;
+  }
+
+  /***************************************** loadBinary ******************************************/
+  private static Plan loadBinary( File file, boolean lazy ) throws IOException
+  {
+    // load plan from memory-mapped binary file
+    Plan plan = new Plan();
+    plan.loadBinary( new PlanBinaryReader( file ), file.getName(), file.getParent(), lazy );
+    return plan;
+  }
+
+  /****************************************** usedHeap *******************************************/
+  private static long usedHeap()
+  {
+    // return bytes of heap in use after garbage collection
+    Runtime runtime = Runtime.getRuntime();
+    for ( int gc = 0; gc < 3; gc++ )
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
@@ -0,0 +1,147 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import rjc.jplanner.model.DateTime;
+import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.Predecessors;
+import rjc.jplanner.model.Resource;
+import rjc.jplanner.model.ResourceWork;
+import rjc.jplanner.model.Task;
+import rjc.jplanner.model.TaskResources;
+import rjc.jplanner.model.TaskType;
+import rjc.jplanner.model.TimeSpan;
+
+/*************************************************************************************************/
+/******************* Compares sequential and parallel scheduling of a large plan *****************/
+/*************************************************************************************************/
+
+public class ParallelScheduleBenchmark
+{
+  /******************************************** main *********************************************/
+  public static void main( String[] args )
+  {
+    // arguments are number of workstreams, tasks per workstream, resources per workstream, runs
+    int streams = args.length > 0 ? Integer.parseInt( args[0] ) : 200;
+    int tasks = args.length > 1 ? Integer.parseInt( args[1] ) : 250;
+    int resources = args.length > 2 ? Integer.parseInt( args[2] ) : 10;
+    int runs = args.length > 3 ? Integer.parseInt( args[3] ) : 5;
+
+    Plan plan = new Plan();
+    plan.initialise();
+    generate( plan, streams, tasks, resources, new Random( 1 ) );
+    System.out.println( "Plan of " + streams * tasks + " tasks and " + streams * resources + " resources in "
+        + streams + " workstreams" );
+
+    // best time of each mode, checking every parallel schedule matches the sequential one exactly
+    long sequential = Long.MAX_VALUE;
+    long parallel = Long.MAX_VALUE;
+    ArrayList<Long> expected = null;
+    for ( int run = 0; run < runs; run++ )
+    {
+      long start = System.nanoTime();
+      plan.schedule( false );
+      sequential = Math.min( sequential, System.nanoTime() - start );
+      if ( expected == null )
+        expected = results( plan );
+
+      start = System.nanoTime();
+      plan.schedule( true );
+      parallel = Math.min( parallel, System.nanoTime() - start );
+      if ( !expected.equals( results( plan ) ) )
+        throw new IllegalStateException( "Parallel schedule differs from sequential schedule" );
+    }
+
+    System.out.printf( "Sequential %.1f ms, parallel %.1f ms on %d processors, speedup %.2f%n", sequential / 1e6,
+        parallel / 1e6, Runtime.getRuntime().availableProcessors(), (double) sequential / parallel );
+  }
+
+  /****************************************** generate *******************************************/
+  private static void generate( Plan plan, int streams, int tasks, int resources, Random random )
+  {
+    // generate workstreams that share no resources and have no predecessors between them
+    plan.setStart( new DateTime( "2016-01-04T09:00:00.000" ) );
+    while ( plan.resources.size() <= streams * resources )
+      plan.resources.add( new Resource( plan ) );
+    while ( plan.tasks.size() <= streams * tasks )
+      plan.tasks.add( new Task( plan ) );
+
+    for ( int stream = 0; stream < streams; stream++ )
+    {
+      for ( int r = 1; r <= resources; r++ )
+      {
+        Resource res = plan.resource( stream * resources + r );
+        res.setValue( Resource.SECTION_INITIALS, "R" + stream + "." + r );
+        res.setValue( Resource.SECTION_GROUP, "G" + stream );
+        res.setValue( Resource.SECTION_AVAIL, (double) ( 1 + random.nextInt( 2 ) ) );
+      }
+
+      int first = stream * tasks + 1;
+      for ( int id = first; id < first + tasks; id++ )
+      {
+        Task task = plan.task( id );
+        task.setValue( Task.SECTION_TITLE, "Task " + id );
+        if ( random.nextInt( 3 ) > 0 )
+        {
+          task.setValue( Task.SECTION_TYPE, new TaskType( TaskType.ASAP_FWORK ) );
+          task.setValue( Task.SECTION_WORK, new TimeSpan( ( 1 + random.nextInt( 8 ) ) + "d" ) );
+        }
+        else
+          task.setValue( Task.SECTION_DURATION, new TimeSpan( random.nextInt( 5 ) + "d" ) );
+
+        String tag = random.nextInt( 5 ) == 0 ? "G" + stream + "[1.5]"
+            : "R" + stream + "." + ( 1 + random.nextInt( resources ) );
+        task.setValue( Task.SECTION_RES, new TaskResources( tag ) );
+        task.setValue( Task.SECTION_PRIORITY, random.nextInt( 5 ) * 100 );
+        if ( id > first && random.nextInt( 3 ) == 0 )
+          task.setValue( Task.SECTION_PRED, new Predecessors( plan, "" + ( first + random.nextInt( id - first ) ) ) );
+      }
+    }
+  }
+
+  /******************************************* results *******************************************/
+  private static ArrayList<Long> results( Plan plan )
+  {
+    // return every scheduled task start and end, and every resource allocation change
+    ArrayList<Long> results = new ArrayList<Long>();
+    for ( int id = 1; id < plan.tasks.size(); id++ )
+    {
+      Task task = plan.task( id );
+      results.add( task.start().milliseconds() );
+      results.add( task.end().milliseconds() );
+      results.add( Double.doubleToLongBits( task.work().number() ) );
+    }
+
+    for ( int id = 1; id < plan.resources.size(); id++ )
+    {
+      ResourceWork work = plan.resource( id ).m_work;
+      for ( long at = work.nextChange( Long.MIN_VALUE ); at != Long.MAX_VALUE; at = work.nextChange( at ) )
+      {
+        results.add( at );
+        results.add( Double.doubleToLongBits( work.allocated( at ) ) );
+      }
+    }
+
+    return results;
+  }
+
+}
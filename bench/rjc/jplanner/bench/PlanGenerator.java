@@ -0,0 +1,392 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Random;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import rjc.jplanner.XmlFileWriter;
+import rjc.jplanner.XmlLabels;
+import rjc.jplanner.model.Calendar;
+import rjc.jplanner.model.Calendar.DefaultCalendarTypes;
+import rjc.jplanner.model.Date;
+import rjc.jplanner.model.DateTime;
+import rjc.jplanner.model.Day;
+import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.Predecessors;
+import rjc.jplanner.model.Resource;
+import rjc.jplanner.model.Task;
+import rjc.jplanner.model.TaskResources;
+import rjc.jplanner.model.TaskType;
+import rjc.jplanner.model.TimeSpan;
+
+/*************************************************************************************************/
+/*************************** Seeded generator of large synthetic plans ***************************/
+/*************************************************************************************************/
+
+// usage: PlanGenerator [-seed n] [-tasks n] [-depth n] [-fanin f] [-fanout n] [-types fs,ss,ff,sf] [-lags p]
+//                      [-resources n] [-pool n] [-calendar standard|fulltime|fancy] [-exceptions n] file
+// same seed and settings always generate the same plan, which is written to file as JPlanner XML
+
+public class PlanGenerator
+{
+  private static final String[] TYPES  = { Predecessors.TYPE_FINISH_START, Predecessors.TYPE_START_START,
+      Predecessors.TYPE_FINISH_FINISH, Predecessors.TYPE_START_FINISH };
+  private static final int      WINDOW = 100; // predecessors are chosen from this many preceding tasks
+
+  private long                  m_seed;       // seed for random choices
+  private int                   m_tasks;      // number of tasks
+  private int                   m_depth;      // maximum summary nesting depth, zero for no summaries
+  private double                m_fanIn;      // average number of predecessors for each task
+  private int                   m_fanOut;     // maximum number of successors for each task
+  private double[]              m_types;      // relative weights of FS, SS, FF and SF predecessors
+  private double                m_lags;       // probability a predecessor has a lag
+  private int                   m_resources;  // number of resources, negative for one per ten tasks
+  private int                   m_pool;       // resources in each group, roles overlap groups
+  private DefaultCalendarTypes  m_calendar;   // plan default calendar
+  private int                   m_exceptions; // random exceptions added to every calendar
+
+  /***************************************** constructor *****************************************/
+  public PlanGenerator( int tasks, long seed )
+  {
+    // initialise private variables with moderate defaults
+    m_seed = seed;
+    m_tasks = tasks;
+    m_depth = 0;
+    m_fanIn = 1.0;
+    m_fanOut = 10;
+    m_types = new double[] { 0.7, 0.1, 0.1, 0.1 };
+    m_lags = 0.3;
+    m_resources = -1;
+    m_pool = 5;
+    m_calendar = DefaultCalendarTypes.STANDARD;
+    m_exceptions = 0;
+  }
+
+  /******************************************** main *********************************************/
+  public static void main( String[] args ) throws IOException, XMLStreamException
+  {
+    // parse options, then generate plan and write to file
+    PlanGenerator generator = new PlanGenerator( 1000, 1 );
+    File file = null;
+    for ( int i = 0; i < args.length; i++ )
+      switch ( args[i] )
+      {
+        case "-seed":
+          generator.m_seed = Long.parseLong( args[++i] );
+          break;
+        case "-tasks":
+          generator.m_tasks = Integer.parseInt( args[++i] );
+          break;
+        case "-depth":
+          generator.setDepth( Integer.parseInt( args[++i] ) );
+          break;
+        case "-fanin":
+          generator.setFanIn( Double.parseDouble( args[++i] ) );
+          break;
+        case "-fanout":
+          generator.setFanOut( Integer.parseInt( args[++i] ) );
+          break;
+        case "-types":
+          String[] weights = args[++i].split( "," );
+          if ( weights.length != TYPES.length )
+            throw new IllegalArgumentException( "Types needs " + TYPES.length + " weights" );
+          double[] types = new double[TYPES.length];
+          for ( int t = 0; t < TYPES.length; t++ )
+            types[t] = Double.parseDouble( weights[t] );
+          generator.setTypes( types );
+          break;
+        case "-lags":
+          generator.setLags( Double.parseDouble( args[++i] ) );
+          break;
+        case "-resources":
+          generator.setResources( Integer.parseInt( args[++i] ) );
+          break;
+        case "-pool":
+          generator.setPool( Integer.parseInt( args[++i] ) );
+          break;
+        case "-calendar":
+          generator.setCalendar( DefaultCalendarTypes.valueOf( args[++i].toUpperCase() ) );
+          break;
+        case "-exceptions":
+          generator.setExceptions( Integer.parseInt( args[++i] ) );
+          break;
+        default:
+          file = new File( args[i] );
+          break;
+      }
+
+    if ( file == null )
+      throw new IllegalArgumentException( "No output file specified" );
+
+    long start = System.nanoTime();
+    Plan plan = generator.generate();
+    long generated = System.nanoTime();
+    long bytes = write( plan, file );
+    double seconds = ( System.nanoTime() - generated ) / 1e9;
+    System.err.printf( "Generated %d tasks in %.1f seconds, %d bytes written to '%s' in %.1f seconds"
+        + " (%.0f bytes/second)%n", generator.m_tasks, ( generated - start ) / 1e9, bytes, file.getPath(), seconds, bytes / seconds );
+  }
+
+  /****************************************** setDepth *******************************************/
+  public void setDepth( int depth )
+  {
+    m_depth = depth;
+  }
+
+  /****************************************** setFanIn *******************************************/
+  public void setFanIn( double fanIn )
+  {
+    m_fanIn = fanIn;
+  }
+
+  /****************************************** setFanOut ******************************************/
+  public void setFanOut( int fanOut )
+  {
+    m_fanOut = fanOut;
+  }
+
+  /****************************************** setTypes *******************************************/
+  public void setTypes( double[] weights )
+  {
+    m_types = weights.clone();
+  }
+
+  /******************************************* setLags *******************************************/
+  public void setLags( double probability )
+  {
+    m_lags = probability;
+  }
+
+  /**************************************** setResources *****************************************/
+  public void setResources( int resources )
+  {
+    m_resources = resources;
+  }
+
+  /******************************************* setPool *******************************************/
+  public void setPool( int pool )
+  {
+    m_pool = pool;
+  }
+
+  /***************************************** setCalendar *****************************************/
+  public void setCalendar( DefaultCalendarTypes type )
+  {
+    m_calendar = type;
+  }
+
+  /**************************************** setExceptions ****************************************/
+  public void setExceptions( int exceptions )
+  {
+    m_exceptions = exceptions;
+  }
+
+  /****************************************** generate *******************************************/
+  public Plan generate()
+  {
+    // generate new plan, calendars first as resources use them, then tasks which use resources
+    Random random = new Random( m_seed );
+    Plan plan = new Plan();
+    plan.initialise();
+    plan.setStart( new DateTime( "2016-01-04T09:00:00.000" ) );
+    plan.setCalendar( plan.calendar( m_calendar.ordinal() ) );
+
+    generateCalendars( plan, random );
+    generateResources( plan, random );
+    generateTasks( plan, random );
+    generatePredecessors( plan, random );
+
+    return plan;
+  }
+
+  /************************************** generateCalendars **************************************/
+  private void generateCalendars( Plan plan, Random random )
+  {
+    // add exceptions with random day-types to every calendar over the years following plan start
+    int days = Math.max( 3650, m_exceptions * 2 );
+    Date start = plan.start().date();
+    for ( int c = 0; c < plan.calendarsCount(); c++ )
+    {
+      Calendar cal = plan.calendar( c );
+      @SuppressWarnings( "unchecked" )
+      HashMap<Date, Day> exceptions = new HashMap<Date, Day>( (HashMap<Date, Day>) cal.getValue(
+          Calendar.SECTION_EXCEPTIONS ) );
+      for ( int e = 0; e < m_exceptions; e++ )
+        exceptions.put( start.plusDays( random.nextInt( days ) ), plan.day( random.nextInt( plan.daysCount() ) ) );
+      cal.setValue( Calendar.SECTION_EXCEPTIONS, exceptions );
+    }
+  }
+
+  /************************************** generateResources **************************************/
+  private void generateResources( Plan plan, Random random )
+  {
+    // resources are pooled in groups and organisations, with roles cutting across groups so tags overlap
+    int count = m_resources < 0 ? Math.max( 1, m_tasks / 10 ) : m_resources;
+    while ( plan.resources.size() <= count )
+      plan.resources.add( new Resource( plan ) );
+
+    for ( int r = 1; r <= count; r++ )
+    {
+      Resource res = plan.resource( r );
+      res.setValue( Resource.SECTION_INITIALS, "R" + r );
+      res.setValue( Resource.SECTION_GROUP, "G" + ( r - 1 ) / m_pool );
+      res.setValue( Resource.SECTION_ORG, "O" + ( r - 1 ) / ( m_pool * 10 ) );
+      res.setValue( Resource.SECTION_ROLE, "Role" + r % m_pool );
+      res.setValue( Resource.SECTION_AVAIL, (double) ( 1 + random.nextInt( 2 ) ) );
+      if ( random.nextInt( 5 ) == 0 )
+        res.setValue( Resource.SECTION_CALENDAR, plan.calendar( random.nextInt( plan.calendarsCount() ) ) );
+    }
+  }
+
+  /**************************************** generateTasks ****************************************/
+  private void generateTasks( Plan plan, Random random )
+  {
+    // tasks indented by random walk up to maximum depth, so task above each indented task is its summary
+    while ( plan.tasks.size() <= m_tasks )
+      plan.tasks.add( new Task( plan ) );
+
+    int resources = plan.resources.size() - 1;
+    int indent = 0;
+    for ( int id = 1; id <= m_tasks; id++ )
+    {
+      Task task = plan.task( id );
+      task.setValue( Task.SECTION_TITLE, "Task " + id );
+
+      int step = random.nextInt( 4 );
+      if ( step == 0 && indent < m_depth && id > 1 )
+        indent++;
+      else if ( step == 1 && indent > 0 )
+        indent -= 1 + random.nextInt( indent );
+      task.setIndent( indent );
+
+      if ( random.nextInt( 3 ) == 0 )
+      {
+        task.setValue( Task.SECTION_TYPE, new TaskType( TaskType.ASAP_FWORK ) );
+        task.setValue( Task.SECTION_WORK, new TimeSpan( ( 1 + random.nextInt( 8 ) ) + "d" ) );
+      }
+      else
+        task.setValue( Task.SECTION_DURATION, new TimeSpan( random.nextInt( 5 ) + "d" ) );
+      task.setValue( Task.SECTION_PRIORITY, random.nextInt( 10 ) * 100 );
+
+      // assign by initials most often, otherwise by group, role or organisation tags shared between resources
+      int r = 1 + random.nextInt( resources );
+      int tag = random.nextInt( 20 );
+      String assign = tag < 12 ? "R" + r
+          : tag < 16 ? "G" + ( r - 1 ) / m_pool + "[1.5]"
+              : tag < 19 ? "Role" + r % m_pool : "O" + ( r - 1 ) / ( m_pool * 10 ) + "[2]";
+      task.setValue( Task.SECTION_RES, new TaskResources( assign ) );
+    }
+
+    plan.tasks.updateSummaryMarkers();
+  }
+
+  /************************************ generatePredecessors *************************************/
+  private void generatePredecessors( Plan plan, Random random )
+  {
+    // predecessors between non-summary tasks, chosen from preceding tasks limited by successor count
+    int[] successors = new int[m_tasks + 1];
+    double total = 0.0;
+    for ( double weight : m_types )
+      total += weight;
+
+    StringBuilder text = new StringBuilder();
+    for ( int id = 2; id <= m_tasks; id++ )
+    {
+      if ( plan.task( id ).isSummary() )
+        continue;
+
+      int number = (int) m_fanIn + ( random.nextDouble() < m_fanIn - (int) m_fanIn ? 1 : 0 );
+      text.setLength( 0 );
+      for ( int p = 0; p < number; p++ )
+      {
+        int pred = id - 1 - random.nextInt( Math.min( id - 1, WINDOW ) );
+        if ( plan.task( pred ).isSummary() || successors[pred] >= m_fanOut || successors[pred] < 0 )
+          continue;
+
+        // mark as predecessor of this task so not chosen twice
+        successors[pred] = -1 - successors[pred];
+        if ( text.length() > 0 )
+          text.append( ',' );
+        text.append( pred ).append( type( random.nextDouble() * total ) );
+        if ( random.nextDouble() < m_lags )
+          text.append( random.nextBoolean() ? "+" : "-" ).append( 1 + random.nextInt( 3 ) ).append( "d" );
+      }
+
+      // restore successor counts, incremented for those chosen
+      for ( int p = Math.max( 1, id - WINDOW ); p < id; p++ )
+        if ( successors[p] < 0 )
+          successors[p] = -successors[p];
+
+      if ( text.length() > 0 )
+        plan.task( id ).setValue( Task.SECTION_PRED, new Predecessors( plan, text.toString() ) );
+    }
+  }
+
+  /******************************************** type *********************************************/
+  private String type( double weight )
+  {
+    // return predecessor type for weight between zero and total of type weights
+    for ( int t = 0; t < TYPES.length - 1; t++ )
+    {
+      weight -= m_types[t];
+      if ( weight < 0.0 )
+        return TYPES[t];
+    }
+    return TYPES[TYPES.length - 1];
+  }
+
+  /******************************************** write ********************************************/
+  public static long write( Plan plan, File file ) throws IOException, XMLStreamException
+  {
+    // write plan to file as indented JPlanner XML, the same way as the application
+    XmlFileWriter writer = new XmlFileWriter( file );
+    try
+    {
+      XMLStreamWriter xsw = writer.xsw();
+      xsw.writeStartDocument( XmlLabels.ENCODING, XmlLabels.VERSION );
+      xsw.writeStartElement( XmlLabels.XML_JPLANNER );
+      xsw.writeAttribute( XmlLabels.XML_FORMAT, XmlLabels.FORMAT );
+      xsw.writeAttribute( XmlLabels.XML_SAVEUSER, System.getProperty( "user.name" ) );
+      xsw.writeAttribute( XmlLabels.XML_SAVEWHEN, DateTime.now().toString() );
+      xsw.writeAttribute( XmlLabels.XML_SAVENAME, file.getName() );
+      xsw.writeAttribute( XmlLabels.XML_SAVEWHERE, file.getAbsoluteFile().getParent() );
+
+      if ( !plan.savePlan( xsw ) )
+        throw new XMLStreamException( "Failed to save plan" );
+
+      xsw.writeEndElement(); // XML_JPLANNER
+      xsw.writeEndDocument();
+      long bytes = writer.commit();
+      writer = null;
+      return bytes;
+    }
+    finally
+    {
+      if ( writer != null )
+        writer.abort();
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import rjc.jplanner.model.Plan;
+
+/*************************************************************************************************/
+/******************************* Measures plan XML save throughput *******************************/
+/*************************************************************************************************/
+
+// usage: SaveBenchmark [-runs n] file ...
+// each plan XML file is loaded then saved repeatedly alongside the original as indented XML with the
+// same synced atomic replace as the application, reporting the best save time and bytes per second
+
+public class SaveBenchmark
+{
+  /******************************************** main *********************************************/
+  public static void main( String[] args ) throws IOException, XMLStreamException
+  {
+    // parse options, any other arguments are files to load and save
+    int runs = 5;
+    PrintStream out = System.out;
+    for ( int i = 0; i < args.length; i++ )
+    {
+      if ( args[i].equals( "-runs" ) )
+      {
+        runs = Integer.parseInt( args[++i] );
+        continue;
+      }
+
+      // model trace output would swamp the results
+      System.setOut( new PrintStream( new OutputStream()
+      {
+        @Override
+        public void write( int b )
+        {
+        }
+      } ) );
+
+      File file = new File( args[i] ).getAbsoluteFile();
+      Plan plan = load( Files.readAllBytes( file.toPath() ), file );
+      File saved = new File( file.getParent(), "save-benchmark-" + file.getName() );
+
+      long best = Long.MAX_VALUE;
+      long bytes = 0;
+      for ( int run = 0; run < runs; run++ )
+      {
+        long start = System.nanoTime();
+        bytes = PlanGenerator.write( plan, saved );
+        best = Math.min( best, System.nanoTime() - start );
+      }
+      saved.delete();
+      new File( saved.getPath() + "~" ).delete();
+
+      System.setOut( out );
+      out.printf( "%s: %d tasks, %d bytes, best of %d saves %.3f seconds, %.0f bytes/second%n", file.getPath(),
+          plan.tasks.size(), bytes, runs, best / 1e9, bytes / ( best / 1e9 ) );
+    }
+  }
+
+  /******************************************** load *********************************************/
+  private static Plan load( byte[] xml, File file ) throws XMLStreamException
+  {
+    // load plan from XML file contents the same way as the application
+    XMLStreamReader xsr = XMLInputFactory.newInstance().createXMLStreamReader( new ByteArrayInputStream( xml ) );
+    while ( xsr.hasNext() && !xsr.isStartElement() )
+      xsr.next();
+
+    Plan plan = new Plan();
+    plan.loadXML( xsr, file.getName(), file.getParent() );
+    xsr.close();
+    if ( plan.errors() != null )
+      throw new XMLStreamException( "Plan '" + file.getPath() + "' not valid (" + plan.errors() + ")" );
+    return plan;
+  }
+
+}
@@ -0,0 +1,134 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.bench;
+
+import java.util.Random;
+
+import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.Task;
+
+/*************************************************************************************************/
+/**************** Randomised check of summary markers against original algorithm *****************/
+/*************************************************************************************************/
+
+// usage: SummaryMarkersCheck [plans] [rows] [seed]
+// generates plans of up to rows tasks with random indents and null tasks, and checks the summary start and
+// end set by Tasks.updateSummaryMarkers() on every row against the original forwards and backwards scan
+
+public class SummaryMarkersCheck
+{
+  /******************************************** main *********************************************/
+  public static void main( String[] args )
+  {
+    // arguments are number of plans to check, maximum rows in each plan, random seed
+    int plans = args.length > 0 ? Integer.parseInt( args[0] ) : 2000;
+    int rows = args.length > 1 ? Integer.parseInt( args[1] ) : 60;
+    Random random = new Random( args.length > 2 ? Long.parseLong( args[2] ) : 1 );
+
+    for ( int count = 1; count <= plans; count++ )
+    {
+      Plan plan = generate( 2 + random.nextInt( rows ), random );
+
+      // old algorithm only sets a summary start when one is found, so expected starts from existing markers
+      int size = plan.tasks.size();
+      int[] start = new int[size];
+      int[] end = new int[size];
+      for ( int id = 0; id < size; id++ )
+      {
+        start[id] = plan.task( id ).summaryStart();
+        end[id] = plan.task( id ).summaryEnd();
+      }
+      expected( plan, start, end );
+
+      plan.tasks.updateSummaryMarkers();
+      for ( int id = 0; id < size; id++ )
+      {
+        Task task = plan.task( id );
+        if ( task.summaryStart() != start[id] || task.summaryEnd() != end[id] )
+          throw new IllegalStateException( "Plan " + count + " task " + id + " has summary start "
+              + task.summaryStart() + " end " + task.summaryEnd() + " but expected " + start[id] + " " + end[id] );
+      }
+    }
+
+    System.out.println( "Summary markers match original algorithm for " + plans + " plans of up to " + ( rows + 1 )
+        + " tasks" );
+  }
+
+  /****************************************** generate *******************************************/
+  private static Plan generate( int size, Random random )
+  {
+    // generate plan of size tasks (including task 0), about a quarter null, with random indents
+    Plan plan = new Plan();
+    plan.initialise();
+    while ( plan.tasks.size() < size )
+      plan.tasks.add( new Task( plan ) );
+    while ( plan.tasks.size() > size )
+      plan.tasks.remove( plan.tasks.size() - 1 );
+
+    for ( int id = 1; id < size; id++ )
+    {
+      Task task = plan.task( id );
+      if ( random.nextInt( 4 ) > 0 )
+        task.setValue( Task.SECTION_TITLE, "Task " + id );
+      task.setIndent( random.nextInt( 5 ) );
+
+      // leave stale markers so rows the update should not touch are also checked
+      task.setSummaryStart( random.nextInt( size ) );
+      task.setSummaryEnd( random.nextInt( size ) - 1 );
+    }
+
+    return plan;
+  }
+
+  /****************************************** expected *******************************************/
+  private static void expected( Plan plan, int[] start, int[] end )
+  {
+    // original algorithm, for each not-null task scan forwards for its summary end and backwards for its summary
+    int size = plan.tasks.size();
+    for ( int row = 0; row < size; row++ )
+    {
+      Task task = plan.task( row );
+      if ( task.isNull() )
+        continue;
+
+      int indent = task.indent();
+      end[row] = -1;
+      for ( int check = row + 1; check < size; check++ )
+      {
+        Task other = plan.task( check );
+        if ( other.isNull() )
+          continue;
+        if ( other.indent() <= indent )
+          break;
+        end[row] = check;
+      }
+
+      for ( int check = row - 1; check >= 0; check-- )
+      {
+        Task other = plan.task( check );
+        if ( !other.isNull() && other.indent() < indent )
+        {
+          start[row] = check;
+          break;
+        }
+      }
+    }
+  }
+
+}
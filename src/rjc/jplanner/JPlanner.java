@@ -27,7 +27,6 @@ import javafx.scene.control.Tooltip;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import rjc.jplanner.gui.MainWindow;
-import rjc.jplanner.model.DateTime;
 import rjc.jplanner.model.Plan;
 
 /*************************************************************************************************/
@@ -50,17 +49,17 @@ public class JPlanner extends Application
   public static void main( String[] args )
   {
     // main entry point for application startup
-    trace( "~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~ JPlanner started ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~" );
-    trace( plan );
+    Utils.trace( "~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~ JPlanner started ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~" );
+    Utils.trace( plan );
     plan = new Plan();
-    trace( plan );
+    Utils.trace( plan );
     plan.initialise();
-    trace( plan );
+    Utils.trace( plan );
 
     // launch main application display
     launch( args );
 
-    trace( "~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~ JPlanner ended ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~" );
+    Utils.trace( "~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~ JPlanner ended ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~" );
   }
 
   /******************************************** start ********************************************/
@@ -72,43 +71,6 @@ public class JPlanner extends Application
     gui.load( new File( "C:\\Users\\Richard\\Desktop\\tests\\ttt.xml" ) );
   }
 
-  /******************************************* trace *********************************************/
-  public static void trace( Object... objects )
-  {
-    // prints space separated objects in string representation prefixed by date-time and suffixed by file+line-number & method
-    StringBuilder str = new StringBuilder();
-    for ( Object obj : objects )
-    {
-      if ( obj == null )
-        str.append( "null " );
-      else
-        str.append( obj.toString() + " " );
-    }
-
-    StackTraceElement[] stack = new Throwable().getStackTrace();
-    String method = stack[1].getMethodName() + "()";
-    String file = "(" + stack[1].getFileName() + ":" + stack[1].getLineNumber() + ") ";
-    System.out.println( DateTime.now() + " " + str.toString() + file + method );
-  }
-
-  /******************************************* stack *********************************************/
-  public static void stack()
-  {
-    // prints stack
-    StackTraceElement[] stack = new Throwable().getStackTrace();
-    System.out.println( DateTime.now() + "======================= STACK =======================" );
-    for ( int i = 1; i < stack.length; i++ )
-      System.out.println( "\t" + stack[i] );
-    System.out.println( DateTime.now() + "===================== STACK END =====================" );
-  }
-
-  /******************************************* clean *********************************************/
-  public static String clean( String txt )
-  {
-    // returns a clean string
-    return txt.trim().replaceAll( "\\s", " " ).replaceAll( "(\\s{2,})", " " );
-  }
-
   /*************************************** tool-tip hack *****************************************/
   static
   {
@@ -130,7 +92,7 @@ public class JPlanner extends Application
     }
     catch ( Exception exception )
     {
-      trace( exception );
+      Utils.trace( exception );
     }
   }
 }
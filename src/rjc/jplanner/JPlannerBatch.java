@@ -0,0 +1,278 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.PlanBinaryReader;
+import rjc.jplanner.model.PlanBinaryWriter;
+import rjc.jplanner.model.Task;
+
+/*************************************************************************************************/
+/**************************** Headless batch scheduler for plan files ****************************/
+/*************************************************************************************************/
+
+// usage: JPlannerBatch [-threads n] [-out directory] [-verbose] file-or-directory ...
+// each plan XML or binary file (or every *.xml and *.jpb file in a directory) is loaded, scheduled, and
+// written to the output directory (default 'scheduled') as XML plus a CSV of task start and end date-times,
+// binary plans are loaded lazily so tasks are only created as they are scheduled, nothing is processed if
+// any output would replace an input or the output of another plan, trace output only with -verbose
+
+public class JPlannerBatch
+{
+  /******************************************** main *********************************************/
+  public static void main( String[] args ) throws InterruptedException, IOException
+  {
+    // parse command line arguments
+    int threads = Runtime.getRuntime().availableProcessors();
+    File outDir = new File( "scheduled" );
+    ArrayList<File> files = new ArrayList<File>();
+    Utils.tracing = false;
+    for ( int arg = 0; arg < args.length; arg++ )
+    {
+      if ( args[arg].equals( "-threads" ) && arg + 1 < args.length )
+        threads = Integer.parseInt( args[++arg] );
+      else if ( args[arg].equals( "-out" ) && arg + 1 < args.length )
+        outDir = new File( args[++arg] );
+      else if ( args[arg].equals( "-verbose" ) )
+        Utils.tracing = true;
+      else
+      {
+        File file = new File( args[arg] );
+        if ( file.isDirectory() )
+        {
+          File[] planFiles = file.listFiles( ( dir, name ) -> name.toLowerCase().endsWith( ".xml" )
+              || name.toLowerCase().endsWith( PlanBinaryWriter.EXTENSION ) );
+          Arrays.sort( planFiles );
+          files.addAll( Arrays.asList( planFiles ) );
+        }
+        else
+          files.add( file );
+      }
+    }
+
+    if ( files.isEmpty() || threads < 1 )
+    {
+      System.err.println( "Usage: JPlannerBatch [-threads n] [-out directory] [-verbose] file-or-directory ..." );
+      System.exit( 2 );
+    }
+    if ( !outDir.isDirectory() && !outDir.mkdirs() )
+    {
+      System.err.println( "Could not create output directory '" + outDir.getPath() + "'" );
+      System.exit( 2 );
+    }
+
+    // check no plan output would replace an input or the output of another plan
+    String clash = checkOutputs( files, outDir );
+    if ( clash != null )
+    {
+      System.err.println( clash );
+      System.exit( 2 );
+    }
+
+    // process files on bounded thread pool
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool( threads );
+    ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+    for ( File file : files )
+    {
+      File dir = outDir;
+      results.add( pool.submit( () -> process( file, dir ) ) );
+    }
+    pool.shutdown();
+
+    int failed = 0;
+    for ( int index = 0; index < files.size(); index++ )
+      try
+      {
+        if ( !results.get( index ).get() )
+          failed++;
+      }
+      catch ( ExecutionException exception )
+      {
+        System.err.println( "Failed to process '" + files.get( index ).getPath() + "'" );
+        exception.getCause().printStackTrace();
+        failed++;
+      }
+
+    System.out.printf( "Processed %d plans (%d failed) in %.1f seconds%n", files.size(), failed,
+        ( System.nanoTime() - start ) / 1e9 );
+    System.exit( failed > 0 ? 1 : 0 );
+  }
+
+  /******************************************* process *******************************************/
+  private static boolean process( File file, File outDir ) throws IOException, XMLStreamException
+  {
+    // load plan (reading whole file if XML), then schedule and save plan
+    Plan plan;
+    if ( PlanConverter.isBinary( file ) )
+      plan = loadBinary( file );
+    else
+      plan = load( Files.readAllBytes( file.toPath() ), file );
+    if ( plan == null )
+      return false;
+
+    plan.schedule();
+    StringBuilder csv = new StringBuilder();
+    writeCSV( plan, csv );
+
+    // write results as indented XML (no display data as there is no display) and CSV, each file only
+    // replaced once fully written
+    File[] outputs = outputs( file, outDir );
+    PlanConverter.save( plan, outputs[0] );
+    write( outputs[1], csv.toString().getBytes( StandardCharsets.UTF_8 ) );
+    System.out.println( "Scheduled '" + file.getPath() + "' to '" + outputs[0].getPath() + "'" );
+    return true;
+  }
+
+  /******************************************* outputs *******************************************/
+  private static File[] outputs( File file, File outDir )
+  {
+    // return XML and CSV output files for plan file
+    String name = file.getName().replaceFirst( "(?i)\\.(xml|jpb)$", "" );
+    File dir = outDir.getAbsoluteFile();
+    return new File[] { new File( dir, name + ".xml" ), new File( dir, name + ".csv" ) };
+  }
+
+  /**************************************** checkOutputs *****************************************/
+  private static String checkOutputs( ArrayList<File> files, File outDir ) throws IOException
+  {
+    // return description of first output that would replace an input or another plan's output, or null
+    HashSet<File> inputs = new HashSet<File>();
+    for ( File file : files )
+      inputs.add( file.getCanonicalFile() );
+
+    HashMap<File, File> outputs = new HashMap<File, File>();
+    for ( File file : files )
+      for ( File output : outputs( file, outDir ) )
+      {
+        File canonical = output.getCanonicalFile();
+        if ( inputs.contains( canonical ) )
+          return "Output '" + output.getPath() + "' of plan '" + file.getPath() + "' would replace an input";
+
+        File other = outputs.put( canonical, file );
+        if ( other != null )
+          return "Plans '" + other.getPath() + "' and '" + file.getPath() + "' would both be output to '"
+              + output.getPath() + "'";
+      }
+
+    return null;
+  }
+
+  /******************************************** write ********************************************/
+  private static void write( File file, byte[] bytes ) throws IOException
+  {
+    // write bytes to temporary file synced to disk, then replace file with it
+    File temp = XmlFileWriter.temporaryFile( file );
+    try (FileOutputStream stream = new FileOutputStream( temp ))
+    {
+      stream.write( bytes );
+      stream.getFD().sync();
+    }
+    catch ( IOException exception )
+    {
+      temp.delete();
+      throw exception;
+    }
+    XmlFileWriter.replace( temp, file );
+  }
+
+  /********************************************* load ********************************************/
+  private static Plan load( byte[] input, File file ) throws XMLStreamException
+  {
+    // load plan from XML file contents, returning null if not a valid plan
+    Plan plan = new Plan();
+    XMLStreamReader xsr = XMLInputFactory.newInstance().createXMLStreamReader( new ByteArrayInputStream( input ) );
+    try
+    {
+      // check first element is JPlanner
+      while ( xsr.hasNext() && !xsr.isStartElement() )
+        xsr.next();
+      if ( !xsr.isStartElement() || !xsr.getLocalName().equals( XmlLabels.XML_JPLANNER ) )
+        throw new XMLStreamException( "Missing JPlanner element" );
+
+      plan.loadXML( xsr, file.getName(), file.getParent() );
+    }
+    finally
+    {
+      xsr.close();
+    }
+
+    return check( plan, file );
+  }
+
+  /***************************************** loadBinary ******************************************/
+  private static Plan loadBinary( File file ) throws IOException
+  {
+    // load plan lazily from binary file, returning null if not a valid plan
+    Plan plan = new Plan();
+    plan.loadBinary( new PlanBinaryReader( file ), file.getName(), file.getParent(), true );
+    return check( plan, file );
+  }
+
+  /******************************************** check ********************************************/
+  private static Plan check( Plan plan, File file )
+  {
+    // return plan, or null after reporting errors if not valid
+    if ( plan.errors() != null )
+    {
+      System.err.println( "Plan '" + file.getPath() + "' not valid (" + plan.errors() + ")" );
+      return null;
+    }
+
+    return plan;
+  }
+
+  /******************************************* writeCSV ******************************************/
+  private static void writeCSV( Plan plan, StringBuilder csv )
+  {
+    // write id, title, start and end of each non-null task
+    csv.append( "id,title,start,end\n" );
+    for ( int id = 1; id < plan.tasksCount(); id++ )
+    {
+      Task task = plan.task( id );
+      if ( task.isNull() )
+        continue;
+
+      String title = (String) task.getValue( Task.SECTION_TITLE );
+      csv.append( id ).append( ',' );
+      csv.append( '"' ).append( title.replace( "\"", "\"\"" ) ).append( '"' ).append( ',' );
+      csv.append( task.start() ).append( ',' ).append( task.end() ).append( '\n' );
+    }
+  }
+
+}
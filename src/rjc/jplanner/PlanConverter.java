@@ -0,0 +1,148 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import rjc.jplanner.model.DateTime;
+import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.PlanBinaryReader;
+import rjc.jplanner.model.PlanBinaryWriter;
+
+/*************************************************************************************************/
+/************************** Converts plans between XML and binary files **************************/
+/*************************************************************************************************/
+
+// usage: PlanConverter input output
+// files ending '.jpb' are binary plans, any other are plan XML, so converts either way (or copies)
+// reporting load and save times, display data in XML files is not carried over, binary plans are loaded
+// lazily so converting them needs little memory however many tasks they have
+
+public class PlanConverter
+{
+  /******************************************** main *********************************************/
+  public static void main( String[] args ) throws IOException, XMLStreamException
+  {
+    // check command line arguments
+    if ( args.length != 2 )
+    {
+      System.err.println( "Usage: PlanConverter input output" );
+      System.exit( 2 );
+    }
+    File input = new File( args[0] ).getAbsoluteFile();
+    File output = new File( args[1] ).getAbsoluteFile();
+
+    // load, check and save plan
+    long start = System.nanoTime();
+    Plan plan = load( input, true );
+    long loaded = System.nanoTime();
+    if ( plan.errors() != null )
+    {
+      System.err.println( "Plan '" + input.getPath() + "' not valid (" + plan.errors() + ")" );
+      System.exit( 1 );
+    }
+
+    long bytes = save( plan, output );
+    System.out.printf( "Loaded %d tasks from '%s' in %.3f seconds, saved %d bytes to '%s' in %.3f seconds%n",
+        plan.tasksCount(), input.getPath(), ( loaded - start ) / 1e9, bytes, output.getPath(),
+        ( System.nanoTime() - loaded ) / 1e9 );
+  }
+
+  /****************************************** isBinary *******************************************/
+  public static boolean isBinary( File file )
+  {
+    // return true if file name indicates a binary plan
+    return file.getName().toLowerCase().endsWith( PlanBinaryWriter.EXTENSION );
+  }
+
+  /******************************************** load *********************************************/
+  public static Plan load( File file ) throws IOException, XMLStreamException
+  {
+    // load all of plan from binary or XML file
+    return load( file, false );
+  }
+
+  public static Plan load( File file, boolean lazy ) throws IOException, XMLStreamException
+  {
+    // load plan from binary or XML file, if lazy binary plan tasks are only created when first needed
+    Plan plan = new Plan();
+    if ( isBinary( file ) )
+    {
+      plan.loadBinary( new PlanBinaryReader( file ), file.getName(), file.getParent(), lazy );
+      return plan;
+    }
+
+    try (InputStream stream = new FileInputStream( file ))
+    {
+      XMLStreamReader xsr = XMLInputFactory.newInstance().createXMLStreamReader( stream );
+      while ( xsr.hasNext() && !xsr.isStartElement() )
+        xsr.next();
+      if ( !xsr.isStartElement() || !xsr.getLocalName().equals( XmlLabels.XML_JPLANNER ) )
+        throw new XMLStreamException( "Missing JPlanner element" );
+
+      plan.loadXML( xsr, file.getName(), file.getParent() );
+      xsr.close();
+    }
+    return plan;
+  }
+
+  /******************************************** save *********************************************/
+  public static long save( Plan plan, File file ) throws IOException, XMLStreamException
+  {
+    // save plan to binary or indented XML file, returning number of bytes written
+    if ( isBinary( file ) )
+      return PlanBinaryWriter.write( plan, file );
+
+    XmlFileWriter writer = new XmlFileWriter( file );
+    try
+    {
+      XMLStreamWriter xsw = writer.xsw();
+      xsw.writeStartDocument( XmlLabels.ENCODING, XmlLabels.VERSION );
+      xsw.writeStartElement( XmlLabels.XML_JPLANNER );
+      xsw.writeAttribute( XmlLabels.XML_FORMAT, XmlLabels.FORMAT );
+      xsw.writeAttribute( XmlLabels.XML_SAVEUSER, System.getProperty( "user.name" ) );
+      xsw.writeAttribute( XmlLabels.XML_SAVEWHEN, DateTime.now().toString() );
+      xsw.writeAttribute( XmlLabels.XML_SAVENAME, file.getName() );
+      xsw.writeAttribute( XmlLabels.XML_SAVEWHERE, file.getParent() );
+
+      if ( !plan.savePlan( xsw ) )
+        throw new XMLStreamException( "Failed to save plan" );
+
+      xsw.writeEndElement(); // XML_JPLANNER
+      xsw.writeEndDocument();
+      long bytes = writer.commit();
+      writer = null;
+      return bytes;
+    }
+    finally
+    {
+      if ( writer != null )
+        writer.abort();
+    }
+  }
+
+}
@@ -0,0 +1,85 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner;
+
+import rjc.jplanner.model.DateTime;
+
+/*************************************************************************************************/
+/*********************** General utility functions (no JavaFX dependency) ************************/
+/*************************************************************************************************/
+
+public class Utils
+{
+  public static volatile boolean tracing = true; // false to suppress trace output, for example in batch runs
+
+  /******************************************** trace ********************************************/
+  public static void trace( Object... objects )
+  {
+    // prints space separated objects in string representation prefixed by date-time and suffixed by file+line-number & method
+    if ( !tracing )
+      return;
+
+    StringBuilder str = new StringBuilder();
+    for ( Object obj : objects )
+    {
+      if ( obj == null )
+        str.append( "null " );
+      else
+        str.append( obj.toString() + " " );
+    }
+
+    StackTraceElement[] stack = new Throwable().getStackTrace();
+    String method = stack[1].getMethodName() + "()";
+    String file = "(" + stack[1].getFileName() + ":" + stack[1].getLineNumber() + ") ";
+    System.out.println( DateTime.now() + " " + str.toString() + file + method );
+  }
+
+  /******************************************** stack ********************************************/
+  public static void stack()
+  {
+    // prints stack
+    StackTraceElement[] stack = new Throwable().getStackTrace();
+    System.out.println( DateTime.now() + "======================= STACK =======================" );
+    for ( int i = 1; i < stack.length; i++ )
+      System.out.println( "\t" + stack[i] );
+    System.out.println( DateTime.now() + "===================== STACK END =====================" );
+  }
+
+  /******************************************** clean ********************************************/
+  public static String clean( String txt )
+  {
+    // returns a clean string, trimmed and with each run of white-space replaced by a single space
+    txt = txt.trim();
+    StringBuilder str = new StringBuilder( txt.length() );
+    boolean space = false;
+    for ( int pos = 0; pos < txt.length(); pos++ )
+    {
+      char ch = txt.charAt( pos );
+      boolean white = ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+      if ( !white )
+        str.append( ch );
+      else if ( !space )
+        str.append( ' ' );
+      space = white;
+    }
+
+    return str.toString();
+  }
+
+}
@@ -0,0 +1,235 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import rjc.jplanner.model.DateTime;
+
+/*************************************************************************************************/
+/*********************** Writes indented XML files safely in a single pass ***********************/
+/*************************************************************************************************/
+
+// XML is indented as it is written through a buffer to a temporary file in the same directory, which
+// is synced to disk and then atomically renamed over the target, so the target is never partly written
+
+public class XmlFileWriter
+{
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private File               m_file;     // file to be written
+  private File               m_temp;     // temporary file being written
+  private FileOutputStream   m_stream;   // stream to temporary file
+  private IndentOutputStream m_indenter; // indenting buffered stream to file stream
+  private XMLStreamWriter    m_xsw;      // XML stream writer to indenting stream
+
+  // filter that indents XML as it passes, each element on a new line indented two spaces per level
+  private static class IndentOutputStream extends FilterOutputStream
+  {
+    private int     m_content = -1; // byte held until next is known, or -1 if none
+    private int     m_indent  = -1; // current indent level
+    private boolean m_inQuotes;     // true when within attribute value
+    private boolean m_inSeq;        // true after element closed, so next end tag goes on new line
+
+    IndentOutputStream( OutputStream out )
+    {
+      super( out );
+    }
+
+    @Override
+    public void write( int next ) throws IOException
+    {
+      // write held byte, preceded by new-line and indent if it starts an element or closes a sequence
+      int content = m_content;
+      m_content = next & 0xFF;
+      if ( content < 0 )
+        return;
+
+      if ( content == '<' && next != '?' && ( next != '/' || m_inSeq ) )
+      {
+        if ( next != '/' )
+          m_indent++;
+        out.write( '\n' );
+        for ( int count = 0; count < m_indent; count++ )
+        {
+          out.write( ' ' );
+          out.write( ' ' );
+        }
+        m_inSeq = false;
+      }
+
+      if ( content == '/' && !m_inQuotes )
+      {
+        m_indent--;
+        m_inSeq = true;
+      }
+
+      if ( content == '"' )
+        m_inQuotes = !m_inQuotes;
+
+      out.write( content );
+    }
+
+    @Override
+    public void write( byte[] bytes, int off, int len ) throws IOException
+    {
+      for ( int pos = off; pos < off + len; pos++ )
+        write( bytes[pos] );
+    }
+
+    void finish() throws IOException
+    {
+      // write final held byte and flush everything through
+      if ( m_content >= 0 )
+        out.write( m_content );
+      m_content = -1;
+      out.flush();
+    }
+  }
+
+  /***************************************** constructor *****************************************/
+  public XmlFileWriter( File file ) throws IOException, XMLStreamException
+  {
+    // open temporary file alongside file for writing indented XML
+    m_file = file.getAbsoluteFile();
+    m_temp = temporaryFile( m_file );
+    m_stream = new FileOutputStream( m_temp );
+    m_indenter = new IndentOutputStream( new BufferedOutputStream( m_stream, BUFFER_SIZE ) );
+    m_xsw = XMLOutputFactory.newInstance().createXMLStreamWriter( m_indenter, XmlLabels.ENCODING );
+  }
+
+  /********************************************* xsw *********************************************/
+  public XMLStreamWriter xsw()
+  {
+    return m_xsw;
+  }
+
+  /******************************************* commit ********************************************/
+  public long commit() throws IOException, XMLStreamException
+  {
+    // finish writing and sync to disk, then keep any existing file as backup and replace it, returning bytes written
+    try
+    {
+      m_xsw.flush();
+      m_xsw.close();
+      m_indenter.finish();
+      m_stream.getFD().sync();
+    }
+    finally
+    {
+      m_indenter.close();
+    }
+
+    long bytes = m_temp.length();
+    replace( m_temp, m_file );
+    return bytes;
+  }
+
+  /******************************************* replace *******************************************/
+  public static void replace( File temp, File file ) throws IOException
+  {
+    // keep any existing file as backup and atomically replace it with temporary file already synced to disk
+    if ( file.exists() )
+      backup( file.toPath(), new File( file.getPath() + "~" ).toPath() );
+    try
+    {
+      Files.move( temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+    }
+    catch ( AtomicMoveNotSupportedException exception )
+    {
+      Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+    }
+    syncDirectory( file.getAbsoluteFile().getParentFile().toPath() );
+  }
+
+  /******************************************** abort ********************************************/
+  public void abort()
+  {
+    // abandon writing, removing temporary file and leaving any existing file untouched
+    try
+    {
+      m_indenter.close();
+    }
+    catch ( IOException exception )
+    {
+      exception.printStackTrace();
+    }
+    m_temp.delete();
+  }
+
+  /**************************************** syncDirectory ****************************************/
+  private static void syncDirectory( Path directory )
+  {
+    // sync directory to disk so the rename survives a crash, ignored where platform can't open directories
+    try (FileChannel channel = FileChannel.open( directory, StandardOpenOption.READ ))
+    {
+      channel.force( true );
+    }
+    catch ( IOException exception )
+    {
+      // not supported on this platform (e.g. Windows), rename is still atomic just not yet durable
+    }
+  }
+
+  /******************************************* backup ********************************************/
+  private static void backup( Path file, Path backup ) throws IOException
+  {
+    // keep existing file as backup, linking to it where possible rather than copying the contents
+    Files.deleteIfExists( backup );
+    try
+    {
+      Files.createLink( backup, file );
+    }
+    catch ( IOException | UnsupportedOperationException exception )
+    {
+      Files.copy( file, backup );
+    }
+  }
+
+  /**************************************** temporaryFile ****************************************/
+  public static File temporaryFile( File file )
+  {
+    // return temporary file name based on given file
+    String path = file.getParent();
+    String name = file.getName();
+    int last = name.lastIndexOf( '.' );
+    if ( last >= 0 )
+      name = name.substring( 0, last ) + DateTime.now().milliseconds() + name.substring( last, name.length() );
+    else
+      name += DateTime.now().milliseconds();
+
+    return new File( path, name );
+  }
+
+}
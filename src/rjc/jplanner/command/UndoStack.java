@@ -21,6 +21,7 @@ package rjc.jplanner.command;
 import java.util.ArrayList;
 
 import rjc.jplanner.JPlanner;
+import rjc.jplanner.gui.ScheduleService;
 
 /*************************************************************************************************/
 /********************************** Stack of UndoCommand objects *********************************/
@@ -106,6 +107,24 @@ public class UndoStack
     }
   }
 
+  /******************************************* change ********************************************/
+  private void change( Runnable change )
+  {
+    // perform plan change with any background scheduling of the plan stopped
+    ScheduleService scheduler = JPlanner.gui == null ? null : JPlanner.gui.scheduler();
+    if ( scheduler != null )
+      scheduler.lock();
+    try
+    {
+      change.run();
+    }
+    finally
+    {
+      if ( scheduler != null )
+        scheduler.unlock();
+    }
+  }
+
   /******************************************** push *********************************************/
   public void push( IUndoCommand command )
   {
@@ -115,7 +134,7 @@ public class UndoStack
 
     // add new command to stack, do it, and increment stack index
     m_stack.add( command );
-    command.redo();
+    change( () -> command.redo() );
     update( command.update() );
     m_index++;
     JPlanner.gui.updateUndoRedo();
@@ -126,7 +145,7 @@ public class UndoStack
   {
     // decrement index and revert command
     m_index--;
-    m_stack.get( m_index ).undo();
+    change( () -> m_stack.get( m_index ).undo() );
     update( m_stack.get( m_index ).update() );
     JPlanner.gui.updateUndoRedo();
   }
@@ -135,7 +154,7 @@ public class UndoStack
   public void redo()
   {
     // action command and increment index
-    m_stack.get( m_index ).redo();
+    change( () -> m_stack.get( m_index ).redo() );
     update( m_stack.get( m_index ).update() );
     m_index++;
     JPlanner.gui.updateUndoRedo();
@@ -198,12 +217,12 @@ public class UndoStack
     while ( index < m_index && m_index > 0 )
     {
       m_index--;
-      m_stack.get( m_index ).undo();
+      change( () -> m_stack.get( m_index ).undo() );
       updates |= m_stack.get( m_index ).update();
     }
     while ( index > m_index && m_index < m_stack.size() )
     {
-      m_stack.get( m_index ).redo();
+      change( () -> m_stack.get( m_index ).redo() );
       updates |= m_stack.get( m_index ).update();
       m_index++;
     }
@@ -23,7 +23,7 @@ import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
 import javafx.scene.control.TabPane;
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.gui.calendars.CalendarsTab;
 import rjc.jplanner.gui.days.DaysTab;
@@ -150,7 +150,7 @@ public class MainTabWidget extends TabPane
           m_tabTasks.setSplitPosition( Integer.parseInt( xsr.getAttributeValue( i ) ) );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -176,7 +176,7 @@ public class MainTabWidget extends TabPane
             m_tabTasks.getTable().loadRows( xsr );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
@@ -205,7 +205,7 @@ public class MainTabWidget extends TabPane
             m_tabResources.getTable().loadRows( xsr );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
@@ -233,7 +233,7 @@ public class MainTabWidget extends TabPane
             m_tabCalendars.getTable().loadRows( xsr );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
@@ -261,7 +261,7 @@ public class MainTabWidget extends TabPane
             m_tabDays.getTable().loadRows( xsr );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
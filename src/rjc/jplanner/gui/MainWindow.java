@@ -20,7 +20,6 @@ package rjc.jplanner.gui;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -28,7 +27,6 @@ import java.util.ArrayList;
 import java.util.Optional;
 
 import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -50,12 +48,17 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 import rjc.jplanner.JPlanner;
+import rjc.jplanner.PlanConverter;
+import rjc.jplanner.Utils;
+import rjc.jplanner.XmlFileWriter;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.command.UndoStack;
 import rjc.jplanner.gui.plan.PlanNotes;
 import rjc.jplanner.gui.plan.PlanProperties;
 import rjc.jplanner.model.DateTime;
 import rjc.jplanner.model.Plan;
+import rjc.jplanner.model.PlanBinaryReader;
+import rjc.jplanner.model.PlanBinaryWriter;
 
 /*************************************************************************************************/
 /******************************* Main JPlanner application window ********************************/
@@ -77,6 +80,7 @@ public class MainWindow
   private TextField                m_statusBar              = new TextField();            // status bar at bottom of MainWindow
   private UndoStackWindow          m_undoWindow;                                          // window to show plan undo-stack
   private ArrayList<MainTabWidget> m_tabWidgets;                                          // list of MainTabWidgets including one in MainWindow
+  private ScheduleService          m_scheduler              = new ScheduleService();      // schedules plan on background thread
 
   /**************************************** constructor ******************************************/
   public MainWindow( Stage stage )
@@ -149,7 +153,7 @@ public class MainWindow
   {
     // display message on status-bar in normal style
     if ( m_statusBar == null )
-      JPlanner.trace( "MESSAGE BUT NO STATUS-BAR: ", msg );
+      Utils.trace( "MESSAGE BUT NO STATUS-BAR: ", msg );
     else
     {
       m_statusBar.setStyle( STYLE_NORMAL );
@@ -221,6 +225,8 @@ public class MainWindow
     if ( initialDirectory.isDirectory() )
       fc.setInitialDirectory( initialDirectory );
     fc.getExtensionFilters().add( new FileChooser.ExtensionFilter( "Plan files (*.xml)", "*.xml" ) );
+    fc.getExtensionFilters().add( new FileChooser.ExtensionFilter(
+        "Binary plan files (*" + PlanBinaryWriter.EXTENSION + ")", "*" + PlanBinaryWriter.EXTENSION ) );
     File file = fc.showOpenDialog( m_stage );
 
     // if user cancels file is null, so exit immediately
@@ -248,12 +254,29 @@ public class MainWindow
       return false;
     }
 
+    // stop any background scheduling while plan replaced
+    m_scheduler.lock();
+    try
+    {
+      return loadPlan( file );
+    }
+    finally
+    {
+      m_scheduler.unlock();
+    }
+  }
+
+  /****************************************** loadPlan *******************************************/
+  private boolean loadPlan( File file )
+  {
     // create temporary plan for loading into
     Plan oldPlan = JPlanner.plan;
     JPlanner.plan = new Plan();
 
-    // attempt to load plan and display-data from XML file
-    JPlanner.trace( "Loading '" + file.getPath() + "'" );
+    // attempt to load plan and display-data from XML file, or lazily just plan from binary file
+    Utils.trace( "Loading '" + file.getPath() + "'" );
+    if ( PlanConverter.isBinary( file ) )
+      return loadBinaryPlan( file, oldPlan );
     try
     {
       // create XML stream reader
@@ -303,6 +326,41 @@ public class MainWindow
     return true;
   }
 
+  /*************************************** loadBinaryPlan ****************************************/
+  private boolean loadBinaryPlan( File file, Plan oldPlan )
+  {
+    // load plan lazily from binary file, so only tasks viewed, edited or scheduled are created
+    try
+    {
+      JPlanner.plan.loadBinary( new PlanBinaryReader( file ), file.getName(), file.getParent(), true );
+
+      // if new plan not okay, revert back to old plan
+      if ( JPlanner.plan.errors() != null )
+      {
+        message( "Plan '" + file.getPath() + "' not valid (" + JPlanner.plan.errors() + ")" );
+        JPlanner.plan = oldPlan;
+        return false;
+      }
+
+      // binary plans have no display data, so just reset gui
+      resetGui();
+    }
+    catch ( Exception exception )
+    {
+      // some sort of exception thrown
+      message( "Failed to load '" + file.getPath() + "'" );
+      JPlanner.plan = oldPlan;
+      exception.printStackTrace();
+      return false;
+    }
+
+    // plan loaded successfully, so schedule
+    message( "Successfully loaded '" + file.getPath() + "'" );
+    schedule();
+
+    return true;
+  }
+
   /******************************************* saveAs ********************************************/
   public boolean saveAs()
   {
@@ -314,6 +372,8 @@ public class MainWindow
       fc.setInitialDirectory( initialDirectory );
     fc.setInitialFileName( JPlanner.plan.filename() );
     fc.getExtensionFilters().add( new FileChooser.ExtensionFilter( "Plan files (*.xml)", "*.xml" ) );
+    fc.getExtensionFilters().add( new FileChooser.ExtensionFilter(
+        "Binary plan files (*" + PlanBinaryWriter.EXTENSION + ")", "*" + PlanBinaryWriter.EXTENSION ) );
     File file = fc.showSaveDialog( m_stage );
 
     // if user cancels file is null, so exit immediately
@@ -345,13 +405,17 @@ public class MainWindow
       return false;
     }
 
+    // binary plans have no display data, so are written directly
+    if ( PlanConverter.isBinary( file ) )
+      return saveBinaryFile( file );
+
     // create XML stream writer to temporary file
+    XmlFileWriter writer = null;
     try
     {
-      File tempFile = temporaryFile( file );
-      XMLOutputFactory xof = XMLOutputFactory.newInstance();
-      FileOutputStream fos = new FileOutputStream( tempFile );
-      XMLStreamWriter xsw = xof.createXMLStreamWriter( fos, XmlLabels.ENCODING );
+      long startNanos = System.nanoTime();
+      writer = new XmlFileWriter( file );
+      XMLStreamWriter xsw = writer.xsw();
 
       // start XML document
       xsw.writeStartDocument( XmlLabels.ENCODING, XmlLabels.VERSION );
@@ -367,6 +431,7 @@ public class MainWindow
       // save plan data to stream
       if ( !JPlanner.plan.savePlan( xsw ) )
       {
+        writer.abort();
         message( "Failed to save plan to '" + file.getPath() + "'" );
         return false;
       }
@@ -377,96 +442,66 @@ public class MainWindow
       // close XML document
       xsw.writeEndElement(); // XML_JPLANNER
       xsw.writeEndDocument();
-      xsw.flush();
-      xsw.close();
-      fos.close();
-
-      // rename files, and update plan file details
-      File backupFile = new File( file.getAbsolutePath() + "~" );
-      backupFile.delete();
-      file.renameTo( backupFile );
-      prettyPrintXML( tempFile, file );
+
+      // replace file with fully written temporary, and update plan file details
+      long bytes = writer.commit();
+      writer = null;
       JPlanner.plan.setFileDetails( file.getName(), file.getParent(), saveUser, saveWhen );
+
+      double seconds = ( System.nanoTime() - startNanos ) / 1e9;
+      Utils.trace( "Saved " + bytes + " bytes to '" + file.getPath() + "' in " + String.format( "%.3f", seconds )
+          + "s (" + String.format( "%.0f", bytes / seconds ) + " bytes/s)" );
     }
     catch ( XMLStreamException | IOException exception )
     {
       // some sort of exception thrown
       exception.printStackTrace();
+      if ( writer != null )
+        writer.abort();
       return false;
     }
 
     // save succeed, so update gui
-    properties().updateFromPlan();
-    JPlanner.plan.undostack().setClean();
-    updateWindowTitles();
-    message( "Saved plan to '" + file.getPath() + "'" );
+    saved( file );
     return true;
   }
 
-  /**************************************** temporaryFile ****************************************/
-  private void prettyPrintXML( File unformatted, File formatted )
+  /*************************************** saveBinaryFile ****************************************/
+  private boolean saveBinaryFile( File file )
   {
-    // take XML contents of unindented unformatted file and write out indented to formatted file
+    // write plan to binary file, replacing any existing only once fully written
     try
     {
-      FileInputStream fis = new FileInputStream( unformatted );
-      FileOutputStream fos = new FileOutputStream( formatted );
-      int content = fis.read();
-      int next;
-      int indent = -1;
-      boolean inQuotes = false;
-      boolean inSeq = false;
-      while ( ( next = fis.read() ) != -1 )
-      {
-        if ( content == '<' && next != '?' && ( next != '/' || inSeq ) )
-        {
-          if ( next != '/' )
-            indent++;
-          fos.write( 10 );
-          for ( int count = 0; count < indent; count++ )
-          {
-            fos.write( 32 );
-            fos.write( 32 );
-          }
-          inSeq = false;
-        }
-
-        if ( content == '/' && !inQuotes )
-        {
-          indent--;
-          inSeq = true;
-        }
-
-        if ( content == '"' )
-          inQuotes = !inQuotes;
-
-        fos.write( content );
-        content = next;
-      }
-      fos.write( content );
-      fos.close();
-      fis.close();
-      unformatted.delete();
+      long startNanos = System.nanoTime();
+      long bytes = PlanBinaryWriter.write( JPlanner.plan, file );
+      JPlanner.plan.setFileDetails( file.getName(), file.getParent(), System.getProperty( "user.name" ),
+          DateTime.now() );
+
+      double seconds = ( System.nanoTime() - startNanos ) / 1e9;
+      Utils.trace( "Saved " + bytes + " bytes to '" + file.getPath() + "' in " + String.format( "%.3f", seconds )
+          + "s (" + String.format( "%.0f", bytes / seconds ) + " bytes/s)" );
     }
-    catch ( Exception exception )
+    catch ( IOException exception )
     {
+      // some sort of exception thrown
       exception.printStackTrace();
+      message( "Failed to save plan to '" + file.getPath() + "'" );
+      return false;
     }
+
+    // save succeed, so update gui
+    saved( file );
+    return true;
   }
 
-  /**************************************** temporaryFile ****************************************/
-  private File temporaryFile( File file )
+  /******************************************** saved ********************************************/
+  private void saved( File file )
   {
-    // return temporary file name based on given file
-    String path = file.getParent();
-    String name = file.getName();
-    int last = name.lastIndexOf( '.' );
-    if ( last >= 0 )
-      name = name.substring( 0, last ) + DateTime.now().milliseconds() + name.substring( last, name.length() );
-    else
-      name += DateTime.now();
-
-    return new File( path + File.separator + name );
+    // update gui after plan successfully saved to file
+    properties().updateFromPlan();
+    JPlanner.plan.undostack().setClean();
+    updateWindowTitles();
+    message( "Saved plan to '" + file.getPath() + "'" );
   }
 
   /*************************************** loadDisplayData ***************************************/
@@ -517,7 +552,7 @@ public class MainWindow
                   break;
 
                 default:
-                  JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+                  Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
                   break;
               }
 
@@ -550,7 +585,7 @@ public class MainWindow
                   break;
 
                 default:
-                  JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+                  Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
                   break;
               }
             break;
@@ -570,7 +605,7 @@ public class MainWindow
             tabs.loadXmlDayTypes( xsr );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
@@ -666,8 +701,14 @@ public class MainWindow
   /****************************************** schedule *******************************************/
   public void schedule()
   {
-    // TODO Auto-generated method stub
-    JPlanner.trace( "NOT YET IMPLEMENTED !!!" );
+    // request background re-schedule of plan (only tasks affected by changes if possible), tasks redrawn when done
+    m_scheduler.request();
+  }
+
+  /****************************************** scheduler ******************************************/
+  public ScheduleService scheduler()
+  {
+    return m_scheduler;
   }
 
   /************************************** checkPlanUpToDate **************************************/
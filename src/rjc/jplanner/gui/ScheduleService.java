@@ -0,0 +1,144 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.gui;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javafx.application.Platform;
+import rjc.jplanner.JPlanner;
+import rjc.jplanner.model.ScheduleRun;
+
+/*************************************************************************************************/
+/****************** Schedules plan on background thread keeping GUI responsive *******************/
+/*************************************************************************************************/
+
+public class ScheduleService
+{
+  private ScheduledExecutorService m_executor;   // single background thread that schedules plan
+  private ReentrantLock            m_lock;       // held while plan is being scheduled or changed
+  private ScheduledFuture<?>       m_pending;    // most recently requested schedule run
+  private boolean                  m_cancelled;  // true if lock cancelled a schedule run
+  private volatile int             m_generation; // incremented on each request so stale runs are ignored
+
+  // delay after last request before scheduling, so rapid successive edits give a single run
+  private static final long        DELAY_MS = 100;
+
+  /**************************************** constructor ******************************************/
+  public ScheduleService()
+  {
+    // initialise private variables
+    m_lock = new ReentrantLock();
+    m_executor = Executors.newSingleThreadScheduledExecutor( runnable ->
+    {
+      Thread thread = new Thread( runnable, "JPlanner scheduler" );
+      thread.setDaemon( true );
+      return thread;
+    } );
+  }
+
+  /******************************************* request *******************************************/
+  public void request()
+  {
+    // cancel any pending or running schedule, and request new one after short delay
+    int generation = ++m_generation;
+    if ( m_pending != null )
+      m_pending.cancel( true );
+    m_pending = m_executor.schedule( () -> run( generation ), DELAY_MS, TimeUnit.MILLISECONDS );
+  }
+
+  /********************************************* lock ********************************************/
+  public void lock()
+  {
+    // stop any pending or running schedule and wait until plan is free to be changed
+    if ( m_pending != null && m_pending.cancel( true ) )
+      m_cancelled = true;
+    m_lock.lock();
+  }
+
+  /******************************************** unlock *******************************************/
+  public void unlock()
+  {
+    // plan changes finished, if a schedule was cancelled request it again
+    m_lock.unlock();
+    if ( m_cancelled )
+    {
+      m_cancelled = false;
+      request();
+    }
+  }
+
+  /********************************************* run *********************************************/
+  private void run( int generation )
+  {
+    // schedule snapshot of plan unless superseded by a later request, plan is left unchanged so can
+    // still be displayed, and if superseded or interrupted results are discarded keeping plan changes
+    // recorded for next run
+    ScheduleRun schedule = compute( generation );
+    if ( schedule == null )
+      return;
+
+    // if still current, apply results to plan and redraw tasks together on JavaFX application thread
+    Platform.runLater( () ->
+    {
+      if ( generation == m_generation )
+      {
+        schedule.apply();
+        JPlanner.gui.redrawTaskTables();
+      }
+    } );
+  }
+
+  /******************************************* compute *******************************************/
+  private ScheduleRun compute( int generation )
+  {
+    // return computed schedule run, or null if superseded or interrupted, plan locked against changes
+    // while snapshot taken and computed
+    try
+    {
+      m_lock.lockInterruptibly();
+    }
+    catch ( InterruptedException exception )
+    {
+      return null;
+    }
+
+    try
+    {
+      if ( generation != m_generation )
+        return null;
+
+      ScheduleRun schedule = JPlanner.plan.scheduleRun();
+      return schedule.compute() && generation == m_generation ? schedule : null;
+    }
+    catch ( Exception exception )
+    {
+      exception.printStackTrace();
+      return null;
+    }
+    finally
+    {
+      m_lock.unlock();
+    }
+  }
+
+}
@@ -19,6 +19,7 @@
 package rjc.jplanner.gui.days;
 
 import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.gui.XTextField;
 import rjc.jplanner.gui.table.EditorText;
 
@@ -40,7 +41,7 @@ public class EditorDayName extends EditorText
     {
       // length must be between 1 and 40 characters long
       String error = null;
-      String tidy = JPlanner.clean( newText ).trim();
+      String tidy = Utils.clean( newText ).trim();
       int len = tidy.length();
       if ( len < 1 || len > 40 )
         error = "Name length not between 1 and 40 characters";
@@ -60,7 +61,7 @@ public class EditorDayName extends EditorText
   public Object getValue()
   {
     // return editor text cleaned and trimmed
-    return JPlanner.clean( (String) super.getValue() ).trim();
+    return Utils.clean( (String) super.getValue() ).trim();
   }
 
 }
@@ -28,6 +28,7 @@ import javafx.scene.control.ScrollBar;
 import javafx.scene.layout.Region;
 import javafx.stage.Screen;
 import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.model.DateTime;
 import rjc.jplanner.model.DateTime.Interval;
@@ -119,7 +120,7 @@ public class Gantt extends Region
           GanttPlot.ganttStretch = Boolean.parseBoolean( xsr.getAttributeValue( i ) );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -139,7 +140,7 @@ public class Gantt extends Region
             m_scales.add( new GanttScale( xsr ) );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
@@ -207,7 +208,7 @@ public class Gantt extends Region
   /**************************************** heightChange *****************************************/
   private void heightChange( int oldHeight, int newHeight )
   {
-    JPlanner.trace( "HEIGHT", this, oldHeight, newHeight );
+    Utils.trace( "HEIGHT", this, oldHeight, newHeight );
 
     // if new height is over large, do nothing
     if ( newHeight > Screen.getPrimary().getVisualBounds().getHeight() * 10 )
@@ -21,7 +21,7 @@ package rjc.jplanner.gui.gantt;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.model.DateTime;
 
 /*************************************************************************************************/
@@ -76,7 +76,7 @@ public class GanttPlot extends Canvas
   /****************************************** drawHeight *****************************************/
   private void drawHeight( int oldH, int newH )
   {
-    JPlanner.trace( "PLOT", this, oldH, newH, getHeight() );
+    Utils.trace( "PLOT", this, oldH, newH, getHeight() );
 
     // draw only if increase in height
     if ( getWidth() <= 0.0 || newH <= oldH )
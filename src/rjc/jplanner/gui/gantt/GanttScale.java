@@ -25,7 +25,7 @@ import javax.xml.stream.XMLStreamWriter;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.model.DateTime;
 import rjc.jplanner.model.DateTime.Interval;
@@ -69,7 +69,7 @@ public class GanttScale extends Canvas
           m_format = xsr.getAttributeValue( i );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -18,15 +18,13 @@
 
 package rjc.jplanner.gui.table;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.gui.table.AbstractCellEditor.MoveDirection;
 
@@ -36,32 +34,22 @@ import rjc.jplanner.gui.table.AbstractCellEditor.MoveDirection;
 
 public class Table extends TableDisplay
 {
-  private ITableDataSource          m_data;                                                // data source for the table
+  private ITableDataSource m_data;                                        // data source for the table
 
-  private int                       m_defaultRowHeight   = 20;
-  private int                       m_defaultColumnWidth = 100;
-  private int                       m_minimumRowHeight   = 17;
-  private int                       m_minimumColumnWidth = 40;
-  private int                       m_hHeaderHeight      = 20;
-  private int                       m_vHeaderWidth       = 30;
+  private int              m_minimumRowHeight   = 17;
+  private int              m_minimumColumnWidth = 40;
+  private int              m_hHeaderHeight      = 20;
+  private int              m_vHeaderWidth       = 30;
 
-  private int                       m_bodyWidth          = 0;                              // body cells total width (excludes header)
-  private int                       m_bodyHeight         = 0;                              // body cells total height (excludes header)
-
-  // all columns have default widths, and rows default heights, except those in these maps, -ve means hidden
-  private HashMap<Integer, Integer> m_columnWidths       = new HashMap<Integer, Integer>();
-  private HashMap<Integer, Integer> m_rowHeights         = new HashMap<Integer, Integer>();
+  // column widths & row heights with mapping from position to index, -ve size means hidden
+  private TableAxis        m_columns            = new TableAxis( 100 );
+  private TableAxis        m_rows               = new TableAxis( 20 );
 
   // set of collapsed rows (only used for collapsed tasks)
-  private HashSet<Integer>          m_rowCollapsed       = new HashSet<Integer>();
-
-  // array with mapping from position to index
-  private ArrayList<Integer>        m_columnIndexes      = new ArrayList<Integer>();
-  private ArrayList<Integer>        m_rowIndexes         = new ArrayList<Integer>();
+  private HashSet<Integer> m_rowCollapsed       = new HashSet<Integer>();
 
-  // set of body cells that are currently selected, where Integer = columnPos * SELECT_HASH + rowPos
-  private static final int          SELECT_HASH          = 9999;
-  private HashSet<Integer>          m_selected           = new HashSet<Integer>();
+  // body cells that are currently selected, by column & row position
+  private TableSelection   m_selected           = new TableSelection();
 
   public static enum Alignment// alignment of text to be drawn in cell
   {
@@ -79,16 +67,8 @@ public class Table extends TableDisplay
     initialiseDisplay( this );
 
     // initialise column & row position to index mapping
-    int count = m_data.getColumnCount();
-    for ( int column = 0; column < count; column++ )
-      m_columnIndexes.add( column );
-    count = m_data.getRowCount();
-    for ( int row = 0; row < count; row++ )
-      m_rowIndexes.add( row );
-
-    // calculate body width & height
-    calculateBodyWidth();
-    calculateBodyHeight();
+    m_columns.setCount( m_data.getColumnCount() );
+    m_rows.setCount( m_data.getRowCount() );
   }
 
   /*************************************** getDataSource *****************************************/
@@ -102,74 +82,28 @@ public class Table extends TableDisplay
   public int getTableWidth()
   {
     // return table width (might be smaller or larger than display node)
-    return m_bodyWidth + m_vHeaderWidth;
+    return m_columns.getTotal() + m_vHeaderWidth;
   }
 
   /*************************************** getTableHeight ****************************************/
   public int getTableHeight()
   {
     // return table height (might be smaller or larger than display node)
-    return m_bodyHeight + m_hHeaderHeight;
+    return m_rows.getTotal() + m_hHeaderHeight;
   }
 
   /**************************************** getBodyHeight ****************************************/
   public int getBodyHeight()
   {
     // return table body height (i.e. sum of height of cells without header)
-    return m_bodyHeight;
+    return m_rows.getTotal();
   }
 
   /**************************************** getBodyWidth *****************************************/
   public int getBodyWidth()
   {
     // return table body height (i.e. sum of width of cells without header)
-    return m_bodyWidth;
-  }
-
-  /************************************ calculateBodyHeight **************************************/
-  private void calculateBodyHeight()
-  {
-    // calculate height of table body cell rows
-    int exceptionsCount = 0;
-    int rowCount = m_data.getRowCount();
-    m_bodyHeight = 0;
-    for ( int row : m_rowHeights.keySet() )
-    {
-      if ( row < rowCount )
-      {
-        exceptionsCount++;
-        int height = m_rowHeights.get( row );
-        if ( height > 0 )
-          m_bodyHeight += height;
-      }
-      else
-        m_rowHeights.remove( row );
-    }
-
-    m_bodyHeight += ( rowCount - exceptionsCount ) * m_defaultRowHeight;
-  }
-
-  /************************************ calculateBodyWidth ***************************************/
-  private void calculateBodyWidth()
-  {
-    // calculate width of table body cell columns
-    int exceptionsCount = 0;
-    int columnCount = m_data.getColumnCount();
-    m_bodyWidth = 0;
-    for ( int row : m_columnWidths.keySet() )
-    {
-      if ( row < columnCount )
-      {
-        exceptionsCount++;
-        int width = m_columnWidths.get( row );
-        if ( width > 0 )
-          m_bodyWidth += width;
-      }
-      else
-        m_columnWidths.remove( row );
-    }
-
-    m_bodyWidth += ( columnCount - exceptionsCount ) * m_defaultColumnWidth;
+    return m_columns.getTotal();
   }
 
   /********************************** getColumnPositionExactAtX **********************************/
@@ -180,18 +114,8 @@ public class Table extends TableDisplay
     if ( x < 0 )
       return -1;
 
-    int last = m_data.getColumnCount() - 1;
-    for ( int columnPos = 0; columnPos <= last; columnPos++ )
-    {
-      int width = m_columnWidths.getOrDefault( m_columnIndexes.get( columnPos ), m_defaultColumnWidth );
-      if ( width <= 0 )
-        continue;
-      x -= width;
-      if ( x <= 0 )
-        return columnPos;
-    }
-
-    return Integer.MAX_VALUE;
+    int columnPos = m_columns.getPositionAt( x );
+    return columnPos < 0 ? Integer.MAX_VALUE : columnPos;
   }
 
   /************************************* getColumnPositionAtX ************************************/
@@ -199,60 +123,35 @@ public class Table extends TableDisplay
   {
     // return column position at specified x-coordinate, or nearest
     x += getHOffset() - m_vHeaderWidth;
-    int last = m_data.getColumnCount() - 1;
-    for ( int columnPos = 0; columnPos <= last; columnPos++ )
-    {
-      int width = m_columnWidths.getOrDefault( m_columnIndexes.get( columnPos ), m_defaultColumnWidth );
-      if ( width <= 0 )
-        continue;
-      x -= width;
-      if ( x <= 0 )
-        return columnPos;
-    }
-
-    return last;
+    int columnPos = m_columns.getPositionAt( x );
+    return columnPos < 0 ? m_columns.getCount() - 1 : columnPos;
   }
 
   /********************************** getXStartByColumnPosition **********************************/
   public int getXStartByColumnPosition( int columnPos )
   {
     // return start-x of specified column
-    if ( columnPos > m_data.getColumnCount() )
-      columnPos = m_data.getColumnCount();
-
-    int startX = m_vHeaderWidth - getHOffset();
-    for ( int column = 0; column < columnPos; column++ )
-      startX += getWidthByColumnPosition( column );
-
-    return startX;
+    return m_vHeaderWidth - getHOffset() + m_columns.getStart( columnPos );
   }
 
   /********************************** getWidthByColumnPosition ***********************************/
   public int getWidthByColumnPosition( int columnPos )
   {
-    // return width from column position - bit slower
-    if ( columnPos < 0 || columnPos >= m_data.getColumnCount() )
+    // return width from column position, zero if column hidden
+    if ( columnPos < 0 || columnPos >= m_columns.getCount() )
       return Integer.MAX_VALUE;
 
-    int width = m_columnWidths.getOrDefault( m_columnIndexes.get( columnPos ), m_defaultColumnWidth );
-    if ( width < 0 )
-      return 0; // -ve means column hidden, so return zero
-
-    return width;
+    return m_columns.getSizeByPosition( columnPos );
   }
 
   /************************************ getWidthByColumnIndex ************************************/
   public int getWidthByColumnIndex( int columnIndex )
   {
-    // return width from column index - bit faster
+    // return width from column index, zero if column hidden
     if ( columnIndex < 0 || columnIndex >= m_data.getColumnCount() )
       return Integer.MAX_VALUE;
 
-    int width = m_columnWidths.getOrDefault( columnIndex, m_defaultColumnWidth );
-    if ( width < 0 )
-      return 0; // -ve means column hidden, so return zero
-
-    return width;
+    return m_columns.getSize( columnIndex );
   }
 
   /*********************************** getRowPositionExactAtY ************************************/
@@ -263,18 +162,8 @@ public class Table extends TableDisplay
     if ( y < 0 )
       return -1;
 
-    int last = m_data.getRowCount() - 1;
-    for ( int rowPos = 0; rowPos <= last; rowPos++ )
-    {
-      int height = m_rowHeights.getOrDefault( m_rowIndexes.get( rowPos ), m_defaultRowHeight );
-      if ( height <= 0 )
-        continue;
-      y -= height;
-      if ( y <= 0 )
-        return rowPos;
-    }
-
-    return Integer.MAX_VALUE;
+    int rowPos = m_rows.getPositionAt( y );
+    return rowPos < 0 ? Integer.MAX_VALUE : rowPos;
   }
 
   /************************************* getRowPositionAtY ***************************************/
@@ -282,74 +171,47 @@ public class Table extends TableDisplay
   {
     // return row position at specified y-coordinate, or nearest
     y += getVOffset() - m_hHeaderHeight;
-    int last = m_data.getRowCount() - 1;
-    for ( int rowPos = 0; rowPos <= last; rowPos++ )
-    {
-      int height = m_rowHeights.getOrDefault( m_rowIndexes.get( rowPos ), m_defaultRowHeight );
-      if ( height <= 0 )
-        continue;
-      y -= height;
-      if ( y <= 0 )
-        return rowPos;
-    }
-
-    return last;
+    int rowPos = m_rows.getPositionAt( y );
+    return rowPos < 0 ? m_rows.getCount() - 1 : rowPos;
   }
 
   /*********************************** getYStartByRowPosition ************************************/
   public int getYStartByRowPosition( int rowPos )
   {
     // return start-y of specified row position
-    if ( rowPos > m_data.getRowCount() )
-      rowPos = m_data.getRowCount();
-
-    int startY = m_hHeaderHeight - getVOffset();
-    for ( int row = 0; row < rowPos; row++ )
-      startY += getHeightByRowPosition( row );
-
-    return startY;
+    return m_hHeaderHeight - getVOffset() + m_rows.getStart( rowPos );
   }
 
   /*********************************** getHeightByRowPosition ************************************/
   public int getHeightByRowPosition( int rowPos )
   {
-    // return height from row position - bit slower
-    if ( rowPos < 0 || rowPos >= m_data.getRowCount() )
+    // return height from row position, zero if row hidden
+    if ( rowPos < 0 || rowPos >= m_rows.getCount() )
       return Integer.MAX_VALUE;
 
-    int height = m_rowHeights.getOrDefault( m_rowIndexes.get( rowPos ), m_defaultRowHeight );
-    if ( height < 0 )
-      return 0; // -ve means row hidden, so return zero
-
-    return height;
+    return m_rows.getSizeByPosition( rowPos );
   }
 
   /************************************* getHeightByRowIndex *************************************/
   public int getHeightByRowIndex( int rowIndex )
   {
-    // return height from row index - bit faster
+    // return height from row index, zero if row hidden
     if ( rowIndex < 0 || rowIndex >= m_data.getRowCount() )
       return Integer.MAX_VALUE;
 
-    int height = m_rowHeights.getOrDefault( rowIndex, m_defaultRowHeight );
-    if ( height < 0 )
-      return 0; // -ve means row hidden, so return zero
-
-    return height;
+    return m_rows.getSize( rowIndex );
   }
 
   /************************************ setDefaultColumnWidth ************************************/
   public void setDefaultColumnWidth( int width )
   {
-    m_defaultColumnWidth = width;
-    calculateBodyWidth();
+    m_columns.setDefaultSize( width );
   }
 
   /************************************* setDefaultRowHeight *************************************/
   public void setDefaultRowHeight( int height )
   {
-    m_defaultRowHeight = height;
-    calculateBodyHeight();
+    m_rows.setDefaultSize( height );
   }
 
   /*********************************** getVerticalHeaderWidth ************************************/
@@ -384,9 +246,7 @@ public class Table extends TableDisplay
       newWidth = m_minimumColumnWidth;
 
     // record width so overrides default
-    int oldWidth = getWidthByColumnIndex( columnIndex );
-    m_bodyWidth = m_bodyWidth - oldWidth + newWidth;
-    m_columnWidths.put( columnIndex, newWidth );
+    m_columns.setSize( columnIndex, newWidth );
   }
 
   /************************************ setHeightByRowIndex **************************************/
@@ -397,37 +257,35 @@ public class Table extends TableDisplay
       newHeight = m_minimumRowHeight;
 
     // record height so overrides default
-    int oldHeight = getHeightByRowIndex( rowIndex );
-    m_bodyHeight = m_bodyHeight - oldHeight + newHeight;
-    m_rowHeights.put( rowIndex, newHeight );
+    m_rows.setSize( rowIndex, newHeight );
   }
 
   /********************************** getColumnIndexByPosition ***********************************/
   public int getColumnIndexByPosition( int columnPos )
   {
     // return column index from position
-    return m_columnIndexes.get( columnPos );
+    return m_columns.getIndex( columnPos );
   }
 
   /********************************** getColumnPositionByIndex ***********************************/
   public int getColumnPositionByIndex( int columnIndex )
   {
     // return column position from index
-    return m_columnIndexes.indexOf( columnIndex );
+    return m_columns.getPosition( columnIndex );
   }
 
   /************************************ getRowIndexByPosition ************************************/
   public int getRowIndexByPosition( int rowPos )
   {
     // return row index from position
-    return m_rowIndexes.get( rowPos );
+    return m_rows.getIndex( rowPos );
   }
 
   /************************************ getRowPositionByIndex ************************************/
   public int getRowPositionByIndex( int rowIndex )
   {
     // return row position from index
-    return m_rowIndexes.indexOf( rowIndex );
+    return m_rows.getPosition( rowIndex );
   }
 
   /****************************************** scrollTo *******************************************/
@@ -466,21 +324,10 @@ public class Table extends TableDisplay
   public void reset()
   {
     // ensure arrays with mapping from position to index are correct size
-    int count = m_data.getColumnCount();
-    while ( m_columnIndexes.size() < count )
-      m_columnIndexes.add( m_columnIndexes.size() );
-    while ( m_columnIndexes.size() > count )
-      m_columnIndexes.remove( Integer.valueOf( m_columnIndexes.size() - 1 ) );
-
-    count = m_data.getRowCount();
-    while ( m_rowIndexes.size() < count )
-      m_rowIndexes.add( m_rowIndexes.size() );
-    while ( m_rowIndexes.size() > count )
-      m_rowIndexes.remove( Integer.valueOf( m_rowIndexes.size() - 1 ) );
+    m_columns.setCount( m_data.getColumnCount() );
+    m_rows.setCount( m_data.getRowCount() );
 
     // reset table canvas for example after change in number of columns or rows
-    calculateBodyHeight();
-    calculateBodyWidth();
     setCanvasScrollBars();
     redraw();
   }
@@ -488,33 +335,22 @@ public class Table extends TableDisplay
   /******************************************* hideRow *******************************************/
   public void hideRow( int rowIndex )
   {
-    // get old height
-    int oldHeight = m_defaultRowHeight;
-    if ( m_rowHeights.containsKey( rowIndex ) )
-      oldHeight = m_rowHeights.get( rowIndex );
-
-    // if already hidden do nothing
-    if ( oldHeight < 0 )
-      return;
-
-    m_rowHeights.put( rowIndex, -oldHeight );
-    m_bodyHeight = m_bodyHeight - oldHeight;
+    // hide row remembering its height, if already hidden do nothing
+    m_rows.hide( rowIndex );
   }
 
   /***************************************** moveColumn ******************************************/
   public void moveColumn( int oldPos, int newPos )
   {
     // move column index from old position to new position
-    int index = m_columnIndexes.remove( oldPos );
-    m_columnIndexes.add( newPos, index );
+    m_columns.move( oldPos, newPos );
   }
 
   /******************************************* moveRow *******************************************/
   public void moveRow( int oldPos, int newPos )
   {
     // move row index from old position to new position
-    int index = m_rowIndexes.remove( oldPos );
-    m_rowIndexes.add( newPos, index );
+    m_rows.move( oldPos, newPos );
   }
 
   /************************************** clearAllSelection **************************************/
@@ -524,100 +360,81 @@ public class Table extends TableDisplay
     m_selected.clear();
   }
 
+  /****************************************** selectAll ******************************************/
+  public void selectAll()
+  {
+    // select all body cells
+    setSelection( 0, 0, m_data.getColumnCount() - 1, m_data.getRowCount() - 1, true );
+  }
+
   /**************************************** selectionCount ***************************************/
   public int selectionCount()
   {
     // return number of selected cells
-    return m_selected.size();
+    return (int) Math.min( m_selected.count(), Integer.MAX_VALUE );
   }
 
   /***************************************** isSelected ******************************************/
   public boolean isSelected( int columnPos, int rowPos )
   {
     // return true if specified body cell is selected
-    return m_selected.contains( columnPos * SELECT_HASH + rowPos );
+    return m_selected.isSelected( columnPos, rowPos );
   }
 
   /************************************ doesRowHaveSelection *************************************/
   public boolean doesRowHaveSelection( int rowPos )
   {
     // return true if any selected body cells on specified row
-    for ( int hash : m_selected )
-      if ( hash % SELECT_HASH == rowPos )
-        return true;
-
-    return false;
+    return m_selected.isRowPartSelected( rowPos );
   }
 
   /************************************** isRowAllSelected ***************************************/
   public boolean isRowAllSelected( int rowPos )
   {
     // return true if every body cell in row is selected
-    int num = getDataSource().getColumnCount();
-    for ( int columnPos = 0; columnPos < num; columnPos++ )
-      if ( !isSelected( columnPos, rowPos ) )
-        return false;
-
-    return true;
+    return m_selected.isRowSelected( rowPos, m_data.getColumnCount() );
   }
 
   /*********************************** doesColumnHaveSelection ***********************************/
   public boolean doesColumnHaveSelection( int columnPos )
   {
     // return true if any selected body cells on specified column
-    for ( int hash : m_selected )
-      if ( hash / SELECT_HASH == columnPos )
-        return true;
-
-    return false;
+    return m_selected.isColumnPartSelected( columnPos );
   }
 
   /************************************* isColumnAllSelected *************************************/
   public boolean isColumnAllSelected( int columnPos )
   {
     // return true if every body cell in column is selected
-    int num = getDataSource().getRowCount();
-    for ( int rowPos = 0; rowPos < num; rowPos++ )
-      if ( !isSelected( columnPos, rowPos ) )
-        return false;
-
-    return true;
+    return m_selected.isColumnSelected( columnPos, m_data.getRowCount() );
   }
 
   /**************************************** setSelection *****************************************/
   public void setSelection( int columnPos, int rowPos, boolean selected )
   {
     // set whether specified body cell is selected
-    if ( selected )
-      m_selected.add( columnPos * SELECT_HASH + rowPos );
-    else
-      m_selected.remove( columnPos * SELECT_HASH + rowPos );
+    m_selected.set( columnPos, rowPos, columnPos, rowPos, selected );
+  }
+
+  public void setSelection( int columnPos1, int rowPos1, int columnPos2, int rowPos2, boolean selected )
+  {
+    // set whether body cells in rectangle between specified cells are selected
+    m_selected.set( Math.min( columnPos1, columnPos2 ), Math.min( rowPos1, rowPos2 ),
+        Math.max( columnPos1, columnPos2 ), Math.max( rowPos1, rowPos2 ), selected );
   }
 
   /*************************************** setRowSelection ***************************************/
   public void setRowSelection( int rowPos, boolean selected )
   {
     // set whether specified table row is selected
-    int num = getDataSource().getColumnCount();
-    if ( selected )
-      for ( int columnPos = 0; columnPos < num; columnPos++ )
-        m_selected.add( columnPos * SELECT_HASH + rowPos );
-    else
-      for ( int columnPos = 0; columnPos < num; columnPos++ )
-        m_selected.remove( columnPos * SELECT_HASH + rowPos );
+    m_selected.set( 0, rowPos, m_data.getColumnCount() - 1, rowPos, selected );
   }
 
   /************************************* setColumnSelection **************************************/
   public void setColumnSelection( int columnPos, boolean selected )
   {
     // set whether specified table column is selected
-    int num = getDataSource().getRowCount();
-    if ( selected )
-      for ( int rowPos = 0; rowPos < num; rowPos++ )
-        m_selected.add( columnPos * SELECT_HASH + rowPos );
-    else
-      for ( int rowPos = 0; rowPos < num; rowPos++ )
-        m_selected.remove( columnPos * SELECT_HASH + rowPos );
+    m_selected.set( columnPos, 0, columnPos, m_data.getRowCount() - 1, selected );
   }
 
   /****************************************** writeXML *******************************************/
@@ -625,7 +442,7 @@ public class Table extends TableDisplay
   {
     // write column widths
     xsw.writeStartElement( XmlLabels.XML_COLUMNS );
-    xsw.writeAttribute( XmlLabels.XML_WIDTH, Integer.toString( m_defaultColumnWidth ) );
+    xsw.writeAttribute( XmlLabels.XML_WIDTH, Integer.toString( m_columns.getDefaultSize() ) );
     xsw.writeAttribute( XmlLabels.XML_SCROLL, Integer.toString( (int) m_hScrollBar.getValue() ) );
     int count = m_data.getColumnCount();
     for ( int columnIndex = 0; columnIndex < count; columnIndex++ )
@@ -633,8 +450,8 @@ public class Table extends TableDisplay
       xsw.writeStartElement( XmlLabels.XML_COLUMN );
       xsw.writeAttribute( XmlLabels.XML_ID, Integer.toString( columnIndex ) );
 
-      if ( m_columnWidths.containsKey( columnIndex ) )
-        xsw.writeAttribute( XmlLabels.XML_WIDTH, Integer.toString( m_columnWidths.get( columnIndex ) ) );
+      if ( m_columns.getOwnSize( columnIndex ) != 0 )
+        xsw.writeAttribute( XmlLabels.XML_WIDTH, Integer.toString( m_columns.getOwnSize( columnIndex ) ) );
 
       xsw.writeAttribute( XmlLabels.XML_POSITION, Integer.toString( getColumnPositionByIndex( columnIndex ) ) );
       xsw.writeEndElement(); // XML_COLUMN
@@ -643,7 +460,7 @@ public class Table extends TableDisplay
 
     // write row heights
     xsw.writeStartElement( XmlLabels.XML_ROWS );
-    xsw.writeAttribute( XmlLabels.XML_HEIGHT, Integer.toString( m_defaultRowHeight ) );
+    xsw.writeAttribute( XmlLabels.XML_HEIGHT, Integer.toString( m_rows.getDefaultSize() ) );
     xsw.writeAttribute( XmlLabels.XML_SCROLL, Integer.toString( (int) m_vScrollBar.getValue() ) );
     count = m_data.getRowCount();
     for ( int rowIndex = 0; rowIndex < count; rowIndex++ )
@@ -651,8 +468,8 @@ public class Table extends TableDisplay
       xsw.writeStartElement( XmlLabels.XML_ROW );
       xsw.writeAttribute( XmlLabels.XML_ID, Integer.toString( rowIndex ) );
 
-      if ( m_rowHeights.containsKey( rowIndex ) )
-        xsw.writeAttribute( XmlLabels.XML_HEIGHT, Integer.toString( m_rowHeights.get( rowIndex ) ) );
+      if ( m_rows.getOwnSize( rowIndex ) != 0 )
+        xsw.writeAttribute( XmlLabels.XML_HEIGHT, Integer.toString( m_rows.getOwnSize( rowIndex ) ) );
 
       if ( m_rowCollapsed.contains( rowIndex ) )
         xsw.writeAttribute( XmlLabels.XML_COLLAPSED, "true" );
@@ -677,7 +494,7 @@ public class Table extends TableDisplay
           m_hScrollBar.setValue( Integer.parseInt( xsr.getAttributeValue( i ) ) );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -704,25 +521,22 @@ public class Table extends TableDisplay
                   id = Integer.parseInt( xsr.getAttributeValue( i ) );
                   break;
                 case XmlLabels.XML_WIDTH:
-                  m_columnWidths.put( id, Integer.parseInt( xsr.getAttributeValue( i ) ) );
+                  m_columns.setOwnSize( id, Integer.parseInt( xsr.getAttributeValue( i ) ) );
                   break;
                 case XmlLabels.XML_POSITION:
-                  m_columnIndexes.set( Integer.parseInt( xsr.getAttributeValue( i ) ), id );
+                  m_columns.setPosition( Integer.parseInt( xsr.getAttributeValue( i ) ), id );
                   break;
                 default:
-                  JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+                  Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
                   break;
               }
             break;
 
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
-
-    // refresh calculated body width
-    calculateBodyWidth();
   }
 
   /****************************************** loadRows *******************************************/
@@ -739,7 +553,7 @@ public class Table extends TableDisplay
           m_vScrollBar.setValue( Integer.parseInt( xsr.getAttributeValue( i ) ) );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -766,36 +580,33 @@ public class Table extends TableDisplay
                   id = Integer.parseInt( xsr.getAttributeValue( i ) );
                   break;
                 case XmlLabels.XML_HEIGHT:
-                  m_rowHeights.put( id, Integer.parseInt( xsr.getAttributeValue( i ) ) );
+                  m_rows.setOwnSize( id, Integer.parseInt( xsr.getAttributeValue( i ) ) );
                   break;
                 case XmlLabels.XML_COLLAPSED:
                   if ( Boolean.parseBoolean( xsr.getAttributeValue( i ) ) )
                     m_rowCollapsed.add( id );
                   break;
                 case XmlLabels.XML_POSITION:
-                  m_rowIndexes.set( Integer.parseInt( xsr.getAttributeValue( i ) ), id );
+                  m_rows.setPosition( Integer.parseInt( xsr.getAttributeValue( i ) ), id );
                   break;
                 default:
-                  JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+                  Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
                   break;
               }
             break;
 
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
-
-    // refresh calculated body height
-    calculateBodyHeight();
   }
 
   /****************************************** moveFocus ******************************************/
   public void moveFocus( MoveDirection direction )
   {
     // TODO Auto-generated method stub
-    JPlanner.trace( "NOT YET IMPLEMENTED!" );
+    Utils.trace( "NOT YET IMPLEMENTED!" );
   }
 
 }
@@ -0,0 +1,288 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.gui.table;
+
+import java.util.Arrays;
+
+/*************************************************************************************************/
+/***************** Sizes and position to index mapping for table columns or rows *****************/
+/*************************************************************************************************/
+
+// sizes are held by index with zero meaning default size and -ve meaning hidden (holding the negated
+// size to restore), and a Fenwick tree of visible sizes by position gives start of any position and
+// position at any offset in O(log n), the tree is rebuilt when next needed after positions are moved
+
+class TableAxis
+{
+  private int   m_count;       // number of columns or rows
+  private int[] m_indexes;     // index at each position
+  private int[] m_positions;   // position of each index
+  private int[] m_sizes;       // size of each index, zero means default, -ve means hidden
+  private int   m_defaultSize; // size of columns or rows without their own size
+
+  private int[] m_tree;        // Fenwick tree of visible sizes by position, null if needs rebuilding
+  private int   m_total;       // total of visible sizes
+
+  /***************************************** constructor *****************************************/
+  TableAxis( int defaultSize )
+  {
+    // initialise empty axis
+    m_indexes = new int[0];
+    m_positions = new int[0];
+    m_sizes = new int[0];
+    m_defaultSize = defaultSize;
+  }
+
+  /****************************************** getCount *******************************************/
+  int getCount()
+  {
+    // return number of columns or rows
+    return m_count;
+  }
+
+  /****************************************** setCount *******************************************/
+  void setCount( int count )
+  {
+    // change number of columns or rows, new indexes are added at end, removed indexes close gaps
+    if ( count == m_count )
+      return;
+
+    if ( count > m_count )
+    {
+      m_indexes = Arrays.copyOf( m_indexes, count );
+      for ( int pos = m_count; pos < count; pos++ )
+        m_indexes[pos] = pos;
+    }
+    else
+    {
+      int pos = 0;
+      for ( int index : m_indexes )
+        if ( index < count )
+          m_indexes[pos++] = index;
+      m_indexes = Arrays.copyOf( m_indexes, count );
+    }
+
+    m_positions = new int[count];
+    for ( int pos = 0; pos < count; pos++ )
+      m_positions[m_indexes[pos]] = pos;
+    if ( count < m_sizes.length )
+      m_sizes = Arrays.copyOf( m_sizes, count );
+    m_count = count;
+    m_tree = null;
+  }
+
+  /****************************************** getIndex *******************************************/
+  int getIndex( int position )
+  {
+    // return index at position
+    if ( position < 0 || position >= m_count )
+      throw new IndexOutOfBoundsException( "Position=" + position + " Count=" + m_count );
+
+    return m_indexes[position];
+  }
+
+  /***************************************** getPosition *****************************************/
+  int getPosition( int index )
+  {
+    // return position of index, or -1 if not valid index
+    if ( index < 0 || index >= m_count )
+      return -1;
+
+    return m_positions[index];
+  }
+
+  /***************************************** setPosition *****************************************/
+  void setPosition( int position, int index )
+  {
+    // set index at position, for example when loading, other positions are not adjusted
+    m_indexes[position] = index;
+    m_positions[index] = position;
+    m_tree = null;
+  }
+
+  /******************************************** move *********************************************/
+  void move( int oldPos, int newPos )
+  {
+    // move index from old position to new position, shifting indexes between
+    int index = m_indexes[oldPos];
+    if ( oldPos < newPos )
+      System.arraycopy( m_indexes, oldPos + 1, m_indexes, oldPos, newPos - oldPos );
+    else
+      System.arraycopy( m_indexes, newPos, m_indexes, newPos + 1, oldPos - newPos );
+    m_indexes[newPos] = index;
+
+    for ( int pos = Math.min( oldPos, newPos ); pos <= Math.max( oldPos, newPos ); pos++ )
+      m_positions[m_indexes[pos]] = pos;
+    m_tree = null;
+  }
+
+  /*************************************** getDefaultSize ****************************************/
+  int getDefaultSize()
+  {
+    return m_defaultSize;
+  }
+
+  /*************************************** setDefaultSize ****************************************/
+  void setDefaultSize( int size )
+  {
+    // set size of columns or rows without their own size
+    m_defaultSize = size;
+    m_tree = null;
+  }
+
+  /******************************************* getSize *******************************************/
+  int getSize( int index )
+  {
+    // return size of index, zero if hidden
+    int size = index < m_sizes.length && m_sizes[index] != 0 ? m_sizes[index] : m_defaultSize;
+    return size < 0 ? 0 : size;
+  }
+
+  /************************************** getSizeByPosition **************************************/
+  int getSizeByPosition( int position )
+  {
+    // return size at position, zero if hidden
+    return getSize( m_indexes[position] );
+  }
+
+  /***************************************** getOwnSize ******************************************/
+  int getOwnSize( int index )
+  {
+    // return size set for index, zero if default, -ve if hidden
+    return index < m_sizes.length ? m_sizes[index] : 0;
+  }
+
+  /***************************************** setOwnSize ******************************************/
+  void setOwnSize( int index, int size )
+  {
+    // set size for index as given, for example when loading
+    ensureSizes( index );
+    m_sizes[index] = size;
+    m_tree = null;
+  }
+
+  /******************************************* setSize *******************************************/
+  void setSize( int index, int size )
+  {
+    // set visible size for index
+    int oldSize = getSize( index );
+    ensureSizes( index );
+    m_sizes[index] = size;
+    adjust( index, size - oldSize );
+  }
+
+  /******************************************** hide *********************************************/
+  void hide( int index )
+  {
+    // hide index remembering its size, unless already hidden
+    int size = getOwnSize( index );
+    if ( size == 0 )
+      size = m_defaultSize;
+    if ( size < 0 )
+      return;
+
+    ensureSizes( index );
+    m_sizes[index] = -size;
+    adjust( index, -size );
+  }
+
+  /****************************************** getTotal *******************************************/
+  int getTotal()
+  {
+    // return total of visible sizes
+    if ( m_tree == null )
+      buildTree();
+    return m_total;
+  }
+
+  /****************************************** getStart *******************************************/
+  int getStart( int position )
+  {
+    // return total of visible sizes before position
+    if ( m_tree == null )
+      buildTree();
+
+    int start = 0;
+    for ( int node = Math.min( Math.max( position, 0 ), m_count ); node > 0; node -= node & -node )
+      start += m_tree[node];
+    return start;
+  }
+
+  /**************************************** getPositionAt ****************************************/
+  int getPositionAt( int offset )
+  {
+    // return first visible position ending at or after offset, or -1 if offset beyond total
+    if ( m_tree == null )
+      buildTree();
+    if ( offset < 1 )
+      offset = 1;
+    if ( offset > m_total )
+      return -1;
+
+    // descend tree for last position whose start is before offset
+    int position = 0;
+    for ( int step = Integer.highestOneBit( m_count ); step > 0; step >>= 1 )
+      if ( position + step <= m_count && m_tree[position + step] < offset )
+      {
+        position += step;
+        offset -= m_tree[position];
+      }
+
+    return position;
+  }
+
+  /******************************************* adjust ********************************************/
+  private void adjust( int index, int change )
+  {
+    // adjust visible size of index by change, tree is left for rebuild if not yet built
+    if ( m_tree == null || index >= m_count )
+      return;
+
+    m_total += change;
+    for ( int node = m_positions[index] + 1; node <= m_count; node += node & -node )
+      m_tree[node] += change;
+  }
+
+  /***************************************** ensureSizes *****************************************/
+  private void ensureSizes( int index )
+  {
+    // ensure sizes array can hold index, which may be beyond count until count catches up
+    if ( index >= m_sizes.length )
+      m_sizes = Arrays.copyOf( m_sizes, index + 1 );
+  }
+
+  /****************************************** buildTree ******************************************/
+  private void buildTree()
+  {
+    // build Fenwick tree of visible sizes by position in linear time
+    m_tree = new int[m_count + 1];
+    for ( int pos = 0; pos < m_count; pos++ )
+      m_tree[pos + 1] = getSize( m_indexes[pos] );
+
+    m_total = 0;
+    for ( int node = 1; node <= m_count; node++ )
+    {
+      m_total += getSize( m_indexes[node - 1] );
+      int parent = node + ( node & -node );
+      if ( parent <= m_count )
+        m_tree[parent] += m_tree[node];
+    }
+  }
+
+}
@@ -34,7 +34,7 @@ import javafx.scene.paint.Paint;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontSmoothingType;
 import javafx.scene.text.Text;
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.gui.table.AbstractCellEditor.MoveDirection;
 import rjc.jplanner.gui.table.Table.Alignment;
 
@@ -832,10 +832,10 @@ public class TableCanvas extends Canvas
         break;
 
       case PAGE_UP:
-        JPlanner.trace( "TODO - handle PAGE_UP key press ..." );
+        Utils.trace( "TODO - handle PAGE_UP key press ..." );
         break;
       case PAGE_DOWN:
-        JPlanner.trace( "TODO - handle PAGE_DOWN key press ..." );
+        Utils.trace( "TODO - handle PAGE_DOWN key press ..." );
         break;
 
       case UP:
@@ -925,6 +925,15 @@ public class TableCanvas extends Canvas
         openCellEditor( null );
         break;
 
+      case A:
+        // control + A = select all cells
+        if ( event.isControlDown() )
+        {
+          m_table.selectAll();
+          redrawAll();
+        }
+        break;
+
       default:
         break;
     }
@@ -1062,13 +1071,7 @@ public class TableCanvas extends Canvas
       int rowPos = m_table.getRowPositionAtY( m_y );
 
       m_table.clearAllSelection();
-      int column1 = Math.min( columnPos, m_selectedColumnPos );
-      int column2 = Math.max( columnPos, m_selectedColumnPos );
-      int row1 = Math.min( rowPos, m_selectedRowPos );
-      int row2 = Math.max( rowPos, m_selectedRowPos );
-      for ( int column = column1; column <= column2; column++ )
-        for ( int row = row1; row <= row2; row++ )
-          m_table.setSelection( column, row, true );
+      m_table.setSelection( columnPos, rowPos, m_selectedColumnPos, m_selectedRowPos, true );
       redrawAll();
 
       return;
@@ -1124,8 +1127,7 @@ public class TableCanvas extends Canvas
 
         m_selectedColumnPos = m_columnPos;
         m_selectedRowPos = 0;
-        for ( int column = column1; column <= column2; column++ )
-          m_table.setColumnSelection( column, select );
+        m_table.setSelection( column1, 0, column2, m_table.getDataSource().getRowCount() - 1, select );
         redrawAll();
       }
     }
@@ -1172,8 +1174,7 @@ public class TableCanvas extends Canvas
 
         m_selectedColumnPos = 0;
         m_selectedRowPos = m_rowPos;
-        for ( int row = row1; row <= row2; row++ )
-          m_table.setRowSelection( row, select );
+        m_table.setSelection( 0, row1, m_table.getDataSource().getColumnCount() - 1, row2, select );
         redrawAll();
       }
     }
@@ -1231,13 +1232,7 @@ public class TableCanvas extends Canvas
         }
 
         m_table.clearAllSelection();
-        int column1 = Math.min( m_columnPos, m_selectedColumnPos );
-        int column2 = Math.max( m_columnPos, m_selectedColumnPos );
-        int row1 = Math.min( m_rowPos, m_selectedRowPos );
-        int row2 = Math.max( m_rowPos, m_selectedRowPos );
-        for ( int column = column1; column <= column2; column++ )
-          for ( int row = row1; row <= row2; row++ )
-            m_table.setSelection( column, row, true );
+        m_table.setSelection( m_columnPos, m_rowPos, m_selectedColumnPos, m_selectedRowPos, true );
         redrawAll();
         return;
       }
@@ -1257,11 +1252,11 @@ public class TableCanvas extends Canvas
 
     // auto-resize column if horizontal resize cursor and double click
     if ( getCursor() == CURSOR_H_RESIZE && doubleClicked )
-      JPlanner.trace( "TODO - Implement auto-resize column" );
+      Utils.trace( "TODO - Implement auto-resize column" );
 
     // auto-resize row if vertical resize cursor and double click
     if ( getCursor() == CURSOR_V_RESIZE && doubleClicked )
-      JPlanner.trace( "TODO - Implement auto-resize row" );
+      Utils.trace( "TODO - Implement auto-resize row" );
   }
 
   /*************************************** openCellEditor ****************************************/
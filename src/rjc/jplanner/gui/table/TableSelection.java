@@ -0,0 +1,261 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.gui.table;
+
+import java.util.Arrays;
+
+/*************************************************************************************************/
+/***************** Selected table body cells held as row ranges for each column ******************/
+/*************************************************************************************************/
+
+// each column position holds its selected row positions as sorted, non-overlapping and non-adjacent
+// ranges, so selecting whole columns, rows or rectangles adds one range per column, and a cell or row
+// check is a binary search per column, regardless of the number of rows
+
+class TableSelection
+{
+  private Ranges[] m_columns = new Ranges[0]; // selected row ranges for each column position
+
+  // struct that contains selected row ranges of one column, sorted, non-overlapping and non-adjacent
+  private static class Ranges
+  {
+    int[] start = new int[4]; // first row of each range
+    int[] end   = new int[4]; // last row of each range
+    int   size;               // number of ranges
+    long  count;              // number of rows in all ranges
+  }
+
+  /******************************************** clear ********************************************/
+  void clear()
+  {
+    // clear selection from all cells
+    m_columns = new Ranges[0];
+  }
+
+  /******************************************** count ********************************************/
+  long count()
+  {
+    // return number of selected cells
+    long count = 0;
+    for ( Ranges ranges : m_columns )
+      if ( ranges != null )
+        count += ranges.count;
+
+    return count;
+  }
+
+  /***************************************** isSelected ******************************************/
+  boolean isSelected( int column, int row )
+  {
+    // return true if cell is selected
+    return column >= 0 && column < m_columns.length && m_columns[column] != null
+        && contains( m_columns[column], row );
+  }
+
+  /**************************************** isRowSelected ****************************************/
+  boolean isRowSelected( int row, int columns )
+  {
+    // return true if row is selected in every one of the first columns
+    for ( int column = 0; column < columns; column++ )
+      if ( !isSelected( column, row ) )
+        return false;
+
+    return true;
+  }
+
+  /************************************** isRowPartSelected **************************************/
+  boolean isRowPartSelected( int row )
+  {
+    // return true if row is selected in any column
+    for ( int column = 0; column < m_columns.length; column++ )
+      if ( isSelected( column, row ) )
+        return true;
+
+    return false;
+  }
+
+  /************************************** isColumnSelected ***************************************/
+  boolean isColumnSelected( int column, int rows )
+  {
+    // return true if every one of the first rows is selected in column
+    if ( rows <= 0 )
+      return true;
+
+    return column >= 0 && column < m_columns.length && m_columns[column] != null
+        && covers( m_columns[column], 0, rows - 1 );
+  }
+
+  /************************************ isColumnPartSelected *************************************/
+  boolean isColumnPartSelected( int column )
+  {
+    // return true if any cell is selected in column
+    return column >= 0 && column < m_columns.length && m_columns[column] != null
+        && m_columns[column].size > 0;
+  }
+
+  /********************************************* set *********************************************/
+  void set( int column1, int row1, int column2, int row2, boolean selected )
+  {
+    // set whether cells in rectangle from column1-column2 and row1-row2 are selected, ignoring -ve
+    column1 = Math.max( column1, 0 );
+    row1 = Math.max( row1, 0 );
+    if ( column1 > column2 || row1 > row2 )
+      return;
+
+    if ( selected && column2 >= m_columns.length )
+      m_columns = Arrays.copyOf( m_columns, column2 + 1 );
+
+    for ( int column = column1; column <= column2 && column < m_columns.length; column++ )
+    {
+      if ( m_columns[column] == null )
+      {
+        if ( !selected )
+          continue;
+        m_columns[column] = new Ranges();
+      }
+
+      if ( selected )
+        add( m_columns[column], row1, row2 );
+      else
+        remove( m_columns[column], row1, row2 );
+    }
+  }
+
+  /****************************************** contains *******************************************/
+  private boolean contains( Ranges ranges, int row )
+  {
+    // return true if row is in a range
+    int range = firstEndingAtOrAfter( ranges, row );
+    return range < ranges.size && ranges.start[range] <= row;
+  }
+
+  /******************************************* covers ********************************************/
+  private boolean covers( Ranges ranges, int from, int to )
+  {
+    // return true if every row from-to is in a range
+    if ( from > to )
+      return true;
+
+    int range = firstEndingAtOrAfter( ranges, to );
+    return range < ranges.size && ranges.start[range] <= from;
+  }
+
+  /********************************************* add *********************************************/
+  private void add( Ranges ranges, int from, int to )
+  {
+    // add rows from-to, merging with any overlapping or adjacent ranges
+    int first = firstEndingAtOrAfter( ranges, from - 1 );
+    int last = lastStartingAtOrBefore( ranges, to + 1 );
+    if ( first <= last )
+    {
+      from = Math.min( from, ranges.start[first] );
+      to = Math.max( to, ranges.end[last] );
+    }
+
+    replace( ranges, first, last, from, to, 1 );
+  }
+
+  /******************************************* remove ********************************************/
+  private void remove( Ranges ranges, int from, int to )
+  {
+    // remove rows from-to, splitting any range that extends beyond either end
+    int first = firstEndingAtOrAfter( ranges, from );
+    int last = lastStartingAtOrBefore( ranges, to );
+    if ( first > last )
+      return;
+
+    int before = ranges.start[first];
+    int after = ranges.end[last];
+    if ( before < from && after > to )
+    {
+      // keep parts of ranges both before and after
+      replace( ranges, first, last, before, from - 1, 1 );
+      replace( ranges, first + 1, first, to + 1, after, 1 );
+    }
+    else if ( before < from )
+      replace( ranges, first, last, before, from - 1, 1 );
+    else if ( after > to )
+      replace( ranges, first, last, to + 1, after, 1 );
+    else
+      replace( ranges, first, last, 0, 0, 0 );
+  }
+
+  /******************************************* replace *******************************************/
+  private void replace( Ranges ranges, int first, int last, int from, int to, int number )
+  {
+    // replace ranges first-last (none if last before first) with number (0 or 1) of range from-to
+    for ( int range = first; range <= last; range++ )
+      ranges.count -= ranges.end[range] - ranges.start[range] + 1;
+
+    int removed = Math.max( last - first + 1, 0 );
+    int shift = number - removed;
+    if ( ranges.size + shift > ranges.start.length )
+    {
+      ranges.start = Arrays.copyOf( ranges.start, 2 * ( ranges.size + shift ) );
+      ranges.end = Arrays.copyOf( ranges.end, 2 * ( ranges.size + shift ) );
+    }
+
+    int tail = first + removed;
+    System.arraycopy( ranges.start, tail, ranges.start, tail + shift, ranges.size - tail );
+    System.arraycopy( ranges.end, tail, ranges.end, tail + shift, ranges.size - tail );
+    ranges.size += shift;
+
+    if ( number > 0 )
+    {
+      ranges.start[first] = from;
+      ranges.end[first] = to;
+      ranges.count += to - from + 1;
+    }
+  }
+
+  /************************************ firstEndingAtOrAfter *************************************/
+  private int firstEndingAtOrAfter( Ranges ranges, int row )
+  {
+    // return first range ending at or after row, or size if none
+    int low = 0;
+    int high = ranges.size;
+    while ( low < high )
+    {
+      int mid = ( low + high ) >>> 1;
+      if ( ranges.end[mid] < row )
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  /*********************************** lastStartingAtOrBefore ************************************/
+  private int lastStartingAtOrBefore( Ranges ranges, int row )
+  {
+    // return last range starting at or before row, or -1 if none
+    int low = 0;
+    int high = ranges.size;
+    while ( low < high )
+    {
+      int mid = ( low + high ) >>> 1;
+      if ( ranges.start[mid] <= row )
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low - 1;
+  }
+
+}
@@ -18,6 +18,8 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -26,7 +28,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.model.Day.DefaultDayTypes;
 
@@ -36,10 +38,29 @@ import rjc.jplanner.model.Day.DefaultDayTypes;
 
 public class Calendar
 {
+  // cumulative work index, never changed once built so can be shared between scheduling threads
+  private static class WorkIndex
+  {
+    int      start; // epoch-day of first day covered
+    long[]   ms;    // cumulative worked milliseconds before each day
+    double[] work;  // cumulative work equivalent days before each day
+    Day[]    days;  // day for each day covered
+  }
+
   private String             m_name;        // name of calendar
   private Date               m_cycleAnchor; // anchor date of calendar cycle
   private ArrayList<Day>     m_normal;      // normal basic cycle days
   private HashMap<Date, Day> m_exceptions;  // exceptions override normal days
+  private volatile WorkIndex m_workIndex;   // cumulative work index, null if not built
+  Plan                       m_plan;        // plan this calendar belongs to
+  int                        m_index = -1;  // index of calendar in plan list, maintained by Calendars
+
+  // work index grows by at least its own size plus margin, and gives up at limit (no working days)
+  private static final int   INDEX_MARGIN = 366;
+  private static final int   INDEX_LIMIT  = 1 << 20;
+
+  // work equivalent days closer than this to a day boundary are treated as on the boundary
+  private static final double WORK_EPSILON = 1e-9;
 
   public enum DefaultCalendarTypes
   {
@@ -52,10 +73,13 @@ public class Calendar
   public static final int SECTION_CYCLE      = 3;
   public static final int SECTION_NORMAL1    = 4;
 
+  static final int        BINARY_BYTES       = 16; // binary record of name, anchor, normal and exception counts
+
   /**************************************** constructor ******************************************/
-  public Calendar()
+  public Calendar( Plan plan )
   {
     // construct empty but usable calendar
+    m_plan = plan;
     m_name = "Null";
     m_cycleAnchor = new Date( 2000, 1, 1 );
     m_normal = new ArrayList<Day>();
@@ -63,14 +87,15 @@ public class Calendar
   }
 
   /**************************************** constructor ******************************************/
-  public Calendar( DefaultCalendarTypes type )
+  public Calendar( Plan plan, DefaultCalendarTypes type )
   {
     // construct default calendar
-    Day working = JPlanner.plan.day( DefaultDayTypes.STANDARDWORK.ordinal() );
-    Day nonWorking = JPlanner.plan.day( DefaultDayTypes.NONWORK.ordinal() );
-    Day fullTime = JPlanner.plan.day( DefaultDayTypes.TWENTYFOURHOURS.ordinal() );
-    Day evening = JPlanner.plan.day( DefaultDayTypes.EVENING.ordinal() );
-    Day shortDay = JPlanner.plan.day( DefaultDayTypes.SHORT.ordinal() );
+    m_plan = plan;
+    Day working = m_plan.day( DefaultDayTypes.STANDARDWORK.ordinal() );
+    Day nonWorking = m_plan.day( DefaultDayTypes.NONWORK.ordinal() );
+    Day fullTime = m_plan.day( DefaultDayTypes.TWENTYFOURHOURS.ordinal() );
+    Day evening = m_plan.day( DefaultDayTypes.EVENING.ordinal() );
+    Day shortDay = m_plan.day( DefaultDayTypes.SHORT.ordinal() );
 
     m_normal = new ArrayList<Day>();
     m_exceptions = new HashMap<Date, Day>();
@@ -134,9 +159,9 @@ public class Calendar
   }
 
   /**************************************** constructor ******************************************/
-  public Calendar( XMLStreamReader xsr ) throws XMLStreamException
+  public Calendar( Plan plan, XMLStreamReader xsr ) throws XMLStreamException
   {
-    this();
+    this( plan );
     // read XML calendar attributes
     for ( int i = 0; i < xsr.getAttributeCount(); i++ )
       switch ( xsr.getAttributeLocalName( i ) )
@@ -150,7 +175,7 @@ public class Calendar
           m_cycleAnchor = Date.fromString( xsr.getAttributeValue( i ) );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -170,10 +195,10 @@ public class Calendar
               break;
             case XmlLabels.XML_DAY:
               int dayIndex = Integer.parseInt( xsr.getAttributeValue( i ) );
-              m_normal.add( JPlanner.plan.day( dayIndex ) );
+              m_normal.add( m_plan.day( dayIndex ) );
               break;
             default:
-              JPlanner.trace( "Normal - unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+              Utils.trace( "Normal - unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
               break;
           }
 
@@ -193,17 +218,38 @@ public class Calendar
               dayIndex = Integer.parseInt( xsr.getAttributeValue( i ) );
               break;
             default:
-              JPlanner.trace( "Exception - unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+              Utils.trace( "Exception - unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
               break;
           }
 
-        m_exceptions.put( date, JPlanner.plan.day( dayIndex ) );
+        m_exceptions.put( date, m_plan.day( dayIndex ) );
       }
 
       xsr.next();
     }
   }
 
+  /***************************************** constructor *****************************************/
+  Calendar( Plan plan, PlanBinaryReader in, ByteBuffer record, ByteBuffer normals, ByteBuffer exceptions )
+      throws IOException
+  {
+    this( plan );
+    // read binary calendar record, and its normals and exceptions which follow on from previous calendar's
+    m_name = in.string( record );
+    m_cycleAnchor = PlanBinaryReader.date( record );
+    int normalCount = record.getInt();
+    int exceptionCount = record.getInt();
+
+    for ( int n = 0; n < normalCount; n++ )
+      m_normal.add( m_plan.day( normals.getInt() ) );
+
+    for ( int e = 0; e < exceptionCount; e++ )
+    {
+      Date date = new Date( exceptions.getInt() );
+      m_exceptions.put( date, m_plan.day( exceptions.getInt() ) );
+    }
+  }
+
   /***************************************** toString ********************************************/
   @Override
   public String toString()
@@ -278,6 +324,13 @@ public class Calendar
   @SuppressWarnings( "unchecked" )
   public void setValue( int section, Object newValue )
   {
+    // any change other than name means all tasks will need scheduling
+    if ( section != SECTION_NAME )
+    {
+      m_plan.tasks.rescheduleAll();
+      clearWorkIndex();
+    }
+
     // set calendar value for given section
     if ( section == SECTION_NAME )
       m_name = (String) newValue;
@@ -319,6 +372,13 @@ public class Calendar
     return m_normal.get( normal );
   }
 
+  public Day day( int epochday )
+  {
+    // return day for epoch-day from cumulative work index, avoids creating a Date
+    WorkIndex index = workIndex( epochday, epochday );
+    return index.days[epochday - index.start];
+  }
+
   /**************************************** sectionName ******************************************/
   public static String sectionName( int num )
   {
@@ -341,43 +401,47 @@ public class Calendar
   /***************************************** roundDown *******************************************/
   public DateTime roundDown( DateTime dt )
   {
-    // return date-time if working, otherwise next future working date-time
-    Date date = dt.date();
-    Time time = dt.time();
-    Day day = day( date );
+    return new DateTime( roundDown( dt.milliseconds() ) );
+  }
 
-    Time newTime = day.workDown( time );
-    while ( newTime == null )
-    {
-      date.decrement();
-      day = day( date );
+  public long roundDown( long dt )
+  {
+    // return date-time if working, otherwise last past working date-time
+    int date = (int) Math.floorDiv( dt, DateTime.MILLISECONDS_IN_DAY );
+    int time = (int) Math.floorMod( dt, DateTime.MILLISECONDS_IN_DAY );
 
-      if ( day.isWorking() )
-        newTime = day.end();
+    int newTime = day( date ).workDown( time );
+    if ( newTime < 0 )
+    {
+      // find end of previous working day using cumulative work index
+      date = searchBackward( date, workedMS( date ) );
+      newTime = day( date ).end().milliseconds();
     }
 
-    return new DateTime( date, newTime );
+    return date * DateTime.MILLISECONDS_IN_DAY + newTime;
   }
 
   /******************************************* roundUp *******************************************/
   public DateTime roundUp( DateTime dt )
   {
-    // return date-time if working, otherwise last past working date-time
-    Date date = dt.date();
-    Time time = dt.time();
-    Day day = day( date );
+    return new DateTime( roundUp( dt.milliseconds() ) );
+  }
 
-    Time newTime = day.workUp( time );
-    while ( newTime == null )
-    {
-      date.increment();
-      day = day( date );
+  public long roundUp( long dt )
+  {
+    // return date-time if working, otherwise next future working date-time
+    int date = (int) Math.floorDiv( dt, DateTime.MILLISECONDS_IN_DAY );
+    int time = (int) Math.floorMod( dt, DateTime.MILLISECONDS_IN_DAY );
 
-      if ( day.isWorking() )
-        newTime = day.start();
+    int newTime = day( date ).workUp( time );
+    if ( newTime < 0 )
+    {
+      // find start of next working day using cumulative work index
+      date = searchForward( date + 1, workedMS( date + 1 ) ) - 1;
+      newTime = day( date ).start().milliseconds();
     }
 
-    return new DateTime( date, newTime );
+    return date * DateTime.MILLISECONDS_IN_DAY + newTime;
   }
 
   /****************************************** saveToXML ******************************************/
@@ -396,7 +460,49 @@ public class Calendar
       xsw.writeAttribute( XmlLabels.XML_DAY, Integer.toString( m_normal.get( p ).index() ) );
     }
 
-    // generate sorted list of exception keys so order always same in XML file
+    for ( Date date : sortedExceptions() )
+    {
+      xsw.writeEmptyElement( XmlLabels.XML_EXCEPTION );
+      xsw.writeAttribute( XmlLabels.XML_DATE, date.toString() );
+      xsw.writeAttribute( XmlLabels.XML_DAY, Integer.toString( m_exceptions.get( date ).index() ) );
+    }
+
+    xsw.writeEndElement(); // XML_CALENDAR
+  }
+
+  /**************************************** saveToBinary *****************************************/
+  void saveToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write calendar binary record
+    out.putString( m_name );
+    out.putDate( m_cycleAnchor );
+    out.putInt( m_normal.size() );
+    out.putInt( m_exceptions.size() );
+  }
+
+  /************************************* saveNormalsToBinary *************************************/
+  void saveNormalsToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write calendar normal cycle as binary day-type indexes
+    for ( Day day : m_normal )
+      out.putInt( day.index() );
+  }
+
+  /*********************************** saveExceptionsToBinary ************************************/
+  void saveExceptionsToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write calendar exceptions as binary epoch-day and day-type index
+    for ( Date date : sortedExceptions() )
+    {
+      out.putInt( date.epochday() );
+      out.putInt( m_exceptions.get( date ).index() );
+    }
+  }
+
+  /************************************** sortedExceptions ***************************************/
+  private ArrayList<Date> sortedExceptions()
+  {
+    // generate sorted list of exception keys so order always same in saved files
     ArrayList<Date> keys = new ArrayList<Date>( m_exceptions.keySet() );
     keys.sort( new Comparator<Date>()
     {
@@ -407,14 +513,7 @@ public class Calendar
       }
     } );
 
-    for ( Date date : keys )
-    {
-      xsw.writeEmptyElement( XmlLabels.XML_EXCEPTION );
-      xsw.writeAttribute( XmlLabels.XML_DATE, date.toString() );
-      xsw.writeAttribute( XmlLabels.XML_DAY, Integer.toString( m_exceptions.get( date ).index() ) );
-    }
-
-    xsw.writeEndElement(); // XML_CALENDAR
+    return keys;
   }
 
   /**************************************** workTimeSpan *****************************************/
@@ -424,152 +523,334 @@ public class Calendar
     if ( ts.number() == 0.0 )
       return start;
 
-    // return date-time moved by TimeSpan
-    if ( ts.units() == TimeSpan.UNIT_SECONDS )
-      return workSeconds( start, ts.number() );
+    return new DateTime( workTimeSpan( start.milliseconds(), ts.number(), ts.units() ) );
+  }
+
+  public long workTimeSpan( long start, TimeSpan ts )
+  {
+    return workTimeSpan( start, ts.number(), ts.units() );
+  }
+
+  public long workTimeSpan( long start, double number, char units )
+  {
+    // if time-span is zero length return original start
+    if ( number == 0.0 )
+      return start;
+
+    // return date-time moved by time-span
+    if ( units == TimeSpan.UNIT_SECONDS )
+      return workSeconds( start, number );
 
-    if ( ts.units() == TimeSpan.UNIT_MINUTES )
-      return workSeconds( start, ts.number() * 60.0 );
+    if ( units == TimeSpan.UNIT_MINUTES )
+      return workSeconds( start, number * 60.0 );
 
-    if ( ts.units() == TimeSpan.UNIT_HOURS )
-      return workSeconds( start, ts.number() * 3600.0 );
+    if ( units == TimeSpan.UNIT_HOURS )
+      return workSeconds( start, number * 3600.0 );
 
-    if ( ts.units() == TimeSpan.UNIT_DAYS )
-      return workDays( start, ts.number() );
+    if ( units == TimeSpan.UNIT_DAYS )
+      return workDays( start, number );
 
-    if ( ts.units() == TimeSpan.UNIT_WEEKS )
-      return workWeeks( start, ts.number() );
+    if ( units == TimeSpan.UNIT_WEEKS )
+      return workWeeks( new DateTime( start ), number ).milliseconds();
 
-    if ( ts.units() == TimeSpan.UNIT_MONTHS )
-      return workMonths( start, ts.number() );
+    if ( units == TimeSpan.UNIT_MONTHS )
+      return workMonths( new DateTime( start ), number ).milliseconds();
 
-    if ( ts.units() == TimeSpan.UNIT_YEARS )
-      return workYears( start, ts.number() );
+    if ( units == TimeSpan.UNIT_YEARS )
+      return workYears( new DateTime( start ), number ).milliseconds();
 
     // unknown time-span units - should never happen!
-    throw new IllegalArgumentException( ts.toString() );
+    throw new IllegalArgumentException( number + " " + units );
   }
 
   /**************************************** workSeconds ******************************************/
-  private DateTime workSeconds( DateTime start, double secs )
+  private long workSeconds( long start, double secs )
   {
     // return date-time from start by specified number for worked seconds
-    Date date = start.date();
-    Time fromTime = start.time();
+    int date = (int) Math.floorDiv( start, DateTime.MILLISECONDS_IN_DAY );
+    int fromTime = (int) Math.floorMod( start, DateTime.MILLISECONDS_IN_DAY );
     Day day = day( date );
     int ms = (int) Math.round( secs * 1000.0 );
 
     if ( ms > 0 )
     {
       // milliseconds is positive, so go forwards in time
-      Time time = day.millisecondsForward( fromTime, ms );
+      int time = day.forward( fromTime, ms );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return date * DateTime.MILLISECONDS_IN_DAY + time;
 
-      // if not valid time, move to next date
+      // if not valid time, find date where remaining work ends using cumulative work index
       ms -= day.millisecondsToGo( fromTime );
-      date.increment();
+      long target = workedMS( date + 1 ) + ms;
+      date = searchForward( date + 1, target ) - 1;
       day = day( date );
-      while ( ms >= day.milliseconds() )
-      {
-        ms -= day.milliseconds();
-        date.increment();
-        day = day( date );
-      }
+      ms = (int) ( target - workedMS( date ) );
 
       if ( ms == 0 )
-        return new DateTime( date, day.start() );
+        time = day.start().milliseconds();
       else
-        return new DateTime( date, day.millisecondsForward( ms ) );
+        time = day.forward( 0, ms );
+
+      return date * DateTime.MILLISECONDS_IN_DAY + time;
     }
     else
     {
       // milliseconds is negative, so go backwards in time
       ms = -ms;
-      Time time = day.millisecondsBackward( fromTime, ms );
+      int time = day.backward( fromTime, ms );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return date * DateTime.MILLISECONDS_IN_DAY + time;
 
-      // if not valid time, move to previous date
+      // if not valid time, find date where remaining work ends using cumulative work index
       ms -= day.millisecondsDone( fromTime );
-      date.decrement();
+      long target = workedMS( date ) - ms;
+      date = searchBackward( date, target );
       day = day( date );
-      while ( ms >= day.milliseconds() )
-      {
-        ms -= day.milliseconds();
-        date.decrement();
-        day = day( date );
-      }
+      ms = (int) ( workedMS( date + 1 ) - target );
 
       if ( ms == 0 )
-        return new DateTime( date, day.end() );
+        time = day.end().milliseconds();
+      else
+        time = day.backward( Time.MILLISECONDS_IN_DAY, ms );
+
+      return date * DateTime.MILLISECONDS_IN_DAY + time;
+    }
+  }
+
+  /*************************************** clearWorkIndex ****************************************/
+  void clearWorkIndex()
+  {
+    // discard cumulative work index, it will be rebuilt when next needed
+    m_workIndex = null;
+  }
+
+  /****************************************** workedMS *******************************************/
+  private long workedMS( int epochday )
+  {
+    // return cumulative worked milliseconds before start of specified epoch-day
+    WorkIndex index = workIndex( epochday, epochday );
+    return index.ms[epochday - index.start];
+  }
+
+  /***************************************** workedDays ******************************************/
+  private double workedDays( int epochday )
+  {
+    // return cumulative work equivalent days before start of specified epoch-day
+    WorkIndex index = workIndex( epochday, epochday );
+    return index.work[epochday - index.start];
+  }
+
+  /**************************************** searchForward ****************************************/
+  private int searchForward( int from, long target )
+  {
+    // return first epoch-day after from with cumulative worked milliseconds beyond target
+    WorkIndex index = workIndex( from, from );
+    while ( index.ms[index.ms.length - 1] <= target )
+      index = workIndex( from, index.start + index.ms.length );
+
+    int low = from - index.start;
+    int high = index.ms.length - 1;
+    while ( low < high )
+    {
+      int mid = ( low + high ) >>> 1;
+      if ( index.ms[mid] > target )
+        high = mid;
+      else
+        low = mid + 1;
+    }
+
+    return index.start + low;
+  }
+
+  private int searchForward( int from, double target )
+  {
+    // return first epoch-day after from with cumulative work equivalent days beyond target
+    target += WORK_EPSILON;
+    WorkIndex index = workIndex( from, from );
+    while ( index.work[index.work.length - 1] <= target )
+      index = workIndex( from, index.start + index.work.length );
+
+    int low = from - index.start;
+    int high = index.work.length - 1;
+    while ( low < high )
+    {
+      int mid = ( low + high ) >>> 1;
+      if ( index.work[mid] > target )
+        high = mid;
       else
-        return new DateTime( date, day.millisecondsBackward( ms ) );
+        low = mid + 1;
     }
+
+    return index.start + low;
+  }
+
+  /*************************************** searchBackward ****************************************/
+  private int searchBackward( int to, long target )
+  {
+    // return last epoch-day before to with cumulative worked milliseconds short of target
+    WorkIndex index = workIndex( to, to );
+    while ( index.ms[0] >= target )
+      index = workIndex( index.start - 1, to );
+
+    int low = 0;
+    int high = to - index.start;
+    while ( low < high )
+    {
+      int mid = ( low + high ) >>> 1;
+      if ( index.ms[mid] >= target )
+        high = mid;
+      else
+        low = mid + 1;
+    }
+
+    return index.start + low - 1;
+  }
+
+  private int searchBackward( int to, double target )
+  {
+    // return last epoch-day before to with cumulative work equivalent days short of target
+    target -= WORK_EPSILON;
+    WorkIndex index = workIndex( to, to );
+    while ( index.work[0] >= target )
+      index = workIndex( index.start - 1, to );
+
+    int low = 0;
+    int high = to - index.start;
+    while ( low < high )
+    {
+      int mid = ( low + high ) >>> 1;
+      if ( index.work[mid] >= target )
+        high = mid;
+      else
+        low = mid + 1;
+    }
+
+    return index.start + low - 1;
+  }
+
+  /****************************************** workIndex ******************************************/
+  private WorkIndex workIndex( int from, int to )
+  {
+    // return cumulative work index covering epoch-days from and to, extending if needed
+    WorkIndex index = m_workIndex;
+    if ( index != null && from >= index.start && to < index.start + index.ms.length )
+      return index;
+
+    return extendWorkIndex( from, to );
+  }
+
+  /*************************************** extendWorkIndex ***************************************/
+  private synchronized WorkIndex extendWorkIndex( int from, int to )
+  {
+    // return cumulative work index covering epoch-days from and to, keeping existing values unchanged
+    // index always starts from cycle anchor so sums do not depend on order of queries
+    WorkIndex index = m_workIndex;
+    if ( index == null )
+    {
+      index = new WorkIndex();
+      index.start = m_cycleAnchor.epochday();
+      index.ms = new long[1];
+      index.work = new double[1];
+      index.days = new Day[] { day( m_cycleAnchor ) };
+    }
+
+    int size = index.ms.length;
+    int end = index.start + size - 1;
+    if ( from >= index.start && to <= end )
+      return m_workIndex = index;
+
+    // grow index by at least its own size in the needed direction, into a new index so any
+    // other thread still reading the old one is not disturbed
+    int newStart = from < index.start ? Math.min( from, index.start - size ) - INDEX_MARGIN : index.start;
+    int newEnd = to > end ? Math.max( to, end + size ) + INDEX_MARGIN : end;
+    if ( newEnd - newStart > INDEX_LIMIT )
+      throw new IllegalArgumentException( "No working time found in calendar " + m_name );
+
+    WorkIndex grown = new WorkIndex();
+    grown.start = newStart;
+    grown.ms = new long[newEnd - newStart + 1];
+    grown.work = new double[grown.ms.length];
+    grown.days = new Day[grown.ms.length];
+    int offset = index.start - newStart;
+    System.arraycopy( index.ms, 0, grown.ms, offset, size );
+    System.arraycopy( index.work, 0, grown.work, offset, size );
+    System.arraycopy( index.days, 0, grown.days, offset, size );
+
+    for ( int i = offset - 1; i >= 0; i-- )
+    {
+      grown.days[i] = day( new Date( newStart + i ) );
+      grown.ms[i] = grown.ms[i + 1] - grown.days[i].milliseconds();
+      grown.work[i] = grown.work[i + 1] - grown.days[i].work();
+    }
+
+    for ( int i = offset + size; i < grown.ms.length; i++ )
+    {
+      grown.days[i] = day( new Date( newStart + i ) );
+      grown.ms[i] = grown.ms[i - 1] + grown.days[i - 1].milliseconds();
+      grown.work[i] = grown.work[i - 1] + grown.days[i - 1].work();
+    }
+
+    return m_workIndex = grown;
   }
 
   /****************************************** workDays *******************************************/
-  private DateTime workDays( DateTime start, double work )
+  private long workDays( long start, double work )
   {
     // return date-time from start by specified number for work equivalent days
-    Date date = start.date();
-    Time fromTime = start.time();
+    int date = (int) Math.floorDiv( start, DateTime.MILLISECONDS_IN_DAY );
+    int fromTime = (int) Math.floorMod( start, DateTime.MILLISECONDS_IN_DAY );
     Day day = day( date );
 
     if ( work > 0 )
     {
       // work is positive, so go forwards in time
-      Time time = day.workForward( fromTime, work );
+      int time = day.forwardWork( fromTime, work );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return date * DateTime.MILLISECONDS_IN_DAY + time;
 
-      // if not valid time, move to next date
+      // if not valid time, find date where remaining work ends using cumulative work index
       work -= day.workToGo( fromTime );
-      date.increment();
+      double target = workedDays( date + 1 ) + work;
+      date = searchForward( date + 1, target ) - 1;
       day = day( date );
-      while ( work >= day.work() )
-      {
-        work -= day.work();
-        date.increment();
-        day = day( date );
-      }
+      work = target - workedDays( date );
 
-      if ( work == 0 )
-        return new DateTime( date, day.start() );
+      if ( work < WORK_EPSILON )
+        time = day.start().milliseconds();
       else
-        return new DateTime( date, day.workForward( work ) );
+        time = day.forwardWork( 0, work );
+
+      return date * DateTime.MILLISECONDS_IN_DAY + time;
     }
     else
     {
       // work is negative, so go backwards in time
       work = -work;
-      Time time = day.workBackward( fromTime, work );
+      int time = day.backwardWork( fromTime, work );
 
       // if valid time then finished in day
-      if ( time != null )
-        return new DateTime( date, time );
+      if ( time >= 0 )
+        return date * DateTime.MILLISECONDS_IN_DAY + time;
 
-      // if not valid time, move to previous date
+      // if not valid time, find date where remaining work ends using cumulative work index
       work -= day.workDone( fromTime );
-      date.decrement();
+      double target = workedDays( date ) - work;
+      date = searchBackward( date, target );
       day = day( date );
-      while ( work >= day.work() )
-      {
-        work -= day.work();
-        date.decrement();
-        day = day( date );
-      }
+      work = workedDays( date + 1 ) - target;
 
-      if ( work == 0 )
-        return new DateTime( date, day.end() );
+      if ( work < WORK_EPSILON )
+        time = day.end().milliseconds();
       else
-        return new DateTime( date, day.workBackward( work ) );
+        time = day.backwardWork( Time.MILLISECONDS_IN_DAY, work );
+
+      return date * DateTime.MILLISECONDS_IN_DAY + time;
     }
   }
 
@@ -616,36 +897,55 @@ public class Calendar
 
   /***************************************** workBetween *****************************************/
   public TimeSpan workBetween( DateTime start, DateTime end )
+  {
+    return new TimeSpan( workBetween( start.milliseconds(), end.milliseconds() ), TimeSpan.UNIT_DAYS );
+  }
+
+  public double workBetween( long start, long end )
   {
     // return number of work equivalent days between the two date-times
-    Date sd = start.date();
-    Time st = start.time();
+    int sd = (int) Math.floorDiv( start, DateTime.MILLISECONDS_IN_DAY );
+    int st = (int) Math.floorMod( start, DateTime.MILLISECONDS_IN_DAY );
     Day day = day( sd );
 
-    Date ed = end.date();
-    Time et = end.time();
+    int ed = (int) Math.floorDiv( end, DateTime.MILLISECONDS_IN_DAY );
+    int et = (int) Math.floorMod( end, DateTime.MILLISECONDS_IN_DAY );
 
     // if start date same as end date, just work in day
-    if ( sd.equals( ed ) )
-      return new TimeSpan( day.workDone( et ) - day.workDone( st ), TimeSpan.UNIT_DAYS );
+    if ( sd == ed )
+      return day.workDone( et ) - day.workDone( st );
 
-    // add together work across the days
+    // add together work across the days, whole days in between come from cumulative work index
     double work = day.workToGo( st );
-    sd.increment();
-    while ( !sd.equals( ed ) )
-    {
-      work += day( sd ).work();
-      sd.increment();
-    }
+    work += workedDays( ed ) - workedDays( sd + 1 );
     work += day( ed ).workDone( et );
 
-    return new TimeSpan( work, TimeSpan.UNIT_DAYS );
+    return work;
+  }
+
+  /************************************* millisecondsBetween *************************************/
+  public long millisecondsBetween( long start, long end )
+  {
+    // return number of worked milliseconds between the two date-times
+    int sd = (int) Math.floorDiv( start, DateTime.MILLISECONDS_IN_DAY );
+    int st = (int) Math.floorMod( start, DateTime.MILLISECONDS_IN_DAY );
+    Day day = day( sd );
+
+    int ed = (int) Math.floorDiv( end, DateTime.MILLISECONDS_IN_DAY );
+    int et = (int) Math.floorMod( end, DateTime.MILLISECONDS_IN_DAY );
+
+    // if start date same as end date, just work in day
+    if ( sd == ed )
+      return day.millisecondsDone( et ) - day.millisecondsDone( st );
+
+    // add together work across the days, whole days in between come from cumulative work index
+    return day.millisecondsToGo( st ) + workedMS( ed ) - workedMS( sd + 1 ) + day( ed ).millisecondsDone( et );
   }
 
   /******************************************** index ********************************************/
   public int index()
   {
-    return JPlanner.plan.index( this );
+    return m_plan.index( this );
   }
 
 }
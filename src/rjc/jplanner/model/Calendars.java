@@ -18,13 +18,14 @@
 
 package rjc.jplanner.model;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.model.Calendar.DefaultCalendarTypes;
 
@@ -32,17 +33,40 @@ import rjc.jplanner.model.Calendar.DefaultCalendarTypes;
 /************************** Holds the complete list of plan calendars ****************************/
 /*************************************************************************************************/
 
-public class Calendars extends ArrayList<Calendar>
+public class Calendars extends IndexedList<Calendar>
 {
   private static final long serialVersionUID = 1L;
 
+  Plan                      m_plan; // plan these calendars belong to
+
+  /**************************************** constructor ******************************************/
+  public Calendars( Plan plan )
+  {
+    // construct empty list of calendars belonging to plan
+    m_plan = plan;
+  }
+
+  /****************************************** getIndex *******************************************/
+  @Override
+  int getIndex( Calendar cal )
+  {
+    return cal.m_index;
+  }
+
+  /****************************************** setIndex *******************************************/
+  @Override
+  void setIndex( Calendar cal, int index )
+  {
+    cal.m_index = index;
+  }
+
   /**************************************** initialise *******************************************/
   public void initialise()
   {
     // initialise list with default calendars
     clear();
     for ( DefaultCalendarTypes type : DefaultCalendarTypes.values() )
-      add( new Calendar( type ) );
+      add( new Calendar( m_plan, type ) );
   }
 
   /******************************************* loadXML *******************************************/
@@ -62,10 +86,10 @@ public class Calendars extends ArrayList<Calendar>
         switch ( xsr.getLocalName() )
         {
           case XmlLabels.XML_CALENDAR:
-            add( new Calendar( xsr ) );
+            add( new Calendar( m_plan, xsr ) );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
 
@@ -82,6 +106,49 @@ public class Calendars extends ArrayList<Calendar>
     xsw.writeEndElement(); // XML_CAL_DATA
   }
 
+  /***************************************** loadBinary ******************************************/
+  public void loadBinary( PlanBinaryReader in ) throws IOException
+  {
+    // read binary calendar records, each followed by its normals and exceptions in separate sections
+    ByteBuffer records = in.section( PlanBinaryWriter.SECTION_CALENDARS, Calendar.BINARY_BYTES );
+    ByteBuffer normals = in.section( PlanBinaryWriter.SECTION_NORMALS, PlanBinaryWriter.NORMAL_BYTES );
+    ByteBuffer exceptions = in.section( PlanBinaryWriter.SECTION_EXCEPTS, PlanBinaryWriter.EXCEPT_BYTES );
+    int count = in.count( PlanBinaryWriter.SECTION_CALENDARS );
+    for ( int index = 0; index < count; index++ )
+      add( new Calendar( m_plan, in, records, normals, exceptions ) );
+  }
+
+  /***************************************** writeBinary *****************************************/
+  public void writeBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write calendar records, then normals and exceptions of all calendars
+    out.startSection( PlanBinaryWriter.SECTION_CALENDARS, size(), Calendar.BINARY_BYTES );
+    int normals = 0;
+    int exceptions = 0;
+    for ( Calendar cal : this )
+    {
+      cal.saveToBinary( out );
+      normals += cal.numNormals();
+      exceptions += cal.numExceptions();
+    }
+
+    out.startSection( PlanBinaryWriter.SECTION_NORMALS, normals, PlanBinaryWriter.NORMAL_BYTES );
+    for ( Calendar cal : this )
+      cal.saveNormalsToBinary( out );
+
+    out.startSection( PlanBinaryWriter.SECTION_EXCEPTS, exceptions, PlanBinaryWriter.EXCEPT_BYTES );
+    for ( Calendar cal : this )
+      cal.saveExceptionsToBinary( out );
+  }
+
+  /************************************** clearWorkIndexes ***************************************/
+  void clearWorkIndexes()
+  {
+    // discard every calendar's cumulative work index, for example after a day-type changes
+    for ( Calendar cal : this )
+      cal.clearWorkIndex();
+  }
+
   /******************************************* fromName ******************************************/
   public Calendar fromName( String name )
   {
@@ -183,6 +183,17 @@ public class Date
     // if string of type YYYY-MM-DD or YYYY/MM/DD
     try
     {
+      // fast path for fixed width form as written to XML
+      char sep = str.length() == 10 ? str.charAt( 4 ) : 0;
+      if ( ( sep == '-' || sep == '/' ) && str.charAt( 7 ) == sep )
+      {
+        int year = digits( str, 0, 4 );
+        int mon = digits( str, 5, 7 );
+        int day = digits( str, 8, 10 );
+        if ( year >= 0 && mon >= 0 && day >= 0 )
+          return new Date( year, mon, day );
+      }
+
       String[] parts = str.split( "/" );
       if ( parts.length != 3 )
         parts = str.split( "-" );
@@ -200,6 +211,22 @@ public class Date
     }
   }
 
+  /******************************************* digits ********************************************/
+  static int digits( String str, int start, int end )
+  {
+    // return number from decimal digits between start and end, or -1 if any character is not a digit
+    int num = 0;
+    for ( int pos = start; pos < end; pos++ )
+    {
+      char ch = str.charAt( pos );
+      if ( ch < '0' || ch > '9' )
+        return -1;
+      num = num * 10 + ch - '0';
+    }
+
+    return num;
+  }
+
   /******************************************** year *********************************************/
   public int year()
   {
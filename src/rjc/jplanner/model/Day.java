@@ -18,13 +18,15 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 
 /*************************************************************************************************/
@@ -38,6 +40,8 @@ public class Day
   private ArrayList<DayWorkPeriod> m_periods; // list of work periods
 
   private int                      m_workMS;  // pre-calculated number of worked milliseconds in day-type
+  Plan                             m_plan;    // plan this day-type belongs to
+  int                              m_index = -1; // index of day-type in plan list, maintained by Days
 
   public enum DefaultDayTypes
   {
@@ -50,10 +54,13 @@ public class Day
   public static final int SECTION_START1  = 3;
   public static final int SECTION_END1    = 4;
 
+  static final int        BINARY_BYTES    = 16; // binary record of name, work, and number of periods
+
   /**************************************** constructor ******************************************/
-  public Day()
+  public Day( Plan plan )
   {
     // construct empty but usable day type
+    m_plan = plan;
     m_name = "Null";
     m_work = 0.0;
     m_periods = new ArrayList<DayWorkPeriod>();
@@ -61,9 +68,10 @@ public class Day
   }
 
   /**************************************** constructor ******************************************/
-  public Day( DefaultDayTypes type )
+  public Day( Plan plan, DefaultDayTypes type )
   {
     // construct default day type
+    m_plan = plan;
     m_periods = new ArrayList<DayWorkPeriod>();
 
     if ( type == DefaultDayTypes.NONWORK )
@@ -105,9 +113,9 @@ public class Day
   }
 
   /**************************************** constructor ******************************************/
-  public Day( XMLStreamReader xsr ) throws XMLStreamException
+  public Day( Plan plan, XMLStreamReader xsr ) throws XMLStreamException
   {
-    this();
+    this( plan );
     // read XML day attributes
     for ( int i = 0; i < xsr.getAttributeCount(); i++ )
       switch ( xsr.getAttributeLocalName( i ) )
@@ -121,7 +129,7 @@ public class Day
           m_work = Double.parseDouble( xsr.getAttributeValue( i ) );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -156,7 +164,7 @@ public class Day
               end = time.milliseconds() / 3600_000.0;
               break;
             default:
-              JPlanner.trace( "Period - unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+              Utils.trace( "Period - unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
               break;
           }
 
@@ -167,6 +175,25 @@ public class Day
     }
   }
 
+  /***************************************** constructor *****************************************/
+  Day( Plan plan, PlanBinaryReader in, ByteBuffer record, ByteBuffer periods ) throws IOException
+  {
+    this( plan );
+    // read binary day record, and its work-periods which follow on from previous day's
+    m_name = in.string( record );
+    m_work = record.getDouble();
+    int count = record.getInt();
+
+    for ( int p = 0; p < count; p++ )
+    {
+      double start = periods.getInt() / 3600_000.0;
+      double end = periods.getInt() / 3600_000.0;
+      m_periods.add( new DayWorkPeriod( start, end ) );
+    }
+
+    calcWorkMS();
+  }
+
   /***************************************** toString ********************************************/
   @Override
   public String toString()
@@ -256,6 +283,13 @@ public class Day
   @SuppressWarnings( "unchecked" )
   public void setValue( int section, Object newValue )
   {
+    // any change other than name means all tasks will need scheduling
+    if ( section != SECTION_NAME )
+    {
+      m_plan.tasks.rescheduleAll();
+      m_plan.calendars.clearWorkIndexes();
+    }
+
     // update day with new value
     if ( section == SECTION_NAME )
       m_name = (String) newValue;
@@ -277,6 +311,9 @@ public class Day
 
     else
       throw new IllegalArgumentException( "Section=" + section );
+
+    // keep pre-calculated worked milliseconds in step with work periods
+    calcWorkMS();
   }
 
   /***************************************** isWorking *******************************************/
@@ -308,9 +345,14 @@ public class Day
   /****************************************** workDown *******************************************/
   public Time workDown( Time time )
   {
-    // if in work period, return original time, otherwise end of earlier period, or null
-    int ms = time.milliseconds();
-    Time answer = null;
+    int ms = workDown( time.milliseconds() );
+    return ms < 0 ? null : Time.fromMilliseconds( ms );
+  }
+
+  public int workDown( int ms )
+  {
+    // if in work period, return original time, otherwise end of earlier period, or -1
+    int answer = -1;
 
     for ( DayWorkPeriod period : m_periods )
     {
@@ -318,9 +360,9 @@ public class Day
         return answer;
 
       if ( ms <= period.m_end.milliseconds() )
-        return time;
+        return ms;
 
-      answer = period.m_end;
+      answer = period.m_end.milliseconds();
     }
 
     return answer;
@@ -329,19 +371,23 @@ public class Day
   /******************************************* workUp ********************************************/
   public Time workUp( Time time )
   {
-    // if in work period, return original time, otherwise start of later period, or null
-    int ms = time.milliseconds();
+    int ms = workUp( time.milliseconds() );
+    return ms < 0 ? null : Time.fromMilliseconds( ms );
+  }
 
+  public int workUp( int ms )
+  {
+    // if in work period, return original time, otherwise start of later period, or -1
     for ( DayWorkPeriod period : m_periods )
     {
       if ( ms < period.m_start.milliseconds() )
-        return period.m_start;
+        return period.m_start.milliseconds();
 
       if ( ms < period.m_end.milliseconds() )
-        return time;
+        return ms;
     }
 
-    return null;
+    return -1;
   }
 
   /****************************************** saveToXML ******************************************/
@@ -364,6 +410,26 @@ public class Day
     xsw.writeEndElement(); // XML_DAY
   }
 
+  /**************************************** saveToBinary *****************************************/
+  void saveToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write day-type binary record
+    out.putString( m_name );
+    out.putDouble( m_work );
+    out.putInt( m_periods.size() );
+  }
+
+  /************************************* savePeriodsToBinary *************************************/
+  void savePeriodsToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write day-type work-periods as binary start and end milliseconds
+    for ( DayWorkPeriod period : m_periods )
+    {
+      out.putInt( period.m_start.milliseconds() );
+      out.putInt( period.m_end.milliseconds() );
+    }
+  }
+
   /***************************************** calcWorkMS ******************************************/
   private void calcWorkMS()
   {
@@ -376,9 +442,13 @@ public class Day
 
   /*************************************** millisecondsDone **************************************/
   public int millisecondsDone( Time time )
+  {
+    return millisecondsDone( time.milliseconds() );
+  }
+
+  public int millisecondsDone( int ms )
   {
     // return number of ms done from 00:00 to specified time
-    int ms = time.milliseconds();
     int done = 0;
 
     for ( DayWorkPeriod period : m_periods )
@@ -397,9 +467,14 @@ public class Day
 
   /*************************************** millisecondsToGo **************************************/
   public int millisecondsToGo( Time time )
+  {
+    return millisecondsToGo( time.milliseconds() );
+  }
+
+  public int millisecondsToGo( int ms )
   {
     // return number of ms work remaining from specified time to 24:00
-    return m_workMS - millisecondsDone( time );
+    return m_workMS - millisecondsDone( ms );
   }
 
   /********************************************* work ********************************************/
@@ -417,6 +492,11 @@ public class Day
 
   /******************************************* workToGo ******************************************/
   public double workToGo( Time from )
+  {
+    return workToGo( from.milliseconds() );
+  }
+
+  public double workToGo( int from )
   {
     // return number of work equivalent days remaining from specified time to 24:00
     return m_work - workDone( from );
@@ -424,8 +504,16 @@ public class Day
 
   /******************************************* workDone ******************************************/
   public double workDone( Time from )
+  {
+    return workDone( from.milliseconds() );
+  }
+
+  public double workDone( int from )
   {
     // return number of work equivalent days done from 00:00 to specified time
+    if ( m_workMS == 0 )
+      return 0.0;
+
     return m_work * millisecondsDone( from ) / m_workMS;
   }
 
@@ -487,8 +575,16 @@ public class Day
 
   public Time millisecondsForward( int from, int ms )
   {
+    int time = forward( from, ms );
+    return time < 0 ? null : Time.fromMilliseconds( time );
+  }
+
+  /******************************************* forward *******************************************/
+  public int forward( int from, int ms )
+  {
+    // return time of day after working forwards specified number of ms, or -1 if not in day
     if ( ms > m_workMS )
-      return null;
+      return -1;
 
     // work forwards specified number of ms
     for ( DayWorkPeriod period : m_periods )
@@ -500,12 +596,19 @@ public class Day
         from = period.m_start.milliseconds();
 
       if ( from + ms <= period.m_end.milliseconds() )
-        return Time.fromMilliseconds( from + ms );
+        return from + ms;
 
       ms -= period.m_end.milliseconds() - from;
     }
 
-    return null;
+    return -1;
+  }
+
+  /***************************************** forwardWork *****************************************/
+  public int forwardWork( int from, double work )
+  {
+    // return time of day after working forwards specified work equivalent days, or -1 if not in day
+    return forward( from, (int) ( work * m_workMS / m_work ) );
   }
 
   /************************************* millisecondsBackward ************************************/
@@ -521,8 +624,16 @@ public class Day
 
   public Time millisecondsBackward( int from, int ms )
   {
+    int time = backward( from, ms );
+    return time < 0 ? null : Time.fromMilliseconds( time );
+  }
+
+  /****************************************** backward *******************************************/
+  public int backward( int from, int ms )
+  {
+    // return time of day after working backwards specified number of ms, or -1 if not in day
     if ( ms > m_workMS )
-      return null;
+      return -1;
 
     // work backwards specified number of ms
     for ( int p = m_periods.size() - 1; p >= 0; p-- )
@@ -536,12 +647,19 @@ public class Day
         from = period.m_end.milliseconds();
 
       if ( from - ms >= period.m_start.milliseconds() )
-        return Time.fromMilliseconds( from - ms );
+        return from - ms;
 
       ms -= from - period.m_start.milliseconds();
     }
 
-    return null;
+    return -1;
+  }
+
+  /**************************************** backwardWork *****************************************/
+  public int backwardWork( int from, double work )
+  {
+    // return time of day after working backwards specified work equivalent days, or -1 if not in day
+    return backward( from, (int) ( work * m_workMS / m_work ) );
   }
 
   /***************************************** milliseconds ****************************************/
@@ -575,7 +693,7 @@ public class Day
   /******************************************** index ********************************************/
   public int index()
   {
-    return JPlanner.plan.index( this );
+    return m_plan.index( this );
   }
 
 }
\ No newline at end of file
@@ -18,13 +18,14 @@
 
 package rjc.jplanner.model;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.model.Day.DefaultDayTypes;
 
@@ -32,24 +33,47 @@ import rjc.jplanner.model.Day.DefaultDayTypes;
 /************************** Holds the complete list of plan day-types ****************************/
 /*************************************************************************************************/
 
-public class Days extends ArrayList<Day>
+public class Days extends IndexedList<Day>
 {
   private static final long serialVersionUID = 1L;
 
+  Plan                      m_plan; // plan these day-types belong to
+
+  /**************************************** constructor ******************************************/
+  public Days( Plan plan )
+  {
+    // construct empty list of day-types belonging to plan
+    m_plan = plan;
+  }
+
+  /****************************************** getIndex *******************************************/
+  @Override
+  int getIndex( Day day )
+  {
+    return day.m_index;
+  }
+
+  /****************************************** setIndex *******************************************/
+  @Override
+  void setIndex( Day day, int index )
+  {
+    day.m_index = index;
+  }
+
   /**************************************** initialise *******************************************/
   public void initialise()
   {
     // initialise list with default day-types
     clear();
     for ( DefaultDayTypes type : DefaultDayTypes.values() )
-      add( new Day( type ) );
+      add( new Day( m_plan, type ) );
   }
 
   /************************************* isDuplicateDayName **************************************/
   public boolean isDuplicateDayName( String txt, int skip )
   {
     // return true if txt is a duplicate another day-type name
-    txt = JPlanner.clean( txt );
+    txt = Utils.clean( txt );
     for ( int i = 0; i < size(); i++ )
     {
       if ( i == skip )
@@ -78,10 +102,10 @@ public class Days extends ArrayList<Day>
         switch ( xsr.getLocalName() )
         {
           case XmlLabels.XML_DAY:
-            add( new Day( xsr ) );
+            add( new Day( m_plan, xsr ) );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
 
@@ -98,6 +122,34 @@ public class Days extends ArrayList<Day>
     xsw.writeEndElement(); // XML_DAY_DATA
   }
 
+  /***************************************** loadBinary ******************************************/
+  public void loadBinary( PlanBinaryReader in ) throws IOException
+  {
+    // read binary day-type records, each followed by its work-periods in separate section
+    ByteBuffer records = in.section( PlanBinaryWriter.SECTION_DAYS, Day.BINARY_BYTES );
+    ByteBuffer periods = in.section( PlanBinaryWriter.SECTION_PERIODS, PlanBinaryWriter.PERIOD_BYTES );
+    int count = in.count( PlanBinaryWriter.SECTION_DAYS );
+    for ( int index = 0; index < count; index++ )
+      add( new Day( m_plan, in, records, periods ) );
+  }
+
+  /***************************************** writeBinary *****************************************/
+  public void writeBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write day-type records, then work-periods of all day-types
+    out.startSection( PlanBinaryWriter.SECTION_DAYS, size(), Day.BINARY_BYTES );
+    int periods = 0;
+    for ( Day day : this )
+    {
+      day.saveToBinary( out );
+      periods += day.numPeriods();
+    }
+
+    out.startSection( PlanBinaryWriter.SECTION_PERIODS, periods, PlanBinaryWriter.PERIOD_BYTES );
+    for ( Day day : this )
+      day.savePeriodsToBinary( out );
+  }
+
   /******************************************* fromName ******************************************/
   public Day fromName( String name )
   {
@@ -69,6 +69,17 @@ public class GanttData
 
   }
 
+  /****************************************** isCurrent ******************************************/
+  public boolean isCurrent( DateTime taskStart, DateTime taskEnd, boolean summary )
+  {
+    // return true if gantt data was set from these same date-times, so setting again is unnecessary
+    if ( start != taskStart || isSummary() != summary )
+      return false;
+    if ( end == null )
+      return !summary && taskStart.milliseconds() >= taskEnd.milliseconds();
+    return end.get( 0 ) == taskEnd;
+  }
+
   /****************************************** isSummary ******************************************/
   public boolean isSummary()
   {
@@ -0,0 +1,272 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/*************************************************************************************************/
+/************** List of plan elements where each element remembers its own position **************/
+/*************************************************************************************************/
+
+public abstract class IndexedList<E> extends ArrayList<E>
+{
+  private static final long serialVersionUID = 1L;
+
+  /****************************************** getIndex *******************************************/
+  abstract int getIndex( E element );
+
+  /****************************************** setIndex *******************************************/
+  abstract void setIndex( E element, int index );
+
+  /**************************************** beforeReorder ****************************************/
+  void beforeReorder()
+  {
+    // called before elements change position, subclasses that create elements on demand in get() can
+    // create any outstanding first, so this list only uses super.get() which never creates elements
+  }
+
+  /******************************************** index ********************************************/
+  public int index( E element )
+  {
+    // return index of element in constant time, or -1 if element not in this list
+    int index = getIndex( element );
+    if ( index >= 0 && index < size() && super.get( index ) == element )
+      return index;
+
+    return -1;
+  }
+
+  /******************************************** move *********************************************/
+  public void move( int from, int to )
+  {
+    // move element to new position, shuffling elements in between
+    beforeReorder();
+    E element = super.remove( from );
+    super.add( to, element );
+    reindex( Math.min( from, to ), Math.max( from, to ) + 1 );
+  }
+
+  /********************************************* add *********************************************/
+  @Override
+  public boolean add( E element )
+  {
+    // add element to end of list
+    super.add( element );
+    setIndex( element, size() - 1 );
+    assert isConsistent( size() - 1, size() );
+    return true;
+  }
+
+  @Override
+  public void add( int index, E element )
+  {
+    // insert element into list
+    beforeReorder();
+    super.add( index, element );
+    reindex( index, size() );
+  }
+
+  /******************************************** addAll *******************************************/
+  @Override
+  public boolean addAll( Collection<? extends E> elements )
+  {
+    // add elements to end of list
+    int from = size();
+    boolean changed = super.addAll( elements );
+    reindex( from, size() );
+    return changed;
+  }
+
+  @Override
+  public boolean addAll( int index, Collection<? extends E> elements )
+  {
+    // insert elements into list
+    beforeReorder();
+    boolean changed = super.addAll( index, elements );
+    reindex( index, size() );
+    return changed;
+  }
+
+  /********************************************* set *********************************************/
+  @Override
+  public E set( int index, E element )
+  {
+    // replace element in list
+    E old = super.set( index, element );
+    if ( old != null && old != element )
+      setIndex( old, -1 );
+    reindex( index, index + 1 );
+    return old;
+  }
+
+  /******************************************* remove ********************************************/
+  @Override
+  public E remove( int index )
+  {
+    // remove element from list
+    beforeReorder();
+    E old = super.remove( index );
+    if ( old != null )
+      setIndex( old, -1 );
+    reindex( index, size() );
+    return old;
+  }
+
+  @Override
+  public boolean remove( Object element )
+  {
+    // remove element from list, finding its position in constant time
+    @SuppressWarnings( "unchecked" )
+    int index = element == null ? indexOf( null ) : index( (E) element );
+    if ( index < 0 )
+      return false;
+
+    remove( index );
+    return true;
+  }
+
+  /******************************************** clear ********************************************/
+  @Override
+  public void clear()
+  {
+    // remove all elements from list
+    unindex( 0, size() );
+    super.clear();
+  }
+
+  /***************************************** removeRange *****************************************/
+  @Override
+  protected void removeRange( int from, int to )
+  {
+    // remove range of elements from list
+    beforeReorder();
+    unindex( from, to );
+    super.removeRange( from, to );
+    reindex( from, size() );
+  }
+
+  /****************************************** removeAll ******************************************/
+  @Override
+  public boolean removeAll( Collection<?> elements )
+  {
+    // remove elements then re-index whole list
+    beforeReorder();
+    unindex( 0, size() );
+    boolean changed = super.removeAll( elements );
+    reindex( 0, size() );
+    return changed;
+  }
+
+  /****************************************** retainAll ******************************************/
+  @Override
+  public boolean retainAll( Collection<?> elements )
+  {
+    // retain elements then re-index whole list
+    beforeReorder();
+    unindex( 0, size() );
+    boolean changed = super.retainAll( elements );
+    reindex( 0, size() );
+    return changed;
+  }
+
+  /****************************************** removeIf *******************************************/
+  @Override
+  public boolean removeIf( Predicate<? super E> filter )
+  {
+    // remove elements then re-index whole list
+    beforeReorder();
+    unindex( 0, size() );
+    boolean changed = super.removeIf( filter );
+    reindex( 0, size() );
+    return changed;
+  }
+
+  /********************************************* sort ********************************************/
+  @Override
+  public void sort( Comparator<? super E> comparator )
+  {
+    // sort elements then re-index whole list
+    beforeReorder();
+    super.sort( comparator );
+    reindex( 0, size() );
+  }
+
+  /***************************************** replaceAll ******************************************/
+  @Override
+  public void replaceAll( UnaryOperator<E> operator )
+  {
+    // replace elements then re-index whole list
+    beforeReorder();
+    unindex( 0, size() );
+    super.replaceAll( operator );
+    reindex( 0, size() );
+  }
+
+  /******************************************* subList *******************************************/
+  @Override
+  public List<E> subList( int from, int to )
+  {
+    // return read-only view, as changes through an ArrayList sub-list bypass re-indexing
+    return Collections.unmodifiableList( super.subList( from, to ) );
+  }
+
+  /******************************************* reindex *******************************************/
+  private void reindex( int from, int to )
+  {
+    // update stored index of elements in range
+    for ( int index = from; index < to; index++ )
+      if ( super.get( index ) != null )
+        setIndex( super.get( index ), index );
+    assert isConsistent( from, to );
+  }
+
+  /******************************************* unindex *******************************************/
+  private void unindex( int from, int to )
+  {
+    // mark elements in range as no longer in list, any that remain are re-indexed afterwards
+    for ( int index = from; index < to; index++ )
+      if ( super.get( index ) != null )
+        setIndex( super.get( index ), -1 );
+  }
+
+  /**************************************** isConsistent *****************************************/
+  public boolean isConsistent()
+  {
+    // return true if every element's stored index matches its position, full check for tests
+    return isConsistent( 0, size() );
+  }
+
+  private boolean isConsistent( int from, int to )
+  {
+    // return true if stored index of each element in range matches its position, asserted after each
+    // change with java -ea so only the changed range is checked
+    for ( int index = from; index < to; index++ )
+      if ( super.get( index ) != null && getIndex( super.get( index ) ) != index )
+        return false;
+
+    return true;
+  }
+
+}
@@ -18,11 +18,14 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 import rjc.jplanner.command.UndoStack;
 
@@ -50,16 +53,18 @@ public class Plan
   public Calendars            calendars;             // list of plan calendars
   public Days                 daytypes;              // list of plan day types
 
+  static final int            BINARY_BYTES = 40;     // binary record of strings, date-times and calendar
+
   private static final String NOTES_CR = "#NCR!%#"; // because XMLStreamWriter doesn't encode new-lines correctly
 
   /**************************************** constructor ******************************************/
   public Plan()
   {
     // construct empty but usable Plan
-    tasks = new Tasks();
-    resources = new Resources();
-    calendars = new Calendars();
-    daytypes = new Days();
+    tasks = new Tasks( this );
+    resources = new Resources( this );
+    calendars = new Calendars( this );
+    daytypes = new Days( this );
 
     m_undostack = new UndoStack();
 
@@ -102,7 +107,7 @@ public class Plan
     // return number of not-null tasks in plan (skipping special task 0)
     int count = 0;
     for ( int id = 1; id < tasks.size(); id++ )
-      if ( !tasks.get( id ).isNull() )
+      if ( !tasks.isNull( id ) )
         count++;
 
     return count;
@@ -157,7 +162,7 @@ public class Plan
 
   public int index( Task task )
   {
-    return tasks.indexOf( task );
+    return tasks.index( task );
   }
 
   /****************************************** resource *******************************************/
@@ -169,7 +174,7 @@ public class Plan
 
   public int index( Resource res )
   {
-    return resources.indexOf( res );
+    return resources.index( res );
   }
 
   /****************************************** calendar *******************************************/
@@ -181,7 +186,7 @@ public class Plan
 
   public int index( Calendar cal )
   {
-    return calendars.indexOf( cal );
+    return calendars.index( cal );
   }
 
   /********************************************* day *********************************************/
@@ -193,7 +198,7 @@ public class Plan
 
   public int index( Day day )
   {
-    return daytypes.indexOf( day );
+    return daytypes.index( day );
   }
 
   /******************************************** title ********************************************/
@@ -308,12 +313,14 @@ public class Plan
   public void setStart( DateTime start )
   {
     m_start = start;
+    tasks.rescheduleAll();
   }
 
   /****************************************** setCalendar ****************************************/
   public void setCalendar( Calendar cal )
   {
     m_calendar = cal;
+    tasks.rescheduleAll();
   }
 
   /*************************************** setDatetimeFormat *************************************/
@@ -408,7 +415,7 @@ public class Plan
             tasks.loadXML( xsr );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
 
@@ -454,7 +461,7 @@ public class Plan
           m_notes = xsr.getAttributeValue( i ).replaceAll( NOTES_CR, "\n" );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
@@ -480,11 +487,68 @@ public class Plan
         case XmlLabels.XML_SAVEWHERE:
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
   }
 
+  /***************************************** saveBinary ******************************************/
+  public void saveBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write plan binary record including who and when saved, then day, calendar, resource, and task data
+    out.startSection( PlanBinaryWriter.SECTION_PLAN, 1, BINARY_BYTES );
+    out.putString( m_title );
+    out.putString( m_notes );
+    out.putString( m_datetimeFormat );
+    out.putString( m_dateFormat );
+    out.putString( System.getProperty( "user.name" ) );
+    out.putDateTime( m_start );
+    out.putDateTime( DateTime.now() );
+    out.putInt( index( m_calendar ) );
+
+    daytypes.writeBinary( out );
+    calendars.writeBinary( out );
+    resources.writeBinary( out );
+    tasks.writeBinary( out );
+  }
+
+  /***************************************** loadBinary ******************************************/
+  public void loadBinary( PlanBinaryReader in, String filename, String fileloc ) throws IOException
+  {
+    // read all of plan from binary file
+    loadBinary( in, filename, fileloc, false );
+  }
+
+  public void loadBinary( PlanBinaryReader in, String filename, String fileloc, boolean lazy ) throws IOException
+  {
+    // read plan binary record, then day, calendar, resource, and task data, if lazy only creating
+    // task objects when first needed so memory used grows with tasks viewed, edited or scheduled
+    ByteBuffer record = in.section( PlanBinaryWriter.SECTION_PLAN, BINARY_BYTES );
+    m_title = in.string( record );
+    m_notes = in.string( record );
+    m_datetimeFormat = in.string( record );
+    m_dateFormat = in.string( record );
+    m_savedBy = in.string( record );
+    m_start = PlanBinaryReader.dateTime( record );
+    m_savedWhen = PlanBinaryReader.dateTime( record );
+    int calendarId = record.getInt();
+
+    daytypes.loadBinary( in );
+    calendars.loadBinary( in );
+    resources.loadBinary( in );
+    tasks.loadBinary( in, lazy );
+    in.release();
+
+    // if calendar-id negative, default to first calendar
+    if ( calendarId < 0 )
+      m_calendar = calendar( 0 );
+    else
+      m_calendar = calendar( calendarId );
+
+    m_filename = filename;
+    m_fileLocation = fileloc;
+  }
+
   /******************************************* errors ********************************************/
   public String errors()
   {
@@ -523,10 +587,42 @@ public class Plan
   public void schedule()
   {
     // schedule the plan!
-    JPlanner.trace( "============================== SCHEDULE started ==============================" );
-    resources.clearAllocations();
-    tasks.schedule();
-    JPlanner.trace( "============================== SCHEDULE finished ==============================" );
+    schedule( false );
+  }
+
+  public void schedule( boolean parallel )
+  {
+    // schedule the plan, if parallel then independent groups of tasks are scheduled concurrently
+    Utils.trace( "============================== SCHEDULE started ==============================" );
+    ScheduleRun run = new ScheduleRun( this, true, parallel );
+    run.compute();
+    run.apply();
+    Utils.trace( "============================== SCHEDULE finished ==============================" );
+  }
+
+  /***************************************** reschedule ******************************************/
+  public void reschedule()
+  {
+    // re-schedule only tasks affected by changes since last schedule if possible, otherwise whole plan
+    if ( !tasks.canReschedule() )
+    {
+      schedule();
+      return;
+    }
+
+    Utils.trace( "============================= RESCHEDULE started =============================" );
+    ScheduleRun run = scheduleRun();
+    run.compute();
+    run.apply();
+    Utils.trace( "============================= RESCHEDULE finished =============================" );
+  }
+
+  /***************************************** scheduleRun *****************************************/
+  public ScheduleRun scheduleRun()
+  {
+    // return snapshot for re-scheduling tasks affected by changes since last schedule if possible,
+    // otherwise whole plan, which can be computed away from plan and applied later
+    return new ScheduleRun( this, !tasks.canReschedule(), false );
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/*************************************************************************************************/
+/************************** Reads plans from memory-mapped binary files **************************/
+/*************************************************************************************************/
+
+// whole file is memory-mapped, so records are only read from disk as they are used, see PlanBinaryWriter
+// for the file layout
+
+public class PlanBinaryReader
+{
+  private MappedByteBuffer m_map;     // memory-mapped file contents
+  private long[]           m_offset;  // file offset of each section
+  private int[]            m_count;   // record count of each section
+  private int[]            m_bytes;   // bytes per record of each section
+
+  private byte[]           m_utf8;    // UTF-8 bytes of all strings in table
+  private int[]            m_ends;    // end of each string in UTF-8 bytes
+  private String[]         m_strings; // strings already decoded, null if not yet
+
+  /***************************************** constructor *****************************************/
+  public PlanBinaryReader( File file ) throws IOException
+  {
+    // map file into memory and check header, the mapping remains valid after channel is closed
+    try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ))
+    {
+      if ( channel.size() < PlanBinaryWriter.HEADER_BYTES || channel.size() > Integer.MAX_VALUE )
+        throw new IOException( "Invalid binary plan size " + channel.size() );
+      m_map = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+      m_map.order( ByteOrder.LITTLE_ENDIAN );
+    }
+
+    if ( m_map.getInt( 0 ) != PlanBinaryWriter.MAGIC )
+      throw new IOException( "Not a binary plan" );
+    if ( m_map.getInt( 4 ) != PlanBinaryWriter.VERSION )
+      throw new IOException( "Unsupported binary plan version " + m_map.getInt( 4 ) );
+    if ( m_map.getInt( 8 ) != PlanBinaryWriter.SECTIONS )
+      throw new IOException( "Unexpected binary plan section count " + m_map.getInt( 8 ) );
+
+    // read section table checking each section lies within file
+    m_offset = new long[PlanBinaryWriter.SECTIONS];
+    m_count = new int[PlanBinaryWriter.SECTIONS];
+    m_bytes = new int[PlanBinaryWriter.SECTIONS];
+    for ( int section = 0; section < PlanBinaryWriter.SECTIONS; section++ )
+    {
+      int pos = 16 + section * 16;
+      m_offset[section] = m_map.getLong( pos );
+      m_count[section] = m_map.getInt( pos + 8 );
+      m_bytes[section] = m_map.getInt( pos + 12 );
+      if ( m_offset[section] < PlanBinaryWriter.HEADER_BYTES || m_count[section] < 0 || m_bytes[section] < 0
+          || m_offset[section] + (long) m_count[section] * m_bytes[section] > m_map.capacity() )
+        throw new IOException( "Invalid binary plan section " + section );
+    }
+
+    // read string table end offsets checking they never decrease, then UTF-8 bytes which must lie
+    // within file, strings are decoded when first used
+    int strings = m_count[PlanBinaryWriter.SECTION_STRINGS];
+    ByteBuffer table = section( PlanBinaryWriter.SECTION_STRINGS, 4 );
+    m_ends = new int[strings];
+    int bytes = 0;
+    for ( int index = 0; index < strings; index++ )
+    {
+      m_ends[index] = table.getInt();
+      if ( m_ends[index] < bytes )
+        throw new IOException( "Invalid binary plan string table end " + index );
+      bytes = m_ends[index];
+    }
+    if ( table.remaining() < bytes )
+      throw new IOException( "Invalid binary plan string table" );
+    m_utf8 = new byte[bytes];
+    table.get( m_utf8 );
+    m_strings = new String[strings];
+  }
+
+  /******************************************** count ********************************************/
+  int count( int section )
+  {
+    // return number of records in section
+    return m_count[section];
+  }
+
+  /******************************************* section *******************************************/
+  ByteBuffer section( int section, int bytes ) throws IOException
+  {
+    // return buffer positioned at start of section, checking records are expected size
+    if ( m_bytes[section] != bytes && m_count[section] > 0 )
+      throw new IOException( "Binary plan section " + section + " records are " + m_bytes[section] + " bytes" );
+
+    ByteBuffer buffer = m_map.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+    buffer.position( (int) m_offset[section] );
+    return buffer;
+  }
+
+  /******************************************* string ********************************************/
+  String string( ByteBuffer buffer ) throws IOException
+  {
+    // read string table index and return string
+    return string( checkString( buffer.getInt() ) );
+  }
+
+  String string( int index )
+  {
+    // return string at string table index, or null if index is -1
+    if ( index < 0 )
+      return null;
+
+    String str = m_strings[index];
+    if ( str == null )
+    {
+      int start = index == 0 ? 0 : m_ends[index - 1];
+      str = new String( m_utf8, start, m_ends[index] - start, StandardCharsets.UTF_8 );
+      m_strings[index] = str;
+    }
+    return str;
+  }
+
+  /***************************************** checkString *****************************************/
+  int checkString( int index ) throws IOException
+  {
+    // return index if -1 for null or within string table, so later lookups cannot fail
+    if ( index < -1 || index >= m_ends.length )
+      throw new IOException( "Invalid binary plan string index " + index );
+    return index;
+  }
+
+  /******************************************* release *******************************************/
+  void release()
+  {
+    // drop file mapping once all sections read, so file is unmapped when garbage collected and
+    // can be replaced, the string table remains available to tasks that are loaded lazily
+    m_map = null;
+  }
+
+  /******************************************** date *********************************************/
+  static Date date( ByteBuffer buffer )
+  {
+    // read epoch day and return date, or null if minimum value
+    int epochday = buffer.getInt();
+    return epochday == Integer.MIN_VALUE ? null : new Date( epochday );
+  }
+
+  /****************************************** dateTime *******************************************/
+  static DateTime dateTime( ByteBuffer buffer )
+  {
+    // read epoch milliseconds and return date-time
+    return dateTime( buffer.getLong() );
+  }
+
+  static DateTime dateTime( long ms )
+  {
+    // return date-time for epoch milliseconds, or null if minimum value
+    return ms == Long.MIN_VALUE ? null : new DateTime( ms );
+  }
+
+  /****************************************** timeSpan *******************************************/
+  static TimeSpan timeSpan( ByteBuffer buffer )
+  {
+    // read number and units and return time-span exactly as written
+    double num = buffer.getDouble();
+    return TimeSpan.exact( num, buffer.getChar() );
+  }
+
+}
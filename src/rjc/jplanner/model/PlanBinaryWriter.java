@@ -0,0 +1,302 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import rjc.jplanner.XmlFileWriter;
+
+/*************************************************************************************************/
+/***************************** Writes plans as compact binary files ******************************/
+/*************************************************************************************************/
+
+// file is a fixed size header, then a section for each kind of record, ending with the string table
+// header is magic, version, section count, then offset, record count and record bytes of each section
+// records are fixed width so any record can be found directly, lists such as a task's predecessors are
+// counted in the owner's record and follow on from the previous owner's in a section of their own
+// strings are stored as string table index (-1 for null), the table being the end offset of each string
+// followed by all their UTF-8 bytes, date-times are epoch milliseconds and dates are epoch days (minimum
+// value for null), and time-spans are number and units
+
+public class PlanBinaryWriter
+{
+  public static final String EXTENSION         = ".jpb";      // file name extension for binary plans
+  public static final int    MAGIC             = 0x4A50424E;  // "JPBN"
+  public static final int    VERSION           = 1;
+
+  static final int           SECTION_PLAN      = 0;
+  static final int           SECTION_DAYS      = 1;
+  static final int           SECTION_PERIODS   = 2;
+  static final int           SECTION_CALENDARS = 3;
+  static final int           SECTION_NORMALS   = 4;
+  static final int           SECTION_EXCEPTS   = 5;
+  static final int           SECTION_RESOURCES = 6;
+  static final int           SECTION_TASKS     = 7;
+  static final int           SECTION_ASSIGNS   = 8;
+  static final int           SECTION_EDGES     = 9;
+  static final int           SECTION_STRINGS   = 10;
+  static final int           SECTIONS          = 11;
+
+  static final int           HEADER_BYTES      = 16 + SECTIONS * 16;
+  static final int           PERIOD_BYTES      = 8;           // start and end milliseconds in day
+  static final int           NORMAL_BYTES      = 4;           // day-type index
+  static final int           EXCEPT_BYTES      = 8;           // epoch day and day-type index
+  static final int           ASSIGN_BYTES      = 8;           // resource tag and maximum quantity
+  static final int           EDGE_BYTES        = 19;          // task, predecessor task, type, lag
+
+  private static final int   BUFFER_SIZE       = 1 << 16;
+
+  private FileChannel        m_channel;                       // channel to file being written
+  private ByteBuffer         m_buffer;                        // buffer of bytes not yet written to channel
+  private long               m_written;                       // bytes written to channel so far
+  private long[]             m_offset;                        // file offset of each section
+  private int[]              m_count;                         // record count of each section
+  private int[]              m_bytes;                         // bytes per record of each section
+  private int                m_section = -1;                  // section being written
+
+  private HashMap<String, Integer> m_strings;           // index of each string in string table
+  private ByteArrayOutputStream    m_utf8;              // UTF-8 bytes of all strings in table
+  private int[]                    m_ends;              // end of each string in UTF-8 bytes
+
+  /******************************************** write ********************************************/
+  public static long write( Plan plan, File file ) throws IOException
+  {
+    // write plan to temporary binary file alongside, then replace file with it so file is never
+    // partly written, returning number of bytes written
+    File target = file.getAbsoluteFile();
+    File temp = XmlFileWriter.temporaryFile( target );
+    PlanBinaryWriter out = new PlanBinaryWriter( temp );
+    boolean replaced = false;
+    try
+    {
+      plan.saveBinary( out );
+      long bytes = out.finish();
+      out.m_channel.close();
+      XmlFileWriter.replace( temp, target );
+      replaced = true;
+      return bytes;
+    }
+    finally
+    {
+      out.m_channel.close();
+      if ( !replaced )
+        temp.delete();
+    }
+  }
+
+  /***************************************** constructor *****************************************/
+  private PlanBinaryWriter( File file ) throws IOException
+  {
+    // open file for writing, leaving space for header which is written last
+    m_channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING );
+    m_buffer = ByteBuffer.allocate( BUFFER_SIZE ).order( ByteOrder.LITTLE_ENDIAN );
+    m_offset = new long[SECTIONS];
+    m_count = new int[SECTIONS];
+    m_bytes = new int[SECTIONS];
+
+    m_strings = new HashMap<String, Integer>();
+    m_utf8 = new ByteArrayOutputStream();
+    m_ends = new int[1024];
+
+    m_buffer.put( new byte[HEADER_BYTES] );
+  }
+
+  /**************************************** startSection *****************************************/
+  void startSection( int section, int count, int bytes )
+  {
+    // start writing section of given number of fixed width records
+    checkSection();
+    m_section = section;
+    m_offset[section] = position();
+    m_count[section] = count;
+    m_bytes[section] = bytes;
+  }
+
+  /**************************************** checkSection *****************************************/
+  private void checkSection()
+  {
+    // check previous section was written with expected number of bytes
+    if ( m_section >= 0 && position() != m_offset[m_section] + (long) m_count[m_section] * m_bytes[m_section] )
+      throw new IllegalStateException( "Section " + m_section + " records not " + m_bytes[m_section] + " bytes" );
+  }
+
+  /****************************************** position *******************************************/
+  private long position()
+  {
+    // return file offset of next byte to be written
+    return m_written + m_buffer.position();
+  }
+
+  /******************************************* ensure ********************************************/
+  private void ensure( int bytes ) throws IOException
+  {
+    // make sure buffer has room for given number of bytes, writing buffer to channel if needed
+    if ( m_buffer.remaining() < bytes )
+      flush();
+  }
+
+  /******************************************** flush ********************************************/
+  private void flush() throws IOException
+  {
+    // write buffer contents to channel
+    m_buffer.flip();
+    while ( m_buffer.hasRemaining() )
+      m_written += m_channel.write( m_buffer );
+    m_buffer.clear();
+  }
+
+  /******************************************* putByte *******************************************/
+  void putByte( int value ) throws IOException
+  {
+    ensure( 1 );
+    m_buffer.put( (byte) value );
+  }
+
+  /******************************************* putChar *******************************************/
+  void putChar( char value ) throws IOException
+  {
+    ensure( 2 );
+    m_buffer.putChar( value );
+  }
+
+  /******************************************* putInt ********************************************/
+  void putInt( int value ) throws IOException
+  {
+    ensure( 4 );
+    m_buffer.putInt( value );
+  }
+
+  /******************************************* putLong *******************************************/
+  void putLong( long value ) throws IOException
+  {
+    ensure( 8 );
+    m_buffer.putLong( value );
+  }
+
+  /****************************************** putFloat *******************************************/
+  void putFloat( float value ) throws IOException
+  {
+    ensure( 4 );
+    m_buffer.putFloat( value );
+  }
+
+  /****************************************** putDouble ******************************************/
+  void putDouble( double value ) throws IOException
+  {
+    ensure( 8 );
+    m_buffer.putDouble( value );
+  }
+
+  /****************************************** putZeros *******************************************/
+  void putZeros( int bytes ) throws IOException
+  {
+    // write given number of zero bytes, used for unused fields of null records
+    for ( int count = 0; count < bytes; count++ )
+      putByte( 0 );
+  }
+
+  /****************************************** putString ******************************************/
+  void putString( String str ) throws IOException
+  {
+    // write index of string in string table, adding string to table if not already there
+    if ( str == null )
+    {
+      putInt( -1 );
+      return;
+    }
+
+    Integer index = m_strings.get( str );
+    if ( index == null )
+    {
+      index = m_strings.size();
+      m_strings.put( str, index );
+      byte[] utf8 = str.getBytes( StandardCharsets.UTF_8 );
+      m_utf8.write( utf8, 0, utf8.length );
+      if ( index == m_ends.length )
+        m_ends = Arrays.copyOf( m_ends, index * 2 );
+      m_ends[index] = m_utf8.size();
+    }
+    putInt( index );
+  }
+
+  /******************************************* putDate *******************************************/
+  void putDate( Date date ) throws IOException
+  {
+    putInt( date == null ? Integer.MIN_VALUE : date.epochday() );
+  }
+
+  /***************************************** putDateTime *****************************************/
+  void putDateTime( DateTime dt ) throws IOException
+  {
+    putLong( dt == null ? Long.MIN_VALUE : dt.milliseconds() );
+  }
+
+  /***************************************** putTimeSpan *****************************************/
+  void putTimeSpan( TimeSpan ts ) throws IOException
+  {
+    putDouble( ts.number() );
+    putChar( ts.units() );
+  }
+
+  /******************************************* finish ********************************************/
+  private long finish() throws IOException
+  {
+    // write string table as end offsets then UTF-8 bytes, then header, returning file size
+    int strings = m_strings.size();
+    startSection( SECTION_STRINGS, strings, 4 );
+    for ( int index = 0; index < strings; index++ )
+      putInt( m_ends[index] );
+    m_section = -1;
+
+    flush();
+    ByteBuffer utf8 = ByteBuffer.wrap( m_utf8.toByteArray() );
+    while ( utf8.hasRemaining() )
+      m_written += m_channel.write( utf8 );
+
+    ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+    header.putInt( MAGIC );
+    header.putInt( VERSION );
+    header.putInt( SECTIONS );
+    header.putInt( 0 );
+    for ( int section = 0; section < SECTIONS; section++ )
+    {
+      header.putLong( m_offset[section] );
+      header.putInt( m_count[section] );
+      header.putInt( m_bytes[section] );
+    }
+    header.flip();
+    m_channel.position( 0 );
+    while ( header.hasRemaining() )
+      m_channel.write( header );
+
+    m_channel.force( true );
+    return m_written;
+  }
+
+}
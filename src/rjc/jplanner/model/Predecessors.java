@@ -18,11 +18,10 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 
-import rjc.jplanner.JPlanner;
-
 /*************************************************************************************************/
 /********************** Task predecessors shows dependencies on other tasks **********************/
 /*************************************************************************************************/
@@ -35,6 +34,10 @@ public class Predecessors
   public static final String TYPE_FINISH_FINISH = "FF";
   public static final String TYPE_DEFAULT       = TYPE_FINISH_START;
 
+  // predecessor types in order of their number in binary files
+  static final String[]        TYPES           = { TYPE_FINISH_START, TYPE_START_START, TYPE_START_FINISH,
+      TYPE_FINISH_FINISH };
+
   public class Predecessor
   {
     public Task     task;
@@ -44,66 +47,81 @@ public class Predecessors
     @Override
     public String toString()
     {
-      String str = Integer.toString( task.index() );
-      if ( type != TYPE_DEFAULT || lag.number() != 0.0 )
-      {
-        str += type;
-        if ( lag.number() > 0.0 )
-          str += "+";
-        if ( lag.number() != 0.0 )
-          str += lag.toString();
-      }
-      return str;
+      return Predecessors.toString( task.index(), type, lag );
     }
   }
 
+  private Plan                   m_plan;  // plan containing the predecessor tasks
   private ArrayList<Predecessor> m_preds = new ArrayList<Predecessor>();
 
   /**************************************** constructor ******************************************/
-  public Predecessors()
+  public Predecessors( Plan plan )
   {
-    // nothing needs to be done
+    // empty predecessors for task in plan
+    m_plan = plan;
   }
 
   /**************************************** constructor ******************************************/
-  public Predecessors( String text )
+  public Predecessors( Plan plan, String text )
   {
-    // split text into individual predecessors
-    for ( String part : text.split( "," ) )
+    this( plan );
+
+    // scan text for comma separated predecessors without splitting into intermediate strings
+    int next = 0;
+    while ( next < text.length() )
     {
-      // split part into task, predecessor type and lag
-      part = part.trim();
-      if ( part.isEmpty() )
+      // find trimmed extent of next part
+      int start = next;
+      int end = text.indexOf( ',', start );
+      if ( end < 0 )
+        end = text.length();
+      next = end + 1;
+      while ( start < end && text.charAt( start ) <= ' ' )
+        start++;
+      while ( end > start && text.charAt( end - 1 ) <= ' ' )
+        end--;
+      if ( start == end )
         continue;
 
-      int digit = 0;
-      while ( part.length() > digit && Character.isDigit( part.charAt( digit ) ) )
-        digit++;
+      // split part into task, predecessor type and lag
+      int digit = start;
+      int taskNum = 0;
+      while ( digit < end && Character.isDigit( text.charAt( digit ) ) )
+      {
+        // reject task numbers that overflow int, as Integer.parseInt did
+        int value = Character.digit( text.charAt( digit++ ), 10 );
+        if ( taskNum > ( Integer.MAX_VALUE - value ) / 10 )
+          throw new NumberFormatException( "Task number too large '" + text.substring( start, end ) + "'" );
+        taskNum = taskNum * 10 + value;
+      }
+      if ( digit == start )
+        throw new NumberFormatException( "Missing task number '" + text.substring( start, end ) + "'" );
 
-      int taskNum = Integer.parseInt( part.substring( 0, digit ) );
       String type = TYPE_DEFAULT;
       TimeSpan lag = new TimeSpan();
 
-      part = part.substring( digit );
-      part = part.trim();
-      if ( !part.isEmpty() )
+      while ( digit < end && text.charAt( digit ) <= ' ' )
+        digit++;
+      if ( digit < end )
       {
-        String start = part.substring( 0, 2 );
+        if ( end - digit < 2 )
+          throw new IllegalArgumentException( "Invalid type '" + text.substring( digit, end ) + "'" );
 
-        if ( start.equalsIgnoreCase( TYPE_FINISH_START ) )
+        if ( text.regionMatches( true, digit, TYPE_FINISH_START, 0, 2 ) )
           type = TYPE_FINISH_START;
-        if ( start.equalsIgnoreCase( TYPE_START_START ) )
+        if ( text.regionMatches( true, digit, TYPE_START_START, 0, 2 ) )
           type = TYPE_START_START;
-        if ( start.equalsIgnoreCase( TYPE_START_FINISH ) )
+        if ( text.regionMatches( true, digit, TYPE_START_FINISH, 0, 2 ) )
           type = TYPE_START_FINISH;
-        if ( start.equalsIgnoreCase( TYPE_FINISH_FINISH ) )
+        if ( text.regionMatches( true, digit, TYPE_FINISH_FINISH, 0, 2 ) )
           type = TYPE_FINISH_FINISH;
 
-        lag = new TimeSpan( part.substring( 2 ) );
+        if ( end - digit > 2 )
+          lag = new TimeSpan( text.substring( digit + 2, end ) );
       }
 
       Predecessor pred = new Predecessor();
-      pred.task = JPlanner.plan.task( taskNum );
+      pred.task = m_plan.task( taskNum );
       pred.type = type;
       pred.lag = lag;
       m_preds.add( pred );
@@ -127,24 +145,23 @@ public class Predecessors
     return str;
   }
 
-  /************************************** hasPredecessor *****************************************/
-  public boolean hasPredecessor( Task other )
+  static String toString( int taskNum, String type, TimeSpan lag )
   {
-    // return true if task is a predecessor
-    for ( Predecessor pred : m_preds )
+    // return string equivalent of single predecessor
+    String str = Integer.toString( taskNum );
+    if ( type != TYPE_DEFAULT || lag.number() != 0.0 )
     {
-      if ( pred.task == other )
-        return true;
-
-      if ( pred.task.hasPredecessor( other ) )
-        return true;
+      str += type;
+      if ( lag.number() > 0.0 )
+        str += "+";
+      if ( lag.number() != 0.0 )
+        str += lag.toString();
     }
-
-    return false;
+    return str;
   }
 
   /******************************************** errors *******************************************/
-  public static String errors( String text, int thisTaskNum )
+  public static String errors( Plan plan, String text, int thisTaskNum )
   {
     // split text into individual predecessors
     StringBuilder error = new StringBuilder();
@@ -169,7 +186,7 @@ public class Predecessors
 
       // check number is non-null task
       int taskNum = Integer.parseInt( part.substring( 0, digit ) );
-      if ( taskNum >= JPlanner.plan.tasksCount() || JPlanner.plan.task( taskNum ).isNull() )
+      if ( taskNum >= plan.tasksCount() || plan.task( taskNum ).isNull() )
       {
         error.append( '\'' ).append( taskNum ).append( "' is a null task.  " );
         continue;
@@ -183,16 +200,16 @@ public class Predecessors
       }
 
       // check number is not sub-task if this task is a summary
-      if ( JPlanner.plan.task( thisTaskNum ).isSummary() && taskNum > thisTaskNum
-          && taskNum <= JPlanner.plan.task( thisTaskNum ).summaryEnd() )
+      if ( plan.task( thisTaskNum ).isSummary() && taskNum > thisTaskNum
+          && taskNum <= plan.task( thisTaskNum ).summaryEnd() )
       {
         error.append( '\'' ).append( taskNum ).append( "' is a sub-task of this summary.  " );
         continue;
       }
 
       // check number is not summary containing this task
-      if ( JPlanner.plan.task( taskNum ).isSummary() && thisTaskNum > taskNum
-          && thisTaskNum <= JPlanner.plan.task( taskNum ).summaryEnd() )
+      if ( plan.task( taskNum ).isSummary() && thisTaskNum > taskNum
+          && thisTaskNum <= plan.task( taskNum ).summaryEnd() )
       {
         error.append( '\'' ).append( taskNum ).append( "' is a summary containing this sub-task.  " );
         continue;
@@ -206,7 +223,7 @@ public class Predecessors
       }
 
       // check number is does not cause circular reference
-      if ( JPlanner.plan.task( taskNum ).hasPredecessor( JPlanner.plan.task( thisTaskNum ) ) )
+      if ( plan.tasks.createsCycle( plan.task( thisTaskNum ), plan.task( taskNum ) ) )
       {
         error.append( '\'' ).append( taskNum ).append( "' gives a circular reference to this task.  " );
         continue;
@@ -262,7 +279,7 @@ public class Predecessors
         iter.remove();
 
       // summaries not allowed to depend on a sub-task
-      Task thisTask = JPlanner.plan.task( thisTaskNum );
+      Task thisTask = m_plan.task( thisTaskNum );
       if ( thisTask.isSummary() && thisTaskNum < predNum && thisTask.summaryEnd() >= predNum )
         iter.remove();
     }
@@ -299,52 +316,36 @@ public class Predecessors
   }
 
   /******************************************** start ********************************************/
-  public DateTime start()
+  public long start()
   {
-    // return task start based on predecessors
-    Calendar cal = JPlanner.plan.calendar();
-    DateTime start = DateTime.MIN_VALUE;
+    // return task start based on predecessors as epoch milliseconds
+    Calendar cal = m_plan.calendar();
+    long start = DateTime.MIN_VALUE.milliseconds();
     for ( Predecessor pred : m_preds )
     {
       if ( pred.type == TYPE_FINISH_START )
-      {
-        DateTime check = cal.workTimeSpan( pred.task.end(), pred.lag );
-        if ( check.milliseconds() > start.milliseconds() )
-          start = check;
-      }
+        start = Math.max( start, cal.workTimeSpan( pred.task.end().milliseconds(), pred.lag ) );
 
       if ( pred.type == TYPE_START_START )
-      {
-        DateTime check = cal.workTimeSpan( pred.task.start(), pred.lag );
-        if ( check.milliseconds() > start.milliseconds() )
-          start = check;
-      }
+        start = Math.max( start, cal.workTimeSpan( pred.task.start().milliseconds(), pred.lag ) );
     }
 
     return start;
   }
 
   /********************************************* end *********************************************/
-  public DateTime end()
+  public long end()
   {
-    // return task end based on predecessors
-    Calendar cal = JPlanner.plan.calendar();
-    DateTime end = DateTime.MAX_VALUE;
+    // return task end based on predecessors as epoch milliseconds
+    Calendar cal = m_plan.calendar();
+    long end = DateTime.MAX_VALUE.milliseconds();
     for ( Predecessor pred : m_preds )
     {
       if ( pred.type == TYPE_FINISH_FINISH )
-      {
-        DateTime check = cal.workTimeSpan( pred.task.end(), pred.lag );
-        if ( check.milliseconds() < end.milliseconds() )
-          end = check;
-      }
+        end = Math.min( end, cal.workTimeSpan( pred.task.end().milliseconds(), pred.lag ) );
 
       if ( pred.type == TYPE_START_FINISH )
-      {
-        DateTime check = cal.workTimeSpan( pred.task.start(), pred.lag );
-        if ( check.milliseconds() < end.milliseconds() )
-          end = check;
-      }
+        end = Math.min( end, cal.workTimeSpan( pred.task.start().milliseconds(), pred.lag ) );
     }
 
     return end;
@@ -362,4 +363,32 @@ public class Predecessors
     return m_preds.get( index );
   }
 
+  /********************************************* add *********************************************/
+  void add( Task task, int type, TimeSpan lag )
+  {
+    // add predecessor with type given as number, as read from binary file
+    Predecessor pred = new Predecessor();
+    pred.task = task;
+    pred.type = TYPES[type];
+    pred.lag = lag;
+    m_preds.add( pred );
+  }
+
+  /**************************************** saveToBinary *****************************************/
+  void saveToBinary( PlanBinaryWriter out, int thisTaskNum ) throws IOException
+  {
+    // write each predecessor as binary edge record of task, predecessor task, type number and lag
+    for ( Predecessor pred : m_preds )
+    {
+      int type = 0;
+      while ( TYPES[type] != pred.type )
+        type++;
+
+      out.putInt( thisTaskNum );
+      out.putInt( pred.task.index() );
+      out.putByte( type );
+      out.putTimeSpan( pred.lag );
+    }
+  }
+
 }
@@ -18,11 +18,14 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 
 /*************************************************************************************************/
@@ -45,6 +48,8 @@ public class Resource
   private String          m_comment;            // free text
 
   public ResourceWork     m_work;               // resource work on specified tasks
+  Plan                    m_plan;               // plan this resource belongs to
+  int                     m_index = -1;         // index of resource in plan list, maintained by Resources
 
   public static final int SECTION_INITIALS = 0;
   public static final int SECTION_NAME     = 1;
@@ -60,18 +65,21 @@ public class Resource
   public static final int SECTION_COMMENT  = 11;
   public static final int SECTION_MAX      = 11;
 
+  static final int        BINARY_BYTES     = 56; // binary record of tags, dates, numbers, calendar and comment
+
   /**************************************** constructor ******************************************/
-  public Resource()
+  public Resource( Plan plan )
   {
     // initialise private variables
+    m_plan = plan;
     m_availability = 1.0;
     m_work = new ResourceWork( this );
   }
 
   /**************************************** constructor ******************************************/
-  public Resource( XMLStreamReader xsr ) throws XMLStreamException
+  public Resource( Plan plan, XMLStreamReader xsr ) throws XMLStreamException
   {
-    this();
+    this( plan );
     // read XML resource attributes
     for ( int i = 0; i < xsr.getAttributeCount(); i++ )
       switch ( xsr.getAttributeLocalName( i ) )
@@ -109,17 +117,41 @@ public class Resource
           m_cost = Double.parseDouble( xsr.getAttributeValue( i ) );
           break;
         case XmlLabels.XML_CALENDAR:
-          m_calendar = JPlanner.plan.calendar( Integer.parseInt( xsr.getAttributeValue( i ) ) );
+          m_calendar = m_plan.calendar( Integer.parseInt( xsr.getAttributeValue( i ) ) );
           break;
         case XmlLabels.XML_COMMENT:
           m_comment = xsr.getAttributeValue( i );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
   }
 
+  /***************************************** constructor *****************************************/
+  Resource( Plan plan, PlanBinaryReader in, ByteBuffer record ) throws IOException
+  {
+    this( plan );
+    // read binary resource record, null resources have only initials set
+    int end = record.position() + BINARY_BYTES;
+    m_initials = in.string( record );
+    if ( m_initials != null )
+    {
+      m_name = in.string( record );
+      m_org = in.string( record );
+      m_group = in.string( record );
+      m_role = in.string( record );
+      m_alias = in.string( record );
+      m_start = PlanBinaryReader.date( record );
+      m_end = PlanBinaryReader.date( record );
+      m_availability = record.getDouble();
+      m_cost = record.getDouble();
+      m_calendar = m_plan.calendar( record.getInt() );
+      m_comment = in.string( record );
+    }
+    record.position( end );
+  }
+
   /**************************************** toStringShort ****************************************/
   public String toStringShort()
   {
@@ -186,11 +218,20 @@ public class Resource
   /****************************************** setValue ******************************************/
   public void setValue( int section, Object newValue )
   {
+    // any change other than comment means all tasks will need scheduling
+    if ( section != SECTION_COMMENT )
+      m_plan.tasks.rescheduleAll();
+
+    // if changing a tag of a plan resource, remove from tag index until changed
+    boolean retag = section <= SECTION_ALIAS && m_index >= 0;
+    if ( retag )
+      m_plan.resources.untag( this );
+
     // update resource with new value
     if ( section == SECTION_INITIALS )
     {
       if ( isNull() )
-        m_calendar = JPlanner.plan.calendar();
+        m_calendar = m_plan.calendar();
 
       m_initials = (String) newValue;
     }
@@ -213,13 +254,26 @@ public class Resource
     else if ( section == SECTION_COMMENT )
       m_comment = (String) newValue;
 
+    else if ( section == SECTION_START )
+      m_start = (Date) newValue;
+
+    else if ( section == SECTION_END )
+      m_end = (Date) newValue;
+
+    else if ( section == SECTION_AVAIL )
+      m_availability = (double) newValue;
+
+    else if ( section == SECTION_COST )
+      m_cost = (double) newValue;
+
     else if ( section == SECTION_CALENDAR )
       m_calendar = (Calendar) newValue;
 
-    // TODO !!!!!!!!!!!!!!!!!!!!!!!!!!
-
     else
       throw new IllegalArgumentException( "Section=" + section );
+
+    if ( retag )
+      m_plan.resources.tag( this );
   }
 
   /****************************************** isNull *********************************************/
@@ -306,10 +360,34 @@ public class Resource
     xsw.writeEndElement(); // XML_RESOURCE
   }
 
+  /**************************************** saveToBinary *****************************************/
+  void saveToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write resource binary record, null resources have only initials set
+    out.putString( m_initials );
+    if ( isNull() )
+    {
+      out.putZeros( BINARY_BYTES - 4 );
+      return;
+    }
+
+    out.putString( m_name );
+    out.putString( m_org );
+    out.putString( m_group );
+    out.putString( m_role );
+    out.putString( m_alias );
+    out.putDate( m_start );
+    out.putDate( m_end );
+    out.putDouble( m_availability );
+    out.putDouble( m_cost );
+    out.putInt( m_calendar.index() );
+    out.putString( m_comment );
+  }
+
   /******************************************** index ********************************************/
   public int index()
   {
-    return JPlanner.plan.index( this );
+    return m_plan.index( this );
   }
 
   /***************************************** isAssignable ****************************************/
@@ -323,6 +401,13 @@ public class Resource
     return false;
   }
 
+  /******************************************** tags *********************************************/
+  String[] tags()
+  {
+    // return tags that can be used to assign this resource, any may be null
+    return new String[] { m_initials, m_name, m_org, m_group, m_role, m_alias };
+  }
+
   /******************************************** start ********************************************/
   public DateTime start()
   {
@@ -345,4 +430,10 @@ public class Resource
     return m_availability;
   }
 
+  /****************************************** calendar *******************************************/
+  public Calendar calendar()
+  {
+    return m_calendar;
+  }
+
 }
\ No newline at end of file
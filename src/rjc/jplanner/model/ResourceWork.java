@@ -18,8 +18,9 @@
 
 package rjc.jplanner.model;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.SortedMap;
 import java.util.TreeMap;
 
 /*************************************************************************************************/
@@ -50,26 +51,42 @@ public class ResourceWork
   // struct that contains one resource allocation record
   public class Alloc
   {
-    public DateTime end;  // date-time
-    public double   num;  // number
-    public Task     task; // task
+    public DateTime start; // date-time
+    public DateTime end;   // date-time
+    public double   num;   // number
+    public Task     task;  // task
 
     @Override
     public String toString()
     {
-      return "Alloc [" + end + ", " + num + ", " + task + "]";
+      return "Alloc [" + start + ", " + end + ", " + num + ", " + task + "]";
     }
   }
 
-  Resource                   m_res;    // associated resource
-  SortedMap<DateTime, Alloc> m_allocs; // key is 'start', value is 'end/quantity/task' 
+  // quantities closer than this are treated as equal when merging steps
+  private static final double QUANTITY_EPSILON = 1e-9;
+
+  Resource                        m_res;   // associated resource
+  TreeMap<Long, Double>           m_steps; // key is epoch-ms where allocated quantity changes, value is quantity from then
+  HashMap<Task, ArrayList<Alloc>> m_tasks; // allocations for each task, so can be removed individually
 
   /**************************************** constructor ******************************************/
   public ResourceWork( Resource res )
   {
     // initialise private variables
     m_res = res;
-    m_allocs = new TreeMap<DateTime, Alloc>();
+    m_steps = new TreeMap<Long, Double>();
+    m_tasks = new HashMap<Task, ArrayList<Alloc>>();
+  }
+
+  public ResourceWork( ResourceWork work )
+  {
+    // initialise as copy of other resource work, which is left unchanged by changes to this copy
+    m_res = work.m_res;
+    m_steps = new TreeMap<Long, Double>( work.m_steps );
+    m_tasks = new HashMap<Task, ArrayList<Alloc>>( work.m_tasks.size() * 2 );
+    for ( Map.Entry<Task, ArrayList<Alloc>> entry : work.m_tasks.entrySet() )
+      m_tasks.put( entry.getKey(), new ArrayList<Alloc>( entry.getValue() ) );
   }
 
   /****************************************** toString *******************************************/
@@ -79,10 +96,10 @@ public class ResourceWork
     // short string summary
     StringBuilder str = new StringBuilder();
     str.append( "ResourceWork@" ).append( Integer.toHexString( hashCode() ) );
-    str.append( " [" ).append( m_res.toStringShort() ).append( " " ).append( m_allocs.size() );
+    str.append( " [" ).append( m_res.toStringShort() ).append( " " ).append( m_tasks.size() );
 
-    for ( Map.Entry<DateTime, Alloc> alloc : m_allocs.entrySet() )
-      str.append( "\n\t" ).append( alloc.getKey() ).append( " " ).append( alloc.getValue() );
+    for ( Map.Entry<Long, Double> step : m_steps.entrySet() )
+      str.append( "\n\t" ).append( new DateTime( step.getKey() ) ).append( " " ).append( step.getValue() );
 
     str.append( "]" );
     return str.toString();
@@ -91,7 +108,18 @@ public class ResourceWork
   /******************************************** clear ********************************************/
   public void clear()
   {
-    m_allocs.clear();
+    m_steps.clear();
+    m_tasks.clear();
+  }
+
+  /******************************************** clear ********************************************/
+  public void clear( Task task )
+  {
+    // remove allocations for specified task, deducting each from the step function
+    ArrayList<Alloc> allocs = m_tasks.remove( task );
+    if ( allocs != null )
+      for ( Alloc alloc : allocs )
+        add( alloc.start.milliseconds(), alloc.end.milliseconds(), -alloc.num );
   }
 
   /******************************************** alloc ********************************************/
@@ -117,10 +145,12 @@ public class ResourceWork
 
     // add resource allocation
     Alloc alloc = new Alloc();
+    alloc.start = start;
     alloc.end = end;
     alloc.num = quantity;
     alloc.task = task;
-    m_allocs.put( start, alloc );
+    m_tasks.computeIfAbsent( task, t -> new ArrayList<Alloc>() ).add( alloc );
+    add( start.milliseconds(), end.milliseconds(), quantity );
   }
 
   /****************************************** available ******************************************/
@@ -137,30 +167,54 @@ public class ResourceWork
       return new DateTimeNumber( m_res.end(), m_res.available() );
 
     // okay, so in resource available period
-    DateTime change = DateTime.MAX_VALUE;
-    double avail = m_res.available();
+    long change = nextChange( from.milliseconds() );
+    double avail = m_res.available() - allocated( from.milliseconds() );
+    return new DateTimeNumber( change == Long.MAX_VALUE ? DateTime.MAX_VALUE : new DateTime( change ), avail );
+  }
 
-    // loop thru each existing allocation and deduct any for specified date-time
-    for ( Map.Entry<DateTime, Alloc> alloc : m_allocs.entrySet() )
-    {
-      DateTime start = alloc.getKey();
-      if ( from.isLessThan( start ) )
-      {
-        if ( start.isLessThan( change ) )
-          change = start;
-        break;
-      }
-
-      DateTime end = alloc.getValue().end;
-      if ( from.isLessThan( end ) )
-      {
-        avail -= alloc.getValue().num;
-        if ( end.isLessThan( change ) )
-          change = end;
-      }
-    }
+  /****************************************** allocated ******************************************/
+  public double allocated( long at )
+  {
+    // return quantity of resource allocated at specified epoch-ms
+    Map.Entry<Long, Double> step = m_steps.floorEntry( at );
+    return step == null ? 0.0 : step.getValue();
+  }
+
+  /***************************************** nextChange ******************************************/
+  public long nextChange( long from )
+  {
+    // return epoch-ms when allocated quantity next changes after from, or Long.MAX_VALUE if never
+    Long change = m_steps.higherKey( from );
+    return change == null ? Long.MAX_VALUE : change;
+  }
+
+  /********************************************* add *********************************************/
+  private void add( long start, long end, double quantity )
+  {
+    // ensure steps exist at start and end, then add quantity to every step in between
+    if ( !m_steps.containsKey( start ) )
+      m_steps.put( start, allocated( start ) );
+    if ( !m_steps.containsKey( end ) )
+      m_steps.put( end, allocated( end ) );
+
+    for ( Map.Entry<Long, Double> step : m_steps.subMap( start, end ).entrySet() )
+      step.setValue( step.getValue() + quantity );
+
+    // remove any steps that no longer change the allocated quantity
+    coalesce( start );
+    coalesce( end );
+  }
+
+  /****************************************** coalesce *******************************************/
+  private void coalesce( long key )
+  {
+    // remove step if it has same quantity as the step before
+    double quantity = m_steps.get( key );
+    Map.Entry<Long, Double> before = m_steps.lowerEntry( key );
+    double previous = before == null ? 0.0 : before.getValue();
 
-    return new DateTimeNumber( change, avail );
+    if ( Math.abs( quantity - previous ) < QUANTITY_EPSILON )
+      m_steps.remove( key );
   }
 
 }
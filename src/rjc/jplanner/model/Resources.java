@@ -18,30 +18,62 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 
 /*************************************************************************************************/
 /************************** Holds the complete list of plan resources ****************************/
 /*************************************************************************************************/
 
-public class Resources extends ArrayList<Resource>
+public class Resources extends IndexedList<Resource>
 {
   private static final long serialVersionUID = 1L;
 
+  Plan                                         m_plan; // plan these resources belong to
+  private HashMap<String, ArrayList<Resource>> m_tags; // resources in list order for each tag, null if not indexed
+
+  /**************************************** constructor ******************************************/
+  public Resources( Plan plan )
+  {
+    // construct empty list of resources belonging to plan
+    m_plan = plan;
+  }
+
+  /****************************************** getIndex *******************************************/
+  @Override
+  int getIndex( Resource res )
+  {
+    return res.m_index;
+  }
+
+  /****************************************** setIndex *******************************************/
+  @Override
+  void setIndex( Resource res, int index )
+  {
+    res.m_index = index;
+
+    // resource positions changing so tag index needs rebuilding
+    m_tags = null;
+  }
+
   /**************************************** initialise *******************************************/
   public void initialise()
   {
     // initialise list with default resources (including special resource 0)
     clear();
     for ( int count = 0; count <= 10; count++ )
-      add( new Resource() );
+      add( new Resource( m_plan ) );
   }
 
   /******************************************* loadXML *******************************************/
@@ -61,10 +93,10 @@ public class Resources extends ArrayList<Resource>
         switch ( xsr.getLocalName() )
         {
           case XmlLabels.XML_RESOURCE:
-            add( new Resource( xsr ) );
+            add( new Resource( m_plan, xsr ) );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
 
@@ -81,15 +113,30 @@ public class Resources extends ArrayList<Resource>
     xsw.writeEndElement(); // XML_RES_DATA
   }
 
-  /***************************************** isAssignable ****************************************/
-  public boolean isAssignable( String tag )
+  /***************************************** loadBinary ******************************************/
+  public void loadBinary( PlanBinaryReader in ) throws IOException
   {
-    // return true only if any tag is recognised as an assignable resource
+    // read binary resource records
+    ByteBuffer records = in.section( PlanBinaryWriter.SECTION_RESOURCES, Resource.BINARY_BYTES );
+    int count = in.count( PlanBinaryWriter.SECTION_RESOURCES );
+    for ( int index = 0; index < count; index++ )
+      add( new Resource( m_plan, in, records ) );
+  }
+
+  /***************************************** writeBinary *****************************************/
+  public void writeBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write resource records
+    out.startSection( PlanBinaryWriter.SECTION_RESOURCES, size(), Resource.BINARY_BYTES );
     for ( Resource res : this )
-      if ( res.isAssignable( tag ) )
-        return true;
+      res.saveToBinary( out );
+  }
 
-    return false;
+  /**************************************** isAssignable *****************************************/
+  public boolean isAssignable( String tag )
+  {
+    // return true only if any tag is recognised as an assignable resource
+    return !listForTag( tag ).isEmpty();
   }
 
   /*************************************** clearAllocations **************************************/
@@ -100,16 +147,58 @@ public class Resources extends ArrayList<Resource>
       res.m_work.clear();
   }
 
-  /****************************************** listForTag *****************************************/
-  public ArrayList<Resource> listForTag( String tag )
+  /***************************************** listForTag ******************************************/
+  public List<Resource> listForTag( String tag )
   {
-    // TODO Auto-generated method stub
-    ArrayList<Resource> list = new ArrayList<Resource>();
-    for ( Resource res : this )
-      if ( res.isAssignable( tag ) )
-        list.add( res );
+    // return resources in list order that can be assigned by tag, building tag index if needed
+    if ( m_tags == null )
+    {
+      m_tags = new HashMap<String, ArrayList<Resource>>();
+      for ( Resource res : this )
+        tag( res );
+    }
+
+    ArrayList<Resource> list = m_tags.get( tag );
+    if ( list == null )
+      return Collections.emptyList();
+    return Collections.unmodifiableList( list );
+  }
 
-    return list;
+  /********************************************* tag *********************************************/
+  void tag( Resource res )
+  {
+    // add resource to tag index for each of its tags, keeping resources in list order
+    if ( m_tags == null )
+      return;
+
+    for ( String tag : res.tags() )
+      if ( tag != null )
+      {
+        ArrayList<Resource> list = m_tags.computeIfAbsent( tag, t -> new ArrayList<Resource>() );
+        if ( list.contains( res ) )
+          continue;
+
+        int pos = list.size();
+        while ( pos > 0 && list.get( pos - 1 ).m_index > res.m_index )
+          pos--;
+        list.add( pos, res );
+      }
+  }
+
+  /******************************************** untag ********************************************/
+  void untag( Resource res )
+  {
+    // remove resource from tag index for each of its tags
+    if ( m_tags == null )
+      return;
+
+    for ( String tag : res.tags() )
+      if ( tag != null )
+      {
+        ArrayList<Resource> list = m_tags.get( tag );
+        if ( list != null && list.remove( res ) && list.isEmpty() )
+          m_tags.remove( tag );
+      }
   }
 
 }
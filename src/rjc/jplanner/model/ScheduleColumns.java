@@ -0,0 +1,495 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.Arrays;
+
+/*************************************************************************************************/
+/************************ Columnar copy of task data for schedule passes *************************/
+/*************************************************************************************************/
+
+// a schedule pass (full, or re-schedule of changed tasks and their dependents) copies what scheduling
+// reads from each task into primitive arrays indexed by task index, schedules there, then copies the
+// results back into the tasks in schedule order, so the pass follows predecessors and summaries through
+// arrays rather than Task, DateTime and TimeSpan objects, the predecessors of each task are a run in
+// shared arrays from its m_predFirst to the next task's
+
+class ScheduleColumns
+{
+  private static final byte  FIXED_DURATION = 1;  // scheduled as fixed duration (also all summaries)
+  private static final byte  FIXED_WORK     = 2;  // scheduled as fixed work
+  private static final byte  RESOURCES      = 4;  // has resources assigned
+  private static final byte  TO_START       = 8;  // has finish-start or start-start predecessor
+  private static final byte  TO_FINISH      = 16; // has finish-finish or start-finish predecessor
+  private static final byte  MOVED          = 32; // start or end has changed in this pass
+  private static final byte  NOT_NULL       = 64; // task is not null
+
+  private Tasks              m_list;              // tasks being scheduled
+  private Calendar           m_calendar;          // plan default calendar
+  private long               m_planStart;         // plan start as epoch milliseconds
+  private Task[]             m_tasks;             // task of each index, null until needed if not yet materialised
+  private ResourceWork[]     m_works;             // resource work allocated to, indexed by resource index
+
+  private byte[]             m_flags;             // flags above for each task, zero for null tasks
+  private int[]              m_indent;            // indent level
+  private int[]              m_summaryStart;      // index of summary
+  private int[]              m_summaryEnd;        // index of summary end, -1 if not summary
+  private double[]           m_durationNum;       // duration number, calculated for fixed work tasks
+  private byte[]             m_durationUnits;     // duration units
+  private double[]           m_workNum;           // work number, calculated for tasks with resources
+  private byte[]             m_workUnits;         // work units
+  private long[]             m_start;             // start as epoch milliseconds
+  private long[]             m_end;               // end as epoch milliseconds
+  private long[]             m_rollupStart;       // if summary, start of sub-tasks when valid
+  private long[]             m_rollupEnd;         // if summary, end of sub-tasks when valid
+  private boolean[]          m_rollupValid;       // true if summary roll-up calculated since sub-tasks moved
+
+  private int[]              m_predFirst;         // index of first predecessor of each task, plus end
+  private int[]              m_predTask;          // predecessor task index
+  private byte[]             m_predType;          // predecessor type number
+  private double[]           m_lagNum;            // lag number
+  private byte[]             m_lagUnits;          // lag units
+  private int                m_predCount;         // number of predecessors copied so far
+
+  /***************************************** constructor *****************************************/
+  ScheduleColumns( Tasks tasks, ResourceWork[] works )
+  {
+    // copy scheduling data of all tasks into columns, without materialising lazily loaded tasks
+    int size = tasks.size();
+    m_list = tasks;
+    m_works = works;
+    m_calendar = tasks.m_plan.calendar();
+    m_planStart = tasks.m_plan.start().milliseconds();
+    m_tasks = new Task[size];
+    m_flags = new byte[size];
+    m_indent = new int[size];
+    m_summaryStart = new int[size];
+    m_summaryEnd = new int[size];
+    m_durationNum = new double[size];
+    m_durationUnits = new byte[size];
+    m_workNum = new double[size];
+    m_workUnits = new byte[size];
+    m_start = new long[size];
+    m_end = new long[size];
+    m_rollupStart = new long[size];
+    m_rollupEnd = new long[size];
+    m_rollupValid = new boolean[size];
+
+    m_predFirst = new int[size + 1];
+    m_predTask = new int[size];
+    m_predType = new byte[size];
+    m_lagNum = new double[size];
+    m_lagUnits = new byte[size];
+    for ( int index = 0; index < size; index++ )
+    {
+      m_predFirst[index] = m_predCount;
+      tasks.copyToSchedule( this, index );
+    }
+    m_predFirst[size] = m_predCount;
+  }
+
+  /******************************************* setTask *******************************************/
+  void setTask( int index, Task task, TimeSpan duration, TimeSpan work, DateTime start, DateTime end )
+  {
+    // set columns for task using its own duration, work, start and end rather than any summary roll-up
+    m_tasks[index] = task;
+    long startMs = start == null ? 0L : start.milliseconds();
+    long endMs = end == null ? 0L : end.milliseconds();
+    if ( task.isNull() )
+    {
+      setNull( index, task.summaryEnd(), startMs, endMs );
+      return;
+    }
+
+    setTask( index, task.type().toString(), task.isSummary(), !task.resources().isEmpty(), task.indent(),
+        task.summaryStart(), task.summaryEnd(), duration.number(), duration.units(), work.number(), work.units(),
+        startMs, endMs );
+
+    // predecessors not yet read from lazily loaded columns are added from there instead
+    if ( !task.predecessorsRead() )
+      return;
+    Predecessors preds = task.predecessors();
+    for ( int p = 0; p < preds.count(); p++ )
+    {
+      Predecessors.Predecessor pred = preds.get( p );
+      int type = 0;
+      while ( Predecessors.TYPES[type] != pred.type )
+        type++;
+      addPredecessor( index, pred.task.index(), type, pred.lag.number(), pred.lag.units() );
+    }
+  }
+
+  void setTask( int index, String type, boolean summary, boolean resources, int indent, int summaryStart,
+      int summaryEnd, double duration, char durationUnits, double work, char workUnits, long start, long end )
+  {
+    // set columns for not-null task from its scheduling data, predecessors are then added separately
+    byte flags = NOT_NULL;
+    if ( type == TaskType.ASAP_FDUR || summary )
+      flags |= FIXED_DURATION;
+    else if ( type == TaskType.ASAP_FWORK )
+      flags |= FIXED_WORK;
+    if ( resources )
+      flags |= RESOURCES;
+
+    m_flags[index] = flags;
+    m_indent[index] = indent;
+    m_summaryStart[index] = summaryStart;
+    m_summaryEnd[index] = summaryEnd;
+    m_durationNum[index] = duration;
+    m_durationUnits[index] = (byte) durationUnits;
+    m_workNum[index] = work;
+    m_workUnits[index] = (byte) workUnits;
+    m_start[index] = start;
+    m_end[index] = end;
+  }
+
+  /******************************************* setNull *******************************************/
+  void setNull( int index, int summaryEnd, long start, long end )
+  {
+    // set columns for null task, which is never scheduled
+    m_summaryEnd[index] = summaryEnd;
+    m_start[index] = start;
+    m_end[index] = end;
+  }
+
+  /*************************************** addPredecessor ****************************************/
+  void addPredecessor( int index, int task, int type, double lag, char lagUnits )
+  {
+    // append predecessor of task at index, growing columns if needed
+    if ( m_predCount == m_predTask.length )
+      grow( m_predCount + 1 );
+
+    m_predTask[m_predCount] = task;
+    m_predType[m_predCount] = (byte) type;
+    m_lagNum[m_predCount] = lag;
+    m_lagUnits[m_predCount] = (byte) lagUnits;
+    m_predCount++;
+
+    String name = Predecessors.TYPES[type];
+    if ( name == Predecessors.TYPE_FINISH_START || name == Predecessors.TYPE_START_START )
+      m_flags[index] |= TO_START;
+    else
+      m_flags[index] |= TO_FINISH;
+  }
+
+  /******************************************** grow *********************************************/
+  private void grow( int needed )
+  {
+    // grow predecessor columns to hold at least needed predecessors
+    int length = Math.max( needed, 2 * m_predTask.length );
+    m_predTask = Arrays.copyOf( m_predTask, length );
+    m_predType = Arrays.copyOf( m_predType, length );
+    m_lagNum = Arrays.copyOf( m_lagNum, length );
+    m_lagUnits = Arrays.copyOf( m_lagUnits, length );
+  }
+
+  /****************************************** schedule *******************************************/
+  void schedule( int index )
+  {
+    // schedule task according to its type
+    if ( ( m_flags[index] & FIXED_DURATION ) != 0 )
+      scheduleFixedDuration( index );
+    else if ( ( m_flags[index] & FIXED_WORK ) != 0 )
+      scheduleFixedWork( index );
+    else
+      throw new UnsupportedOperationException( "Task type = " + task( index ).type() );
+  }
+
+  /************************************ scheduleFixedDuration ************************************/
+  private void scheduleFixedDuration( int index )
+  {
+    // depending on predecessors (or if none those of summaries) determine task start & end
+    boolean hasToStart = ( m_flags[index] & TO_START ) != 0;
+    boolean hasToFinish = ( m_flags[index] & TO_FINISH ) != 0;
+    if ( !hasToStart && !hasToFinish )
+    {
+      int summary = index;
+      for ( int indent = m_indent[index]; indent > 0; indent-- )
+      {
+        summary = m_summaryStart[summary];
+
+        hasToStart = ( m_flags[summary] & TO_START ) != 0;
+        if ( hasToStart )
+          break;
+
+        hasToFinish = ( m_flags[summary] & TO_FINISH ) != 0;
+        if ( hasToFinish )
+          break;
+      }
+    }
+
+    double duration = m_durationNum[index];
+    char units = (char) m_durationUnits[index];
+    long start, end;
+    if ( duration == 0.0 )
+    {
+      // milestone
+      if ( hasToStart )
+        start = m_calendar.roundDown( startDueToPredecessors( index ) );
+      else if ( hasToFinish )
+        start = m_calendar.roundDown( endDueToPredecessors( index ) );
+      else
+        start = m_calendar.roundUp( m_planStart );
+
+      end = start;
+    }
+    else
+    {
+      // not milestone
+      if ( hasToStart )
+      {
+        start = m_calendar.roundUp( startDueToPredecessors( index ) );
+        end = m_calendar.roundDown( m_calendar.workTimeSpan( start, duration, units ) );
+      }
+      else if ( hasToFinish )
+      {
+        end = m_calendar.roundDown( endDueToPredecessors( index ) );
+        start = m_calendar.roundUp( m_calendar.workTimeSpan( end, -duration, units ) );
+      }
+      else
+      {
+        start = m_calendar.roundUp( m_planStart );
+        end = m_calendar.roundDown( m_calendar.workTimeSpan( start, duration, units ) );
+      }
+    }
+
+    setSchedule( index, start, end );
+
+    // allocate available resources over fixed duration, work is then whatever they can do
+    if ( !isSummary( index ) && ( m_flags[index] & RESOURCES ) != 0 )
+    {
+      Task task = task( index );
+      m_workNum[index] = task.resources().assign( task, m_works, start, Math.max( start, end ) );
+      m_workUnits[index] = (byte) TimeSpan.UNIT_DAYS;
+    }
+  }
+
+  /************************************** scheduleFixedWork **************************************/
+  private void scheduleFixedWork( int index )
+  {
+    // start as soon as start predecessors (including those of summaries) and plan start allow
+    boolean hasToStart = ( m_flags[index] & TO_START ) != 0;
+    int summary = index;
+    for ( int indent = m_indent[index]; indent > 0 && !hasToStart; indent-- )
+    {
+      summary = m_summaryStart[summary];
+      hasToStart = ( m_flags[summary] & TO_START ) != 0;
+    }
+
+    long start;
+    if ( hasToStart )
+      start = m_calendar.roundUp( startDueToPredecessors( index ) );
+    else
+      start = m_calendar.roundUp( m_planStart );
+
+    // level resources to find when work is done, without resources treat work as duration
+    long end;
+    if ( ( m_flags[index] & RESOURCES ) == 0 )
+      end = m_calendar.workTimeSpan( start, m_workNum[index], (char) m_workUnits[index] );
+    else
+    {
+      Task task = task( index );
+      start = m_calendar.roundUp( task.resources().available( task, m_works, start ) );
+      end = task.resources().assign( task, m_works, start, task.work() );
+    }
+    end = m_calendar.roundDown( end );
+
+    setSchedule( index, start, end );
+    m_durationNum[index] = m_calendar.workBetween( m_start[index], m_end[index] );
+    m_durationUnits[index] = (byte) TimeSpan.UNIT_DAYS;
+  }
+
+  /***************************************** setSchedule *****************************************/
+  private void setSchedule( int index, long start, long end )
+  {
+    // ensure end is always greater or equal to start, and mark roll-ups of summaries above as invalid
+    end = Math.max( start, end );
+    if ( m_start[index] != start || m_end[index] != end )
+      m_flags[index] |= MOVED;
+    m_start[index] = start;
+    m_end[index] = end;
+
+    int summary = m_summaryStart[index];
+    while ( summary > 0 && m_rollupValid[summary] )
+    {
+      m_rollupValid[summary] = false;
+      summary = m_summaryStart[summary];
+    }
+  }
+
+  /******************************************** task *********************************************/
+  private Task task( int index )
+  {
+    // return task at index, materialising it if needed for its resources
+    if ( m_tasks[index] == null )
+      m_tasks[index] = m_list.get( index );
+    return m_tasks[index];
+  }
+
+  /****************************************** isSummary ******************************************/
+  private boolean isSummary( int index )
+  {
+    return m_summaryEnd[index] > 0;
+  }
+
+  /******************************************** start ********************************************/
+  private long start( int index )
+  {
+    // return task or summary start
+    if ( isSummary( index ) )
+    {
+      if ( !m_rollupValid[index] )
+        calculateRollup( index );
+      return m_rollupStart[index];
+    }
+
+    return m_start[index];
+  }
+
+  /********************************************* end *********************************************/
+  private long end( int index )
+  {
+    // return task or summary end
+    if ( isSummary( index ) )
+    {
+      if ( !m_rollupValid[index] )
+        calculateRollup( index );
+      return m_rollupEnd[index];
+    }
+
+    return m_end[index];
+  }
+
+  /*************************************** calculateRollup ***************************************/
+  private void calculateRollup( int index )
+  {
+    // calculate summary start & end from direct sub-tasks, using their roll-ups if summaries
+    long start = DateTime.MAX_VALUE.milliseconds();
+    long end = DateTime.MIN_VALUE.milliseconds();
+    int id = index + 1;
+    while ( id <= m_summaryEnd[index] )
+    {
+      if ( ( m_flags[id] & NOT_NULL ) == 0 )
+      {
+        id++;
+        continue;
+      }
+
+      start = Math.min( start, start( id ) );
+      end = Math.max( end, end( id ) );
+
+      // skip over sub-task's own sub-tasks as already included in its roll-up
+      id = isSummary( id ) ? m_summaryEnd[id] + 1 : id + 1;
+    }
+
+    m_rollupStart[index] = start;
+    m_rollupEnd[index] = end;
+    m_rollupValid[index] = true;
+  }
+
+  /*********************************** startDueToPredecessors ************************************/
+  private long startDueToPredecessors( int index )
+  {
+    // get start based on this task's predecessors, and those of its summaries
+    long start = predecessorsStart( index );
+    int summary = index;
+    for ( int indent = m_indent[index]; indent > 0; indent-- )
+    {
+      summary = m_summaryStart[summary];
+      start = Math.max( start, predecessorsStart( summary ) );
+    }
+
+    return start;
+  }
+
+  /************************************ endDueToPredecessors *************************************/
+  private long endDueToPredecessors( int index )
+  {
+    // get end based on this task's predecessors, and those of its summaries
+    long end = predecessorsEnd( index );
+    int summary = index;
+    for ( int indent = m_indent[index]; indent > 0; indent-- )
+    {
+      summary = m_summaryStart[summary];
+      end = Math.min( end, predecessorsEnd( summary ) );
+    }
+
+    return end;
+  }
+
+  /************************************** predecessorsStart **************************************/
+  private long predecessorsStart( int index )
+  {
+    // return task start based on its own predecessors, as Predecessors.start()
+    long start = DateTime.MIN_VALUE.milliseconds();
+    for ( int p = m_predFirst[index]; p < m_predFirst[index + 1]; p++ )
+    {
+      String type = Predecessors.TYPES[m_predType[p]];
+      if ( type == Predecessors.TYPE_FINISH_START )
+        start = Math.max( start, m_calendar.workTimeSpan( end( m_predTask[p] ), m_lagNum[p], (char) m_lagUnits[p] ) );
+
+      if ( type == Predecessors.TYPE_START_START )
+        start = Math.max( start,
+            m_calendar.workTimeSpan( start( m_predTask[p] ), m_lagNum[p], (char) m_lagUnits[p] ) );
+    }
+
+    return start;
+  }
+
+  /*************************************** predecessorsEnd ***************************************/
+  private long predecessorsEnd( int index )
+  {
+    // return task end based on its own predecessors, as Predecessors.end()
+    long end = DateTime.MAX_VALUE.milliseconds();
+    for ( int p = m_predFirst[index]; p < m_predFirst[index + 1]; p++ )
+    {
+      String type = Predecessors.TYPES[m_predType[p]];
+      if ( type == Predecessors.TYPE_FINISH_FINISH )
+        end = Math.min( end, m_calendar.workTimeSpan( end( m_predTask[p] ), m_lagNum[p], (char) m_lagUnits[p] ) );
+
+      if ( type == Predecessors.TYPE_START_FINISH )
+        end = Math.min( end, m_calendar.workTimeSpan( start( m_predTask[p] ), m_lagNum[p], (char) m_lagUnits[p] ) );
+    }
+
+    return end;
+  }
+
+  /****************************************** copyBack *******************************************/
+  void copyBack( int[] order, int count )
+  {
+    // copy schedule of first count tasks in order back into the tasks (or lazily loaded columns), with
+    // summary roll-ups and new duration or work where calculated, skipping fixed duration tasks not moved
+    for ( int pos = 0; pos < count; pos++ )
+    {
+      int index = order[pos];
+      if ( ( m_flags[index] & ( FIXED_DURATION | RESOURCES | MOVED ) ) == FIXED_DURATION && !isSummary( index ) )
+        continue;
+
+      TimeSpan duration = null;
+      TimeSpan work = null;
+      if ( ( m_flags[index] & FIXED_WORK ) != 0 )
+        duration = new TimeSpan( m_durationNum[index], TimeSpan.UNIT_DAYS );
+      else if ( !isSummary( index ) && ( m_flags[index] & RESOURCES ) != 0 )
+        work = new TimeSpan( m_workNum[index], TimeSpan.UNIT_DAYS );
+
+      m_list.setSchedule( index, m_start[index], m_end[index], start( index ), end( index ), duration, work );
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.ArrayList;
+import rjc.jplanner.Utils;
+
+
+/*************************************************************************************************/
+/********************** Snapshot of plan scheduled then applied in one step **********************/
+/*************************************************************************************************/
+
+// a run takes a snapshot of everything scheduling reads when constructed, schedules the snapshot when
+// computed, and only changes the plan when applied, so a run can be computed on a background thread
+// while the plan is still being displayed, and an interrupted or superseded run is simply discarded
+
+public class ScheduleRun
+{
+  private Plan             m_plan;    // plan being scheduled
+  private boolean          m_full;    // true if scheduling all tasks, false if just changed and dependents
+  private ScheduleColumns  m_columns; // columnar copy of tasks being scheduled
+  private ResourceWork[]   m_works;   // resource work allocated by run, indexed by resource index
+  private int[]            m_order;   // task indexes in order to be scheduled, null if parallel
+  private ArrayList<int[]> m_groups;  // independent groups of task indexes if parallel, otherwise null
+  private boolean          m_done;    // true once every task has been scheduled
+
+  /***************************************** constructor *****************************************/
+  ScheduleRun( Plan plan, boolean full, boolean parallel )
+  {
+    // take snapshot of plan, full run starts from empty resource work, re-schedule from copy of existing
+    // with allocations of tasks to be scheduled removed
+    m_plan = plan;
+    m_full = full;
+    m_works = new ResourceWork[plan.resources.size()];
+    for ( int index = 0; index < m_works.length; index++ )
+    {
+      Resource res = plan.resources.get( index );
+      m_works[index] = full ? new ResourceWork( res ) : new ResourceWork( res.m_work );
+    }
+
+    if ( full && parallel )
+      m_groups = plan.tasks.components();
+    else if ( full )
+      m_order = plan.tasks.scheduleOrder();
+    else
+    {
+      m_order = plan.tasks.downstream();
+      Utils.trace( "Re-scheduling " + m_order.length + " of " + plan.tasks.size() + " tasks" );
+      for ( int index : m_order )
+        plan.tasks.clearAllocations( m_works, index );
+    }
+
+    m_columns = new ScheduleColumns( plan.tasks, m_works );
+  }
+
+  /******************************************* compute *******************************************/
+  public boolean compute()
+  {
+    // schedule snapshot, returning false if thread interrupted before finished, plan is not changed
+    if ( m_groups != null )
+      m_groups.parallelStream().forEach( group ->
+      {
+        for ( int index : group )
+          m_columns.schedule( index );
+      } );
+    else
+      for ( int index : m_order )
+      {
+        if ( Thread.currentThread().isInterrupted() )
+          return false;
+        m_columns.schedule( index );
+      }
+
+    m_done = true;
+    return true;
+  }
+
+  /******************************************** apply ********************************************/
+  public void apply()
+  {
+    // copy results into plan tasks and resources, then start recording changes for next re-schedule
+    if ( !m_done )
+      throw new IllegalStateException( "Schedule run not computed" );
+
+    if ( m_groups != null )
+      m_groups.parallelStream().forEach( group -> m_columns.copyBack( group, group.length ) );
+    else
+      m_columns.copyBack( m_order, m_order.length );
+
+    for ( int index = 0; index < m_works.length; index++ )
+      m_plan.resources.get( index ).m_work = m_works[index];
+    m_plan.tasks.scheduled( m_full );
+  }
+
+}
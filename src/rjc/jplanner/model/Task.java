@@ -18,25 +18,27 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
+
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 
 /*************************************************************************************************/
 /******************************** Single task within overall plan ********************************/
 /*************************************************************************************************/
 
-public class Task implements Comparable<Task>
+public class Task
 {
   private String          m_title;              // free text title
   private TimeSpan        m_duration;           // duration of task
   private DateTime        m_start;              // start date-time of task
   private DateTime        m_end;                // end date-time of task
   private TimeSpan        m_work;               // work effort for task
-  private Predecessors    m_predecessors;       // task predecessors
+  private Predecessors    m_predecessors;       // task predecessors, null until used if loaded lazily
   private TaskResources   m_resources;          // resources allocated to task
   private TaskType        m_type;               // task type
   private int             m_priority;           // overall task priority (0 to 999)
@@ -48,6 +50,11 @@ public class Task implements Comparable<Task>
   private int             m_summaryStart;       // index of this task's summary, ultimately task 0
   private int             m_summaryEnd;         // if summary, index of summary end, otherwise -1 
   private GanttData       m_gantt;              // data for gantt bar display
+  private DateTime        m_rollupStart;        // if summary, cached start of sub-tasks, null if needs calculating
+  private DateTime        m_rollupEnd;          // if summary, cached end of sub-tasks
+  private TimeSpan        m_rollupDuration;     // if summary, cached duration, null if needs calculating
+  Plan                    m_plan;               // plan this task belongs to
+  int                     m_index = -1;         // index of task in plan list, maintained by Tasks
 
   public static final int SECTION_TITLE    = 0;
   public static final int SECTION_DURATION = 1;
@@ -63,16 +70,19 @@ public class Task implements Comparable<Task>
   public static final int SECTION_COMMENT  = 11;
   public static final int SECTION_MAX      = 11;
 
+  static final int        BINARY_BYTES     = 69; // binary record of saved fields except assignments and predecessors
+
   /**************************************** constructor ******************************************/
-  public Task()
+  public Task( Plan plan )
   {
-    // do nothing
+    // construct null task belonging to plan
+    m_plan = plan;
   }
 
   /**************************************** constructor ******************************************/
-  public Task( XMLStreamReader xsr ) throws XMLStreamException
+  public Task( Plan plan, XMLStreamReader xsr ) throws XMLStreamException
   {
-    this();
+    this( plan );
     initialise();
     // read XML task attributes
     for ( int i = 0; i < xsr.getAttributeCount(); i++ )
@@ -117,23 +127,54 @@ public class Task implements Comparable<Task>
           m_indent = Integer.parseInt( xsr.getAttributeValue( i ) );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
   }
 
+  /***************************************** constructor *****************************************/
+  Task( Plan plan, TaskColumns columns, int index )
+  {
+    this( plan );
+    // construct task from column data of lazily loaded plan
+    m_index = index;
+    m_title = columns.title( index );
+    if ( m_title == null )
+    {
+      // null tasks have only title set, so initialise the rest as when loaded from XML
+      initialise();
+      return;
+    }
+
+    m_indent = columns.indent( index );
+    m_duration = columns.duration( index );
+    m_start = columns.start( index );
+    m_end = columns.end( index );
+    m_work = columns.work( index );
+    m_resources = columns.resources( index );
+    m_type = columns.type( index );
+    m_priority = columns.priority( index );
+    m_deadline = columns.deadline( index );
+    m_cost = columns.cost( index );
+    m_comment = columns.comment( index );
+
+    // predecessors are read from columns when first used, so their tasks need not be materialised yet
+    m_gantt = new GanttData();
+    m_summaryStart = columns.summaryStart( index );
+    m_summaryEnd = columns.summaryEnd( index );
+  }
+
   /***************************************** initialise ******************************************/
   public void initialise()
   {
     // initialise private variables
-    m_duration = new TimeSpan( "1d" );
-    m_work = new TimeSpan( "0d" );
-    m_start = JPlanner.plan.start();
-    m_end = JPlanner.plan.start();
-    m_predecessors = new Predecessors( "" );
+    m_duration = new TimeSpan( 1.0, TimeSpan.UNIT_DAYS );
+    m_work = new TimeSpan( 0.0, TimeSpan.UNIT_DAYS );
+    m_start = m_plan.start();
+    m_end = m_plan.start();
     m_resources = new TaskResources();
     m_type = new TaskType( TaskType.ASAP_FDUR );
-    m_predecessors = new Predecessors();
+    m_predecessors = new Predecessors( m_plan );
     m_gantt = new GanttData();
     m_priority = 100;
     m_indent = 0;
@@ -165,7 +206,7 @@ public class Task implements Comparable<Task>
       return work();
 
     if ( section == SECTION_PRED )
-      return m_predecessors;
+      return predecessors();
 
     if ( section == SECTION_RES )
       return m_resources;
@@ -191,6 +232,9 @@ public class Task implements Comparable<Task>
   /****************************************** setValue ******************************************/
   public void setValue( int section, Object newValue )
   {
+    // record change so next re-schedule includes this task
+    m_plan.tasks.changed( this, section, newValue );
+
     // set task value for given section
     if ( section == SECTION_TITLE )
     {
@@ -234,6 +278,10 @@ public class Task implements Comparable<Task>
 
     else
       throw new IllegalArgumentException( "Section=" + section );
+
+    // if start or end may have changed, summaries above will need re-calculating
+    if ( section == SECTION_TITLE || section == SECTION_START || section == SECTION_END )
+      summariesChanged();
   }
 
   /****************************************** isNull *********************************************/
@@ -297,7 +345,8 @@ public class Task implements Comparable<Task>
   {
     // write task data to XML stream (except predecessors)
     xsw.writeStartElement( XmlLabels.XML_TASK );
-    xsw.writeAttribute( XmlLabels.XML_ID, Integer.toString( this.index() ) );
+    // use stored index, as task may be temporary copy of one not yet materialised by lazy plan
+    xsw.writeAttribute( XmlLabels.XML_ID, Integer.toString( m_index ) );
 
     if ( !isNull() )
     {
@@ -325,7 +374,7 @@ public class Task implements Comparable<Task>
   public void savePredecessorToXML( XMLStreamWriter xsw ) throws XMLStreamException
   {
     // write task predecessor data to XML stream
-    if ( m_predecessors == null )
+    if ( predecessors() == null )
       return;
     String preds = m_predecessors.toString();
 
@@ -338,24 +387,56 @@ public class Task implements Comparable<Task>
     }
   }
 
-  /****************************************** compareTo ******************************************/
-  @Override
-  public int compareTo( Task other )
+  /**************************************** saveToBinary *****************************************/
+  void saveToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write task binary record (except predecessors), null tasks have only title set
+    out.putString( m_title );
+    if ( isNull() )
+    {
+      out.putZeros( BINARY_BYTES - 4 );
+      return;
+    }
+
+    out.putInt( m_indent );
+    out.putTimeSpan( m_duration );
+    out.putDateTime( m_start );
+    out.putDateTime( m_end );
+    out.putTimeSpan( m_work );
+    out.putInt( m_resources.count() );
+    out.putByte( m_type.index() );
+    out.putInt( m_priority );
+    out.putDateTime( m_deadline );
+    out.putString( m_cost );
+    out.putString( m_comment );
+  }
+
+  /********************************** savePredecessorsToBinary ***********************************/
+  void savePredecessorsToBinary( PlanBinaryWriter out ) throws IOException
   {
-    // sort comparison first check for predecessors
-    if ( this.hasPredecessor( other ) )
-      return 1;
-    if ( other.hasPredecessor( this ) )
-      return -1;
+    // write task predecessors as binary edge records
+    if ( predecessors() != null )
+      m_predecessors.saveToBinary( out, this.index() );
+  }
 
-    // then by priority
-    if ( m_priority < other.m_priority )
-      return 1;
-    if ( m_priority > other.m_priority )
-      return -1;
+  /************************************ saveResourcesToBinary ************************************/
+  void saveResourcesToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write task resource assignments as binary records
+    if ( !isNull() )
+      m_resources.saveToBinary( out );
+  }
+
+  /*************************************** numAssignments ****************************************/
+  int numAssignments()
+  {
+    return isNull() ? 0 : m_resources.count();
+  }
 
-    // finally by index
-    return this.index() - other.index();
+  /*************************************** numPredecessors ***************************************/
+  int numPredecessors()
+  {
+    return predecessors() == null ? 0 : m_predecessors.count();
   }
 
   /***************************************** toString ********************************************/
@@ -371,20 +452,8 @@ public class Task implements Comparable<Task>
   /**************************************** hasPredecessor ***************************************/
   public boolean hasPredecessor( Task other )
   {
-    // return true if task is predecessor
-    if ( m_predecessors.hasPredecessor( other ) )
-      return true;
-
-    // if task is summary, then sub-tasks are implicit predecessors
-    if ( m_summaryEnd > 0 )
-    {
-      int thisNum = this.index();
-      int otherNum = other.index();
-      if ( otherNum > thisNum && otherNum <= m_summaryEnd )
-        return true;
-    }
-
-    return false;
+    // return true if task is predecessor, directly or indirectly, including implicit sub-tasks of summary
+    return m_plan.tasks.hasPredecessor( this, other );
   }
 
   /***************************************** isSummary *******************************************/
@@ -405,97 +474,49 @@ public class Task implements Comparable<Task>
     m_summaryEnd = index;
   }
 
+  /**************************************** summaryStart *****************************************/
+  public int summaryStart()
+  {
+    return m_summaryStart;
+  }
+
   /*************************************** setSummaryStart ***************************************/
   public void setSummaryStart( int index )
   {
     m_summaryStart = index;
   }
 
-  /****************************************** schedule *******************************************/
-  public void schedule()
+  /***************************************** setSchedule *****************************************/
+  void setSchedule( long start, long end, long rollupStart, long rollupEnd, TimeSpan duration, TimeSpan work )
   {
-    // TODO Auto-generated method stub
-    JPlanner.trace( "Scheduling " + this );
+    // set schedule from columnar schedule pass, where sub-tasks are done before their summary so the
+    // summary roll-up is final and set directly, with new duration or work if calculated
+    end = Math.max( start, end );
+    if ( m_start == null || m_start.milliseconds() != start )
+      m_start = new DateTime( start );
+    if ( m_end == null || m_end.milliseconds() != end )
+      m_end = end == start ? m_start : new DateTime( end );
 
-    if ( m_type.toString() == TaskType.ASAP_FDUR )
+    if ( isSummary() )
     {
-      schedule_ASAP_FDUR();
-      return;
+      if ( m_rollupStart == null || m_rollupStart.milliseconds() != rollupStart )
+        m_rollupStart = new DateTime( rollupStart );
+      if ( m_rollupEnd == null || m_rollupEnd.milliseconds() != rollupEnd )
+        m_rollupEnd = new DateTime( rollupEnd );
+      m_rollupDuration = null;
     }
 
-    throw new UnsupportedOperationException( "Task type = " + m_type );
+    if ( duration != null )
+      m_duration = duration;
+    if ( work != null )
+      m_work = work;
   }
 
-  /************************************* schedule_ASAP_FDUR **************************************/
-  private void schedule_ASAP_FDUR()
+  /*************************************** copyToSchedule ****************************************/
+  void copyToSchedule( ScheduleColumns columns, int index )
   {
-    // depending on predecessors determine task start & end
-    boolean hasToStart = m_predecessors.hasToStart();
-    boolean hasToFinish = m_predecessors.hasToFinish();
-
-    // if this task doesn't have predecessors, does a summary?
-    if ( !hasToStart && !hasToFinish )
-    {
-      Task task = this;
-      for ( int indent = m_indent; indent > 0; indent-- )
-      {
-        task = JPlanner.plan.task( task.m_summaryStart );
-
-        hasToStart = task.m_predecessors.hasToStart();
-        if ( hasToStart )
-          break;
-
-        hasToFinish = task.m_predecessors.hasToFinish();
-        if ( hasToFinish )
-          break;
-      }
-    }
-
-    Calendar planCal = JPlanner.plan.calendar();
-    if ( m_duration.number() == 0.0 )
-    {
-      // milestone
-      if ( hasToStart )
-        m_start = planCal.roundDown( startDueToPredecessors() );
-      else if ( hasToFinish )
-        m_start = planCal.roundDown( endDueToPredecessors() );
-      else
-        m_start = planCal.roundUp( JPlanner.plan.start() );
-
-      m_end = m_start;
-    }
-    else
-    {
-      // not milestone
-      if ( hasToStart )
-      {
-        m_start = planCal.roundUp( startDueToPredecessors() );
-        m_end = planCal.roundDown( planCal.workTimeSpan( m_start, m_duration ) );
-      }
-      else if ( hasToFinish )
-      {
-        m_end = planCal.roundDown( endDueToPredecessors() );
-        m_start = planCal.roundUp( planCal.workTimeSpan( m_end, m_duration.minus() ) );
-      }
-      else
-      {
-        m_start = planCal.roundUp( JPlanner.plan.start() );
-        m_end = planCal.roundDown( planCal.workTimeSpan( m_start, m_duration ) );
-      }
-    }
-
-    // ensure end is always greater or equal to start
-    if ( m_end.isLessThan( m_start ) )
-      m_end = m_start;
-
-    // set gantt task bar data
-    if ( isSummary() )
-      m_gantt.setSummary( start(), end() );
-    else
-      m_gantt.setTask( m_start, m_end );
-
-    // set resource allocations
-    m_resources.assign( this );
+    // copy this task's own scheduling data into columns for a full schedule pass
+    columns.setTask( index, this, m_duration, m_work, m_start, m_end );
   }
 
   /********************************************* end *********************************************/
@@ -504,17 +525,9 @@ public class Task implements Comparable<Task>
     // return task or summary end date-time
     if ( isSummary() )
     {
-      // loop through each subtask
-      DateTime end = DateTime.MIN_VALUE;
-      for ( int id = index() + 1; id <= m_summaryEnd; id++ )
-      {
-        // if task isn't summary & isn't null, check if its end is after current latest
-        Task task = JPlanner.plan.task( id );
-        if ( !task.isNull() && !task.isSummary() && end.isLessThan( task.m_end ) )
-          end = task.m_end;
-      }
-
-      return end;
+      if ( m_rollupStart == null )
+        calculateRollup();
+      return m_rollupEnd;
     }
 
     return m_end;
@@ -526,20 +539,71 @@ public class Task implements Comparable<Task>
     // return task or summary start date-time
     if ( isSummary() )
     {
-      // loop through each subtask
-      DateTime start = DateTime.MAX_VALUE;
-      for ( int id = index() + 1; id <= m_summaryEnd; id++ )
+      if ( m_rollupStart == null )
+        calculateRollup();
+      return m_rollupStart;
+    }
+
+    return m_start;
+  }
+
+  /*************************************** calculateRollup ***************************************/
+  private void calculateRollup()
+  {
+    // calculate summary start & end from direct sub-tasks, using their cached values if summaries
+    DateTime start = DateTime.MAX_VALUE;
+    DateTime end = DateTime.MIN_VALUE;
+    int id = index() + 1;
+    while ( id <= m_summaryEnd )
+    {
+      Task task = m_plan.task( id );
+      if ( task.isNull() )
       {
-        // if task isn't summary & isn't null, check if its start is before current earliest
-        Task task = JPlanner.plan.task( id );
-        if ( !task.isNull() && !task.isSummary() && task.m_start.isLessThan( start ) )
-          start = task.m_start;
+        id++;
+        continue;
       }
 
-      return start;
+      DateTime taskStart = task.start();
+      DateTime taskEnd = task.end();
+      if ( taskStart.isLessThan( start ) )
+        start = taskStart;
+      if ( end.isLessThan( taskEnd ) )
+        end = taskEnd;
+
+      // skip over sub-task's own sub-tasks as already included in its roll-up
+      id = task.isSummary() ? task.m_summaryEnd + 1 : id + 1;
     }
 
-    return m_start;
+    m_rollupStart = start;
+    m_rollupEnd = end;
+    m_rollupDuration = null;
+  }
+
+  /************************************** summariesChanged ***************************************/
+  private void summariesChanged()
+  {
+    // clear cached roll-ups of summaries above this task, stopping early if already cleared
+    int id = m_summaryStart;
+    while ( id > 0 )
+    {
+      Task summary = m_plan.task( id );
+      if ( summary.m_rollupStart == null )
+        break;
+
+      summary.m_rollupStart = null;
+      summary.m_rollupEnd = null;
+      summary.m_rollupDuration = null;
+      id = summary.m_summaryStart;
+    }
+  }
+
+  /***************************************** clearRollup *****************************************/
+  void clearRollup()
+  {
+    // clear this task's cached summary roll-up
+    m_rollupStart = null;
+    m_rollupEnd = null;
+    m_rollupDuration = null;
   }
 
   /******************************************** work *********************************************/
@@ -548,7 +612,7 @@ public class Task implements Comparable<Task>
     // return task or summary work time-span
     if ( isSummary() )
     {
-      // TODO return JPlanner.plan.resources.work( this );
+      // TODO return m_plan.resources.work( this );
 
       return new TimeSpan();
     }
@@ -561,70 +625,59 @@ public class Task implements Comparable<Task>
   {
     // return task or summary work time-span
     if ( isSummary() )
-      return JPlanner.plan.calendar().workBetween( start(), end() );
+    {
+      if ( m_rollupDuration == null )
+        m_rollupDuration = m_plan.calendar().workBetween( start(), end() );
+      return m_rollupDuration;
+    }
 
     return m_duration;
   }
 
-  /************************************ startDueToPredecessors ***********************************/
-  private DateTime startDueToPredecessors()
+  /**************************************** predecessors *****************************************/
+  public Predecessors predecessors()
   {
-    // get start based on this task's predecessors
-    DateTime start = m_predecessors.start();
-
-    // if indented also check start against summary(s) predecessors
-    Task task = this;
-    for ( int indent = m_indent; indent > 0; indent-- )
-    {
-      task = JPlanner.plan.task( task.m_summaryStart );
-
-      // if start from summary predecessors is later, use it instead
-      DateTime summaryStart = task.m_predecessors.start();
-      if ( start.isLessThan( summaryStart ) )
-        start = summaryStart;
-    }
-
-    return start;
+    // return task predecessors, reading them when first used if task was loaded lazily
+    if ( m_predecessors == null && !isNull() )
+      m_predecessors = m_plan.tasks.predecessors( m_index );
+    return m_predecessors;
   }
 
-  /************************************* endDueToPredecessors ************************************/
-  private DateTime endDueToPredecessors()
+  /************************************** predecessorsRead ***************************************/
+  boolean predecessorsRead()
   {
-    // get end based on this task's predecessors
-    DateTime end = m_predecessors.end();
-
-    // if indented also check end against summary(s) predecessors
-    Task task = this;
-    for ( int indent = m_indent; indent > 0; indent-- )
-    {
-      task = JPlanner.plan.task( task.m_summaryStart );
-
-      // if end from summary predecessors is later, use it instead
-      DateTime summaryEnd = task.m_predecessors.end();
-      if ( summaryEnd.isLessThan( end ) )
-        end = summaryEnd;
-    }
-
-    return end;
+    // return true if predecessors are held by task rather than only in lazily loaded columns
+    return m_predecessors != null;
   }
 
-  /**************************************** predecessors *****************************************/
-  public Predecessors predecessors()
+  /****************************************** resources ******************************************/
+  public TaskResources resources()
   {
-    return m_predecessors;
+    return m_resources;
   }
 
   /****************************************** ganttData ******************************************/
   public GanttData ganttData()
   {
-    // return gantt-data associated with the task
+    // return gantt-data associated with the task, first updating it if schedule has moved
+    if ( isNull() )
+      return m_gantt;
+
+    if ( isSummary() )
+    {
+      if ( !m_gantt.isCurrent( start(), end(), true ) )
+        m_gantt.setSummary( start(), end() );
+    }
+    else if ( !m_gantt.isCurrent( m_start, m_end, false ) )
+      m_gantt.setTask( m_start, m_end );
+
     return m_gantt;
   }
 
   /******************************************** index ********************************************/
   public int index()
   {
-    return JPlanner.plan.index( this );
+    return m_plan.index( this );
   }
 
   /****************************************** priority *******************************************/
@@ -0,0 +1,408 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import rjc.jplanner.XmlLabels;
+
+/*************************************************************************************************/
+/*********************** Lazily loaded plan tasks held as compact columns ************************/
+/*************************************************************************************************/
+
+// holds the tasks of a lazily loaded binary plan as one primitive array per saved field, so a plan
+// costs about a hundred bytes per task until its Task objects are created, strings stay in the binary
+// plan's string table and are only decoded when used, resource assignments and predecessor edges are
+// held in their own columns with each task's running up to the first of the next task's
+
+class TaskColumns
+{
+  private Plan             m_plan;          // plan the tasks belong to
+  private PlanBinaryReader m_in;            // binary plan holding string table
+
+  private int[]            m_title;         // string index of title, -1 for null task
+  private int[]            m_indent;        // indent level
+  private double[]         m_duration;      // duration number
+  private char[]           m_durationUnits; // duration units
+  private long[]           m_start;         // start as epoch milliseconds
+  private long[]           m_end;           // end as epoch milliseconds
+  private double[]         m_work;          // work number
+  private char[]           m_workUnits;     // work units
+  private byte[]           m_type;          // task type number
+  private int[]            m_priority;      // priority
+  private long[]           m_deadline;      // deadline as epoch milliseconds, minimum value for none
+  private int[]            m_cost;          // string index of cost
+  private int[]            m_comment;       // string index of comment
+  private int[]            m_summaryStart;  // index of summary, kept up to date while not materialised
+  private int[]            m_summaryEnd;    // index of summary end or -1, as above
+
+  private int[]            m_firstAssign;   // index of first assignment of each task, and count
+  private int[]            m_assignTag;     // string index of assigned resource tag
+  private float[]          m_assignMax;     // maximum quantity assigned
+
+  private int[]            m_firstEdge;     // index of first predecessor edge of each task, and count
+  private int[]            m_edgePred;      // predecessor task index
+  private byte[]           m_edgeType;      // predecessor type number
+  private double[]         m_edgeLag;       // lag number
+  private char[]           m_edgeLagUnits;  // lag units
+
+  /***************************************** constructor *****************************************/
+  TaskColumns( Plan plan, PlanBinaryReader in ) throws IOException
+  {
+    // read binary task records, resource assignments and predecessor edges into columns
+    m_plan = plan;
+    m_in = in;
+    int count = in.count( PlanBinaryWriter.SECTION_TASKS );
+    ByteBuffer records = in.section( PlanBinaryWriter.SECTION_TASKS, Task.BINARY_BYTES );
+    m_title = new int[count];
+    m_indent = new int[count];
+    m_duration = new double[count];
+    m_durationUnits = new char[count];
+    m_start = new long[count];
+    m_end = new long[count];
+    m_work = new double[count];
+    m_workUnits = new char[count];
+    m_type = new byte[count];
+    m_priority = new int[count];
+    m_deadline = new long[count];
+    m_cost = new int[count];
+    m_comment = new int[count];
+    m_summaryStart = new int[count];
+    m_summaryEnd = new int[count];
+    m_firstAssign = new int[count + 1];
+
+    int assigns = 0;
+    for ( int index = 0; index < count; index++ )
+    {
+      // null tasks have only title set
+      int end = records.position() + Task.BINARY_BYTES;
+      m_title[index] = in.checkString( records.getInt() );
+      m_firstAssign[index] = assigns;
+      m_summaryEnd[index] = -1;
+      if ( m_title[index] < 0 )
+      {
+        records.position( end );
+        continue;
+      }
+
+      m_indent[index] = records.getInt();
+      m_duration[index] = records.getDouble();
+      m_durationUnits[index] = records.getChar();
+      m_start[index] = records.getLong();
+      m_end[index] = records.getLong();
+      m_work[index] = records.getDouble();
+      m_workUnits[index] = records.getChar();
+      assigns += records.getInt();
+      m_type[index] = records.get();
+      m_priority[index] = records.getInt();
+      m_deadline[index] = records.getLong();
+      m_cost[index] = in.checkString( records.getInt() );
+      m_comment[index] = in.checkString( records.getInt() );
+    }
+    m_firstAssign[count] = assigns;
+
+    // read resource assignments, which follow on from previous task's
+    if ( assigns != in.count( PlanBinaryWriter.SECTION_ASSIGNS ) )
+      throw new IOException( "Binary plan has " + in.count( PlanBinaryWriter.SECTION_ASSIGNS )
+          + " assignments but tasks have " + assigns );
+    ByteBuffer assignments = in.section( PlanBinaryWriter.SECTION_ASSIGNS, PlanBinaryWriter.ASSIGN_BYTES );
+    m_assignTag = new int[assigns];
+    m_assignMax = new float[assigns];
+    for ( int assign = 0; assign < assigns; assign++ )
+    {
+      m_assignTag[assign] = in.checkString( assignments.getInt() );
+      m_assignMax[assign] = assignments.getFloat();
+    }
+
+    // read predecessor edges, which are grouped by task in task order
+    int edges = in.count( PlanBinaryWriter.SECTION_EDGES );
+    ByteBuffer buffer = in.section( PlanBinaryWriter.SECTION_EDGES, PlanBinaryWriter.EDGE_BYTES );
+    m_firstEdge = new int[count + 1];
+    m_edgePred = new int[edges];
+    m_edgeType = new byte[edges];
+    m_edgeLag = new double[edges];
+    m_edgeLagUnits = new char[edges];
+    int next = 0;
+    for ( int edge = 0; edge < edges; edge++ )
+    {
+      int task = buffer.getInt();
+      int pred = buffer.getInt();
+      byte type = buffer.get();
+      if ( task < next - 1 || task >= count || pred < 0 || pred >= count || type < 0
+          || type >= Predecessors.TYPES.length )
+        throw new IOException( "Invalid binary plan predecessor " + edge );
+
+      while ( next <= task )
+        m_firstEdge[next++] = edge;
+      m_edgePred[edge] = pred;
+      m_edgeType[edge] = type;
+      m_edgeLag[edge] = buffer.getDouble();
+      m_edgeLagUnits[edge] = buffer.getChar();
+    }
+    while ( next <= count )
+      m_firstEdge[next++] = edges;
+  }
+
+  /******************************************** count ********************************************/
+  int count()
+  {
+    return m_title.length;
+  }
+
+  /******************************************** task *********************************************/
+  Task task( int index )
+  {
+    // return new task constructed from columns
+    return new Task( m_plan, this, index );
+  }
+
+  /******************************************* isNull ********************************************/
+  boolean isNull( int index )
+  {
+    return m_title[index] < 0;
+  }
+
+  /******************************************** title ********************************************/
+  String title( int index )
+  {
+    return m_in.string( m_title[index] );
+  }
+
+  /******************************************* indent ********************************************/
+  int indent( int index )
+  {
+    return m_indent[index];
+  }
+
+  /****************************************** duration *******************************************/
+  TimeSpan duration( int index )
+  {
+    return TimeSpan.exact( m_duration[index], m_durationUnits[index] );
+  }
+
+  /******************************************** start ********************************************/
+  DateTime start( int index )
+  {
+    return PlanBinaryReader.dateTime( m_start[index] );
+  }
+
+  /********************************************* end *********************************************/
+  DateTime end( int index )
+  {
+    return PlanBinaryReader.dateTime( m_end[index] );
+  }
+
+  /******************************************** work *********************************************/
+  TimeSpan work( int index )
+  {
+    return TimeSpan.exact( m_work[index], m_workUnits[index] );
+  }
+
+  /****************************************** resources ******************************************/
+  TaskResources resources( int index )
+  {
+    // return new resource assignments list for task
+    TaskResources resources = new TaskResources();
+    for ( int assign = m_firstAssign[index]; assign < m_firstAssign[index + 1]; assign++ )
+      resources.add( m_in.string( m_assignTag[assign] ), m_assignMax[assign] );
+
+    return resources;
+  }
+
+  /******************************************** type *********************************************/
+  TaskType type( int index )
+  {
+    return new TaskType( m_type[index] );
+  }
+
+  /****************************************** priority *******************************************/
+  int priority( int index )
+  {
+    return m_priority[index];
+  }
+
+  /****************************************** deadline *******************************************/
+  DateTime deadline( int index )
+  {
+    return PlanBinaryReader.dateTime( m_deadline[index] );
+  }
+
+  /******************************************** cost *********************************************/
+  String cost( int index )
+  {
+    return m_in.string( m_cost[index] );
+  }
+
+  /******************************************* comment *******************************************/
+  String comment( int index )
+  {
+    return m_in.string( m_comment[index] );
+  }
+
+  /**************************************** summaryStart *****************************************/
+  int summaryStart( int index )
+  {
+    return m_summaryStart[index];
+  }
+
+  /*************************************** setSummaryStart ***************************************/
+  void setSummaryStart( int index, int summary )
+  {
+    m_summaryStart[index] = summary;
+  }
+
+  /***************************************** summaryEnd ******************************************/
+  int summaryEnd( int index )
+  {
+    return m_summaryEnd[index];
+  }
+
+  /**************************************** setSummaryEnd ****************************************/
+  void setSummaryEnd( int index, int summaryEnd )
+  {
+    m_summaryEnd[index] = summaryEnd;
+  }
+
+  /**************************************** predecessors *****************************************/
+  Predecessors predecessors( int index )
+  {
+    // return new predecessors list for task, materialising the predecessor tasks but not theirs
+    Predecessors preds = new Predecessors( m_plan );
+    for ( int edge = m_firstEdge[index]; edge < m_firstEdge[index + 1]; edge++ )
+      preds.add( m_plan.tasks.get( m_edgePred[edge] ), m_edgeType[edge],
+          TimeSpan.exact( m_edgeLag[edge], m_edgeLagUnits[edge] ) );
+
+    return preds;
+  }
+
+  /************************************* predecessorIndexes **************************************/
+  int[] predecessorIndexes( int index )
+  {
+    // return indexes of task predecessors, without materialising the predecessor tasks
+    return Arrays.copyOfRange( m_edgePred, m_firstEdge[index], m_firstEdge[index + 1] );
+  }
+
+  /***************************************** setSchedule *****************************************/
+  void setSchedule( int index, long start, long end, TimeSpan duration, TimeSpan work )
+  {
+    // set schedule of task not yet materialised, with new duration or work if calculated
+    m_start[index] = start;
+    m_end[index] = Math.max( start, end );
+    if ( duration != null )
+    {
+      m_duration[index] = duration.number();
+      m_durationUnits[index] = duration.units();
+    }
+    if ( work != null )
+    {
+      m_work[index] = work.number();
+      m_workUnits[index] = work.units();
+    }
+  }
+
+  /*************************************** copyToSchedule ****************************************/
+  void copyToSchedule( ScheduleColumns columns, int index )
+  {
+    // copy scheduling data of task not yet materialised into schedule columns
+    if ( isNull( index ) )
+    {
+      columns.setNull( index, -1, m_plan.start().milliseconds(), m_plan.start().milliseconds() );
+      return;
+    }
+
+    columns.setTask( index, TaskType.toString( m_type[index] ), m_summaryEnd[index] > 0,
+        m_firstAssign[index + 1] > m_firstAssign[index], m_indent[index], m_summaryStart[index],
+        m_summaryEnd[index], m_duration[index], m_durationUnits[index], m_work[index], m_workUnits[index],
+        m_start[index] == Long.MIN_VALUE ? 0L : m_start[index], m_end[index] == Long.MIN_VALUE ? 0L : m_end[index] );
+    copyPredecessorsToSchedule( columns, index );
+  }
+
+  /********************************* copyPredecessorsToSchedule **********************************/
+  void copyPredecessorsToSchedule( ScheduleColumns columns, int index )
+  {
+    // copy predecessors of task into schedule columns, without materialising the predecessor tasks
+    for ( int edge = m_firstEdge[index]; edge < m_firstEdge[index + 1]; edge++ )
+      columns.addPredecessor( index, m_edgePred[edge], m_edgeType[edge], m_edgeLag[edge], m_edgeLagUnits[edge] );
+  }
+
+  /*************************************** numAssignments ****************************************/
+  int numAssignments( int index )
+  {
+    return m_firstAssign[index + 1] - m_firstAssign[index];
+  }
+
+  /*************************************** numPredecessors ***************************************/
+  int numPredecessors( int index )
+  {
+    return m_firstEdge[index + 1] - m_firstEdge[index];
+  }
+
+  /************************************ saveResourcesToBinary ************************************/
+  void saveResourcesToBinary( PlanBinaryWriter out, int index ) throws IOException
+  {
+    // write task resource assignments as binary records, straight from columns
+    for ( int assign = m_firstAssign[index]; assign < m_firstAssign[index + 1]; assign++ )
+    {
+      out.putString( m_in.string( m_assignTag[assign] ) );
+      out.putFloat( m_assignMax[assign] );
+    }
+  }
+
+  /********************************** savePredecessorsToBinary ***********************************/
+  void savePredecessorsToBinary( PlanBinaryWriter out, int index ) throws IOException
+  {
+    // write task predecessors as binary edge records, straight from columns
+    for ( int edge = m_firstEdge[index]; edge < m_firstEdge[index + 1]; edge++ )
+    {
+      out.putInt( index );
+      out.putInt( m_edgePred[edge] );
+      out.putByte( m_edgeType[edge] );
+      out.putDouble( m_edgeLag[edge] );
+      out.putChar( m_edgeLagUnits[edge] );
+    }
+  }
+
+  /************************************ savePredecessorToXML *************************************/
+  void savePredecessorToXML( XMLStreamWriter xsw, int index ) throws XMLStreamException
+  {
+    // write task predecessor data to XML stream, in same format as Task without creating the tasks
+    if ( numPredecessors( index ) == 0 )
+      return;
+
+    StringBuilder preds = new StringBuilder();
+    for ( int edge = m_firstEdge[index]; edge < m_firstEdge[index + 1]; edge++ )
+    {
+      if ( preds.length() > 0 )
+        preds.append( ", " );
+      preds.append( Predecessors.toString( m_edgePred[edge], Predecessors.TYPES[m_edgeType[edge]],
+          TimeSpan.exact( m_edgeLag[edge], m_edgeLagUnits[edge] ) ) );
+    }
+
+    xsw.writeStartElement( XmlLabels.XML_PREDECESSORS );
+    xsw.writeAttribute( XmlLabels.XML_TASK, Integer.toString( index ) );
+    xsw.writeAttribute( XmlLabels.XML_PREDS, preds.toString() );
+    xsw.writeEndElement(); // XML_PREDECESSORS
+  }
+
+}
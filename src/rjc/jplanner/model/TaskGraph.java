@@ -0,0 +1,532 @@
+/**************************************************************************
+ *  Copyright (C) 2016 by Richard Crook                                   *
+ *  https://github.com/dazzle50/JPlannerFX                                *
+ *                                                                        *
+ *  This program is free software: you can redistribute it and/or modify  *
+ *  it under the terms of the GNU General Public License as published by  *
+ *  the Free Software Foundation, either version 3 of the License, or     *
+ *  (at your option) any later version.                                   *
+ *                                                                        *
+ *  This program is distributed in the hope that it will be useful,       *
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *  GNU General Public License for more details.                          *
+ *                                                                        *
+ *  You should have received a copy of the GNU General Public License     *
+ *  along with this program.  If not, see http://www.gnu.org/licenses/    *
+ **************************************************************************/
+
+package rjc.jplanner.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import rjc.jplanner.Utils;
+
+
+/*************************************************************************************************/
+/******************** Dependency graph of plan tasks used to order scheduling ********************/
+/*************************************************************************************************/
+
+public class TaskGraph
+{
+  // graph has a node for each non-null task, plus a 'gate' node for each summary which
+  // carries the summary predecessors down to every sub-task (as these use them when scheduling),
+  // tasks are referred to by index and read without materialising any loaded lazily
+  private Tasks                  m_list;       // list of tasks graph was built from
+  private int[]                  m_priority;   // priority of each node, gates highest so passed through first
+  private int[]                  m_index;      // task index of each node, also used to break priority ties
+  private int                    m_count;      // number of nodes in graph
+  private int[]                  m_node;       // node for each task index, -1 if null task
+  private int[]                  m_gate;       // gate node for each task index, -1 if not summary
+
+  private int[][]                m_succ;       // successor nodes of each node
+  private int[]                  m_succCount;  // number of successors of each node
+  private int[]                  m_predCount;  // number of predecessor edges into each node
+  private int[][]                m_sources;    // explicit predecessor nodes of each task node
+
+  private int[]                  m_order;      // nodes in schedule order, null until calculated
+  private int[]                  m_rank;       // position of each node in a valid topological order
+  private int                    m_cycleStart; // rank from which nodes are in circular dependencies
+  private boolean                m_reordered;  // true if edges edited since order last used to schedule
+
+  private HashMap<Long, Boolean> m_reach;      // memo of reachability queries for current edges
+  private int[]                  m_visited;    // stamp of last query to visit each node
+  private int                    m_stamp;      // stamp of current reachability query
+  private int[]                  m_stack;      // work stack for reachability queries
+
+  private static final int       MEMO_MAX = 100000;
+
+  /**************************************** constructor ******************************************/
+  public TaskGraph( Tasks tasks )
+  {
+    // create a node for each non-null task (skipping special task 0)
+    m_list = tasks;
+    int size = tasks.size();
+    m_node = new int[size];
+    m_gate = new int[size];
+    Arrays.fill( m_node, -1 );
+    Arrays.fill( m_gate, -1 );
+
+    m_priority = new int[2 * size];
+    m_index = new int[2 * size];
+    for ( int id = 1; id < size; id++ )
+    {
+      if ( tasks.isNull( id ) )
+        continue;
+
+      m_node[id] = addNode( tasks.priority( id ), id );
+      if ( tasks.isSummary( id ) )
+        m_gate[id] = addNode( Integer.MAX_VALUE, id );
+    }
+
+    m_succ = new int[m_count][];
+    m_succCount = new int[m_count];
+    m_predCount = new int[m_count];
+    m_sources = new int[m_count][];
+    m_visited = new int[m_count];
+    m_stack = new int[m_count];
+    m_reach = new HashMap<Long, Boolean>();
+
+    // add edges for explicit predecessors, summary predecessors go to the summary gate as well
+    for ( int id = 1; id < size; id++ )
+      if ( m_node[id] >= 0 )
+        addPredecessors( id );
+
+    // add implicit edges, sub-tasks before their summary, and summary gate before its sub-tasks
+    for ( int id = 1; id < size; id++ )
+    {
+      if ( m_node[id] < 0 )
+        continue;
+
+      int summary = tasks.summaryStart( id );
+      if ( summary <= 0 || summary >= size || m_node[summary] < 0 )
+        continue;
+
+      addEdge( m_node[id], m_node[summary] );
+      if ( m_gate[summary] >= 0 )
+        addEdge( m_gate[summary], m_gate[id] >= 0 ? m_gate[id] : m_node[id] );
+    }
+  }
+
+  /******************************************* addNode *******************************************/
+  private int addNode( int priority, int index )
+  {
+    // add node to graph returning its node number
+    m_priority[m_count] = priority;
+    m_index[m_count] = index;
+    return m_count++;
+  }
+
+  /******************************************* addEdge *******************************************/
+  private void addEdge( int from, int to )
+  {
+    // add edge to successors of node, growing if needed
+    int[] succ = m_succ[from];
+    if ( succ == null )
+      succ = m_succ[from] = new int[4];
+    else if ( m_succCount[from] == succ.length )
+      succ = m_succ[from] = Arrays.copyOf( succ, 2 * succ.length );
+
+    succ[m_succCount[from]++] = to;
+    m_predCount[to]++;
+  }
+
+  /***************************************** removeEdge ******************************************/
+  private void removeEdge( int from, int to )
+  {
+    // remove one edge from successors of node
+    int[] succ = m_succ[from];
+    for ( int e = 0; e < m_succCount[from]; e++ )
+      if ( succ[e] == to )
+      {
+        succ[e] = succ[--m_succCount[from]];
+        m_predCount[to]--;
+        return;
+      }
+  }
+
+  /*************************************** addPredecessors ***************************************/
+  private void addPredecessors( int id )
+  {
+    // add edges from task's explicit predecessors, remembering them so can be removed if changed
+    int node = m_node[id];
+    int[] preds = m_list.predecessorIndexes( id );
+    int[] sources = new int[preds.length];
+    int count = 0;
+    for ( int predId : preds )
+    {
+      if ( predId < 0 || predId >= m_node.length || m_node[predId] < 0 )
+        continue;
+
+      int source = m_node[predId];
+      sources[count++] = source;
+      addEdge( source, node );
+      if ( m_gate[id] >= 0 )
+        addEdge( source, m_gate[id] );
+    }
+    m_sources[node] = Arrays.copyOf( sources, count );
+  }
+
+  /************************************* predecessorsChanged *************************************/
+  public void predecessorsChanged( Task task )
+  {
+    // update graph edges for task's changed predecessors
+    int id = m_list.index( task );
+    if ( id < 0 || id >= m_node.length || m_node[id] < 0 )
+      return;
+
+    int node = m_node[id];
+    int gate = m_gate[id];
+    for ( int source : m_sources[node] )
+    {
+      removeEdge( source, node );
+      if ( gate >= 0 )
+        removeEdge( source, gate );
+    }
+    addPredecessors( id );
+    m_reach.clear();
+    m_order = null;
+    m_reordered = true;
+
+    // existing ranks remain a valid topological order unless a new edge goes against them
+    if ( m_rank != null )
+      for ( int source : m_sources[node] )
+        if ( m_rank[source] >= m_rank[node] || gate >= 0 && m_rank[source] >= m_rank[gate] )
+        {
+          m_rank = null;
+          break;
+        }
+  }
+
+  /**************************************** scheduleOrder ****************************************/
+  public int[] scheduleOrder()
+  {
+    // return task indexes in order to be scheduled, predecessors first, then by priority, finally by index
+    if ( m_order == null )
+      calculateOrder();
+    m_reordered = false;
+
+    int[] order = new int[m_count];
+    int count = 0;
+    for ( int n : m_order )
+      if ( isTask( n ) )
+        order[count++] = m_index[n];
+
+    return Arrays.copyOf( order, count );
+  }
+
+  /***************************************** components ******************************************/
+  public ArrayList<int[]> components()
+  {
+    // return task indexes split into groups sharing no dependencies or resources, each in schedule order
+    if ( m_order == null )
+      calculateOrder();
+    m_reordered = false;
+
+    // join nodes connected by edges
+    int[] parent = new int[m_count];
+    for ( int n = 0; n < m_count; n++ )
+      parent[n] = n;
+    for ( int n = 0; n < m_count; n++ )
+      for ( int e = 0; e < m_succCount[n]; e++ )
+        union( parent, n, m_succ[n][e] );
+
+    // join nodes for tasks that may use the same resource
+    HashMap<Resource, Integer> users = new HashMap<Resource, Integer>();
+    for ( int n = 0; n < m_count; n++ )
+      if ( usesResources( n ) )
+        for ( TaskResources.Assignment ass : m_list.resources( m_index[n] ).m_res )
+          for ( Resource res : m_list.m_plan.resources.listForTag( ass.tag ) )
+          {
+            Integer user = users.putIfAbsent( res, n );
+            if ( user != null )
+              union( parent, user, n );
+          }
+
+    // count tasks in each group, then collect them into their groups in schedule order
+    int[] group = new int[m_count];
+    Arrays.fill( group, -1 );
+    int[] sizes = new int[m_count];
+    int count = 0;
+    for ( int n : m_order )
+      if ( isTask( n ) )
+      {
+        int root = find( parent, n );
+        if ( group[root] < 0 )
+          group[root] = count++;
+        sizes[group[root]]++;
+      }
+
+    ArrayList<int[]> groups = new ArrayList<int[]>( count );
+    for ( int g = 0; g < count; g++ )
+      groups.add( new int[sizes[g]] );
+    Arrays.fill( sizes, 0 );
+    for ( int n : m_order )
+      if ( isTask( n ) )
+      {
+        int g = group[find( parent, n )];
+        groups.get( g )[sizes[g]++] = m_index[n];
+      }
+
+    return groups;
+  }
+
+  /******************************************** union ********************************************/
+  private static void union( int[] parent, int n1, int n2 )
+  {
+    // join the sets containing the two nodes
+    int root1 = find( parent, n1 );
+    int root2 = find( parent, n2 );
+    if ( root1 != root2 )
+      parent[Math.max( root1, root2 )] = Math.min( root1, root2 );
+  }
+
+  /******************************************** find *********************************************/
+  private static int find( int[] parent, int node )
+  {
+    // return representative node of set containing node, halving paths on the way
+    while ( parent[node] != node )
+    {
+      parent[node] = parent[parent[node]];
+      node = parent[node];
+    }
+
+    return node;
+  }
+
+  /***************************************** downstream ******************************************/
+  public int[] downstream( Collection<Task> changed, Collection<Task> resChanged )
+  {
+    // return indexes of changed tasks plus all tasks dependent on them, in order to be scheduled
+    // (resChanged are tasks whose resources changed, so may have used resources before the change)
+    if ( m_order == null )
+      calculateOrder();
+
+    int edges = 0;
+    for ( int n = 0; n < m_count; n++ )
+      edges += m_succCount[n];
+
+    boolean[] marked = new boolean[m_count];
+    int[] stack = new int[m_count + edges];
+    int top = 0;
+    for ( Task task : changed )
+    {
+      int id = m_list.index( task );
+      if ( id < 0 || id >= m_node.length )
+        continue;
+      if ( m_node[id] >= 0 )
+        stack[top++] = m_node[id];
+      if ( m_gate[id] >= 0 )
+        stack[top++] = m_gate[id];
+    }
+    markDownstream( marked, stack, top );
+
+    boolean[] resNode = new boolean[m_count];
+    for ( Task task : resChanged )
+    {
+      int id = m_list.index( task );
+      if ( id >= 0 && id < m_node.length && m_node[id] >= 0 )
+        resNode[m_node[id]] = true;
+    }
+
+    // resources are allocated in schedule order, so any later task using resources is also affected
+    // (and if edits have changed the order, then every task using resources is affected)
+    int pos = 0;
+    if ( !m_reordered )
+      while ( pos < m_count && !resNode[m_order[pos]]
+          && !( marked[m_order[pos]] && usesResources( m_order[pos] ) ) )
+        pos++;
+
+    top = 0;
+    for ( ; pos < m_count; pos++ )
+      if ( !marked[m_order[pos]] && usesResources( m_order[pos] ) )
+        stack[top++] = m_order[pos];
+    markDownstream( marked, stack, top );
+    m_reordered = false;
+
+    // return marked tasks in schedule order
+    int[] order = new int[m_count];
+    int count = 0;
+    for ( int n : m_order )
+      if ( marked[n] && isTask( n ) )
+        order[count++] = m_index[n];
+
+    return Arrays.copyOf( order, count );
+  }
+
+  /*************************************** markDownstream ****************************************/
+  private void markDownstream( boolean[] marked, int[] stack, int top )
+  {
+    // mark nodes on stack and all nodes reachable from them
+    while ( top > 0 )
+    {
+      int n = stack[--top];
+      if ( marked[n] )
+        continue;
+
+      marked[n] = true;
+      for ( int e = 0; e < m_succCount[n]; e++ )
+        if ( !marked[m_succ[n][e]] )
+          stack[top++] = m_succ[n][e];
+    }
+  }
+
+  /**************************************** usesResources ****************************************/
+  private boolean usesResources( int node )
+  {
+    // return true if node is a task with resources assigned
+    return isTask( node ) && m_list.usesResources( m_index[node] );
+  }
+
+  /******************************************* isTask ********************************************/
+  private boolean isTask( int node )
+  {
+    // return true if node is a task rather than a summary gate
+    return m_node[m_index[node]] == node;
+  }
+
+  /*************************************** calculateOrder ****************************************/
+  private void calculateOrder()
+  {
+    // priority-aware topological sort, predecessors first, then by priority, finally by index
+    int[] waiting = Arrays.copyOf( m_predCount, m_count );
+    PriorityQueue<Integer> ready = new PriorityQueue<Integer>( Math.max( 1, m_count ), ( n1, n2 ) ->
+    {
+      if ( m_priority[n1] != m_priority[n2] )
+        return m_priority[n1] > m_priority[n2] ? -1 : 1;
+      return Integer.compare( m_index[n1], m_index[n2] );
+    } );
+
+    for ( int n = 0; n < m_count; n++ )
+      if ( waiting[n] == 0 )
+        ready.add( n );
+
+    m_order = new int[m_count];
+    int count = 0;
+    boolean[] done = new boolean[m_count];
+    while ( !ready.isEmpty() )
+    {
+      int n = ready.poll();
+      done[n] = true;
+      m_order[count++] = n;
+
+      for ( int e = 0; e < m_succCount[n]; e++ )
+        if ( --waiting[m_succ[n][e]] == 0 )
+          ready.add( m_succ[n][e] );
+    }
+
+    // any nodes not reached are in a circular dependency, still schedule them in index order
+    m_cycleStart = count;
+    for ( int n = 0; n < m_count; n++ )
+      if ( !done[n] )
+      {
+        if ( isTask( n ) )
+          Utils.trace( "Circular dependency for task " + m_index[n] );
+        m_order[count++] = n;
+      }
+
+    // ranks give quick test that a node cannot reach another earlier in the order
+    m_rank = new int[m_count];
+    for ( int pos = 0; pos < m_count; pos++ )
+      m_rank[m_order[pos]] = pos;
+  }
+
+  /**************************************** hasPredecessor ***************************************/
+  public boolean hasPredecessor( Task task, Task other )
+  {
+    // return true if task depends on other, directly or indirectly
+    int id = m_list.index( task );
+    int otherId = m_list.index( other );
+    if ( id < 0 || otherId < 0 || id >= m_node.length || otherId >= m_node.length || id == otherId )
+      return false;
+    if ( m_node[id] < 0 || m_node[otherId] < 0 )
+      return false;
+
+    return isReachable( m_node[otherId], m_node[id] );
+  }
+
+  /***************************************** createsCycle ****************************************/
+  public boolean createsCycle( Task task, Task pred )
+  {
+    // return true if making pred a predecessor of task would give a circular dependency
+    int id = m_list.index( task );
+    int predId = m_list.index( pred );
+    if ( id < 0 || predId < 0 || id >= m_node.length || predId >= m_node.length )
+      return false;
+    if ( m_node[id] < 0 || m_node[predId] < 0 )
+      return false;
+    if ( id == predId )
+      return true;
+
+    // new edges would go to task and its gate (if summary), so cycle if either already reaches pred
+    if ( isReachable( m_node[id], m_node[predId] ) )
+      return true;
+    return m_gate[id] >= 0 && isReachable( m_gate[id], m_node[predId] );
+  }
+
+  /***************************************** isReachable *****************************************/
+  private boolean isReachable( int from, int to )
+  {
+    // return true if path exists from node to node
+    if ( m_rank == null )
+      calculateOrder();
+
+    // unless in a circular dependency, a node can only reach nodes later in topological order
+    boolean bounded = m_rank[to] < m_cycleStart;
+    if ( bounded && m_rank[from] >= m_rank[to] )
+      return false;
+
+    // check memo of earlier answers for current edges
+    Long key = ( (long) from << 32 ) | to;
+    Boolean memo = m_reach.get( key );
+    if ( memo != null )
+      return memo;
+
+    if ( ++m_stamp == Integer.MAX_VALUE )
+    {
+      Arrays.fill( m_visited, 0 );
+      m_stamp = 1;
+    }
+
+    boolean found = search( from, to, bounded );
+    if ( m_reach.size() >= MEMO_MAX )
+      m_reach.clear();
+    m_reach.put( key, found );
+    return found;
+  }
+
+  /******************************************* search ********************************************/
+  private boolean search( int from, int to, boolean bounded )
+  {
+    // depth first search for target node, if bounded only exploring nodes ranked before target
+    int top = 0;
+    m_stack[top++] = from;
+    m_visited[from] = m_stamp;
+    while ( top > 0 )
+    {
+      int n = m_stack[--top];
+      for ( int e = 0; e < m_succCount[n]; e++ )
+      {
+        int next = m_succ[n][e];
+        if ( next == to )
+          return true;
+        if ( m_visited[next] == m_stamp || bounded && m_rank[next] >= m_rank[to] )
+          continue;
+
+        // use memo of earlier answers to cut search short
+        m_visited[next] = m_stamp;
+        Boolean memo = m_reach.get( ( (long) next << 32 ) | to );
+        if ( memo == null )
+          m_stack[top++] = next;
+        else if ( memo )
+          return true;
+      }
+    }
+
+    return false;
+  }
+
+}
@@ -18,10 +18,13 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import rjc.jplanner.Utils;
 
-import rjc.jplanner.JPlanner;
 
 /*************************************************************************************************/
 /************************* Resources assigned to single task within plan *************************/
@@ -36,6 +39,33 @@ public class TaskResources
     public float  max; // 0 (zero) means unlimited
   }
 
+  // structure that contains resources assigned to a task, resolved for levelling
+  private class Pool
+  {
+    int                    count;   // number of distinct resources
+    Resource[]             res;     // resources
+    ResourceWork[]         work;    // work allocated to each resource
+    int[]                  ass;     // index of assignment each resource is used for
+    long[]                 start;   // epoch-ms each resource availability starts
+    long[]                 end;     // epoch-ms each resource availability ends
+    Calendar[]             cal;     // calendar of each resource
+    double[]               usable;  // quantity of each resource usable in current segment
+    long[]                 next;    // epoch-ms when usable quantity of each resource may next change
+    PriorityQueue<Integer> queue;   // resources ordered by when they may next change
+    int                    active;  // number of resources with usable quantity
+    int[]                  list;    // resources with usable quantity in first active elements
+    int[]                  pos;     // position of each resource in list, or -1
+    double[]               rate;    // quantity of each resource to use in current segment
+    double[]               left;    // quantity each assignment may still use in current segment
+    int                    holding; // number of resources with allocation in progress
+    int[]                  hold;    // resources with allocation in progress in first holding elements
+    double[]               held;    // quantity of allocation in progress for each resource, or zero
+    long[]                 since;   // epoch-ms allocation in progress started for each resource
+  }
+
+  // quantities and work smaller than this are treated as zero
+  private static final double EPSILON = 1e-9;
+
   ArrayList<Assignment> m_res; // list of resource assignments in original string format
 
   /**************************************** constructor ******************************************/
@@ -54,13 +84,24 @@ public class TaskResources
     String max;
     for ( String part : text.split( "," ) )
     {
+      // if blank part, skip, so empty text gives no assignments
+      part = Utils.clean( part );
+      if ( part.length() == 0 )
+        continue;
+
       // split part into tag and max assignment
-      part = JPlanner.clean( part );
       int bracket = part.indexOf( '[' );
       if ( bracket >= 0 )
       {
         tag = part.substring( 0, bracket ).trim();
-        max = part.substring( bracket + 1 ).replaceAll( "]", "" ).trim();
+        max = part.substring( bracket + 1 );
+        int close = max.indexOf( ']' );
+        if ( close == max.length() - 1 )
+          max = max.substring( 0, close ).trim();
+        else if ( close >= 0 )
+          max = max.replace( "]", "" ).trim();
+        else
+          max = max.trim();
       }
       else
       {
@@ -104,8 +145,35 @@ public class TaskResources
     return str.substring( 0, str.length() - 2 );
   }
 
+  /**************************************** saveToBinary *****************************************/
+  void saveToBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write each assignment as binary record of tag and maximum quantity
+    for ( Assignment ass : m_res )
+    {
+      out.putString( ass.tag );
+      out.putFloat( ass.max );
+    }
+  }
+
+  /********************************************* add *********************************************/
+  void add( String tag, float max )
+  {
+    // add assignment, as read from binary file
+    Assignment ass = new Assignment();
+    ass.tag = tag;
+    ass.max = max;
+    m_res.add( ass );
+  }
+
+  /******************************************** count ********************************************/
+  int count()
+  {
+    return m_res.size();
+  }
+
   /******************************************** errors *******************************************/
-  public static String errors( String text )
+  public static String errors( Plan plan, String text )
   {
     // split text into individual predecessors
     StringBuilder error = new StringBuilder();
@@ -114,7 +182,7 @@ public class TaskResources
     for ( String part : text.split( "," ) )
     {
       // if blank part, skip
-      part = JPlanner.clean( part );
+      part = Utils.clean( part );
       if ( part.length() == 0 )
         continue;
 
@@ -131,7 +199,7 @@ public class TaskResources
         max = "1";
       }
 
-      if ( !JPlanner.plan.resources.isAssignable( tag ) )
+      if ( !plan.resources.isAssignable( tag ) )
         error.append( '\'' ).append( tag ).append( "' is not an assignable resource.  " );
 
       try
@@ -150,16 +218,358 @@ public class TaskResources
     return error.toString();
   }
 
-  /******************************************** assign *******************************************/
-  public void assign( Task task )
+  /******************************************* isEmpty *******************************************/
+  public boolean isEmpty()
   {
-    // TODO Auto-generated method stub !!!!!!!!!!!!!!!!!!!!!
-    for ( Assignment ass : m_res )
+    // return true if no resource assignments
+    return m_res.isEmpty();
+  }
+
+  /******************************************* assign ********************************************/
+  public double assign( Task task, ResourceWork[] works, long start, long end )
+  {
+    // allocate available resources between start and end, return work done in equivalent days, resource
+    // works are indexed by resource index
+    Pool pool = resolve( task.m_plan, works );
+    double work = 0.0;
+    long from = start;
+    while ( from < end )
+    {
+      long to = Math.min( advance( pool, from ), end );
+      allocate( pool, task, from );
+      work += effort( pool, from, to, false );
+      from = to;
+    }
+
+    release( pool, task, from );
+    return work;
+  }
+
+  public long assign( Task task, ResourceWork[] works, long start, TimeSpan work )
+  {
+    // allocate resources from start until work done, return epoch-ms when work finishes
+    Pool pool = resolve( task.m_plan, works );
+    char units = work.units();
+    boolean byTime = units == TimeSpan.UNIT_SECONDS || units == TimeSpan.UNIT_MINUTES || units == TimeSpan.UNIT_HOURS;
+
+    // work measured in worked milliseconds for time units, otherwise in work equivalent days
+    double remaining = work.number();
+    if ( units == TimeSpan.UNIT_SECONDS )
+      remaining *= 1000.0;
+    else if ( units == TimeSpan.UNIT_MINUTES )
+      remaining *= 60000.0;
+    else if ( units == TimeSpan.UNIT_HOURS )
+      remaining *= 3600000.0;
+    else if ( units != TimeSpan.UNIT_DAYS )
+    {
+      Calendar cal = task.m_plan.calendar();
+      remaining = cal.workBetween( start, cal.workTimeSpan( start, remaining, units ) );
+    }
+
+    // step through segments where resource rates are constant until work done
+    long from = start;
+    while ( remaining > EPSILON )
+    {
+      long to = advance( pool, from );
+      allocate( pool, task, from );
+
+      // if no resource usable now, skip to next change, or give up if there never is one
+      if ( pool.active == 0 )
+      {
+        if ( to == Long.MAX_VALUE )
+        {
+          Utils.trace( "Insufficient resources to complete " + task );
+          break;
+        }
+        from = to;
+        continue;
+      }
+
+      // if work not finished in this segment, allocate whole segment and move on
+      double effort = to == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : effort( pool, from, to, byTime );
+      if ( effort < remaining )
+      {
+        remaining -= effort;
+        from = to;
+        continue;
+      }
+
+      // work finishes in this segment
+      from = finish( pool, from, to, remaining, byTime );
+      break;
+    }
+
+    release( pool, task, from );
+    return from;
+  }
+
+  /****************************************** available ******************************************/
+  public long available( Task task, ResourceWork[] works, long start )
+  {
+    // return earliest epoch-ms from start when any assigned resource is usable, or start if never
+    Pool pool = resolve( task.m_plan, works );
+    long from = start;
+    while ( from < Long.MAX_VALUE )
+    {
+      long to = advance( pool, from );
+      if ( pool.active > 0 )
+        return from;
+      from = to;
+    }
+
+    return start;
+  }
+
+  /******************************************* resolve *******************************************/
+  private Pool resolve( Plan plan, ResourceWork[] works )
+  {
+    // resolve assignment tags to distinct resources, each used only for its first assignment
+    Resources resources = plan.resources;
+    HashSet<Resource> used = new HashSet<Resource>();
+    ArrayList<Resource> list = new ArrayList<Resource>();
+    ArrayList<Integer> ass = new ArrayList<Integer>();
+    for ( int a = 0; a < m_res.size(); a++ )
+      for ( Resource res : resources.listForTag( m_res.get( a ).tag ) )
+        if ( used.add( res ) )
+        {
+          list.add( res );
+          ass.add( a );
+        }
+
+    Pool pool = new Pool();
+    pool.count = list.size();
+    pool.res = list.toArray( new Resource[pool.count] );
+    pool.work = new ResourceWork[pool.count];
+    pool.ass = new int[pool.count];
+    pool.start = new long[pool.count];
+    pool.end = new long[pool.count];
+    pool.cal = new Calendar[pool.count];
+    pool.usable = new double[pool.count];
+    pool.next = new long[pool.count];
+    pool.queue = new PriorityQueue<Integer>( Math.max( 1, pool.count ),
+        ( r1, r2 ) -> Long.compare( pool.next[r1], pool.next[r2] ) );
+    pool.list = new int[pool.count];
+    pool.pos = new int[pool.count];
+    pool.rate = new double[pool.count];
+    pool.left = new double[m_res.size()];
+    pool.hold = new int[pool.count];
+    pool.held = new double[pool.count];
+    pool.since = new long[pool.count];
+    for ( int r = 0; r < pool.count; r++ )
     {
-      ArrayList<Resource> res = JPlanner.plan.resources.listForTag( ass.tag );
+      Resource res = pool.res[r];
+      pool.work[r] = works[res.index()];
+      pool.ass[r] = ass.get( r );
+      pool.start[r] = res.start().milliseconds();
+      pool.end[r] = res.end().milliseconds();
 
+      // resource without an end date is available for ever
+      if ( pool.end[r] == DateTime.MAX_VALUE.milliseconds() )
+        pool.end[r] = Long.MAX_VALUE;
+      pool.cal[r] = res.calendar() == null ? plan.calendar() : res.calendar();
+
+      // every resource to be evaluated on first advance
+      pool.next[r] = Long.MIN_VALUE;
+      pool.pos[r] = -1;
+      pool.queue.add( r );
     }
 
+    return pool;
+  }
+
+  /******************************************* advance *******************************************/
+  private long advance( Pool pool, long from )
+  {
+    // update usable quantities that may have changed by from and set rates, return when any may next change
+    while ( !pool.queue.isEmpty() && pool.next[pool.queue.peek()] <= from )
+    {
+      int r = pool.queue.poll();
+      double usable = 0.0;
+      if ( from < pool.start[r] )
+        pool.next[r] = pool.start[r];
+      else if ( from < pool.end[r] )
+      {
+        ResourceWork work = pool.work[r];
+        usable = pool.res[r].available() - work.allocated( from );
+        if ( usable <= EPSILON )
+          usable = 0.0;
+        pool.next[r] = Math.min( work.nextChange( from ), pool.end[r] );
+      }
+      else
+        pool.next[r] = Long.MAX_VALUE;
+
+      // keep list of resources with usable quantity up to date
+      pool.usable[r] = usable;
+      if ( usable > 0.0 && pool.pos[r] < 0 )
+      {
+        pool.pos[r] = pool.active;
+        pool.list[pool.active++] = r;
+      }
+      else if ( usable == 0.0 && pool.pos[r] >= 0 )
+      {
+        int last = pool.list[--pool.active];
+        pool.list[pool.pos[r]] = last;
+        pool.pos[last] = pool.pos[r];
+        pool.pos[r] = -1;
+      }
+
+      if ( pool.next[r] < Long.MAX_VALUE )
+        pool.queue.add( r );
+    }
+
+    rates( pool );
+    return pool.queue.isEmpty() ? Long.MAX_VALUE : pool.next[pool.queue.peek()];
+  }
+
+  /******************************************** rates ********************************************/
+  private void rates( Pool pool )
+  {
+    // share each assignment maximum among usable resources, preferring those already allocated
+    for ( int a = 0; a < m_res.size(); a++ )
+      pool.left[a] = m_res.get( a ).max > 0.0 ? m_res.get( a ).max : Double.POSITIVE_INFINITY;
+
+    for ( int i = 0; i < pool.active; i++ )
+      pool.rate[pool.list[i]] = 0.0;
+    for ( int i = 0; i < pool.holding; i++ )
+      if ( pool.pos[pool.hold[i]] >= 0 )
+        share( pool, pool.hold[i] );
+    for ( int i = 0; i < pool.active; i++ )
+      if ( pool.rate[pool.list[i]] == 0.0 )
+        share( pool, pool.list[i] );
+  }
+
+  /******************************************** share ********************************************/
+  private void share( Pool pool, int r )
+  {
+    // give resource as much of its usable quantity as its assignment has left
+    int a = pool.ass[r];
+    double rate = Math.min( pool.usable[r], pool.left[a] );
+    if ( rate > EPSILON )
+    {
+      pool.rate[r] = rate;
+      pool.left[a] -= rate;
+    }
+  }
+
+  /******************************************* effort ********************************************/
+  private double effort( Pool pool, long from, long to, boolean byTime )
+  {
+    // return work done by resources at current rates between from and to
+    double effort = 0.0;
+    for ( int i = 0; i < pool.active; i++ )
+    {
+      int r = pool.list[i];
+      Calendar cal = pool.cal[r];
+      if ( pool.rate[r] > 0.0 )
+        effort += pool.rate[r] * ( byTime ? cal.millisecondsBetween( from, to ) : cal.workBetween( from, to ) );
+    }
+
+    return effort;
+  }
+
+  /******************************************* finish ********************************************/
+  private long finish( Pool pool, long from, long to, double remaining, boolean byTime )
+  {
+    // return epoch-ms when remaining work done at current rates, not later than to
+    Calendar cal = null;
+    boolean shared = true;
+    double total = 0.0;
+    for ( int i = 0; i < pool.active; i++ )
+    {
+      int r = pool.list[i];
+      if ( pool.rate[r] > 0.0 )
+      {
+        shared = shared && ( cal == null || cal == pool.cal[r] );
+        cal = pool.cal[r];
+        total += pool.rate[r];
+      }
+    }
+
+    // if all resources share one calendar, can work directly on that calendar
+    if ( shared )
+    {
+      long finish;
+      if ( byTime )
+        finish = cal.workTimeSpan( from, remaining / total / 1000.0, TimeSpan.UNIT_SECONDS );
+      else
+        finish = cal.workTimeSpan( from, remaining / total, TimeSpan.UNIT_DAYS );
+      return Math.min( finish, to );
+    }
+
+    // otherwise bisect, first finding a finite upper bound if segment is open ended
+    long low = from;
+    long high = to;
+    if ( high == Long.MAX_VALUE )
+    {
+      long step = DateTime.MILLISECONDS_IN_DAY;
+      while ( effort( pool, from, from + step, byTime ) < remaining )
+        step *= 2;
+      high = from + step;
+    }
+
+    while ( high - low > 1 )
+    {
+      long mid = low + ( high - low ) / 2;
+      if ( effort( pool, from, mid, byTime ) < remaining )
+        low = mid;
+      else
+        high = mid;
+    }
+
+    return high;
+  }
+
+  /****************************************** allocate *******************************************/
+  private void allocate( Pool pool, Task task, long from )
+  {
+    // allocate resources at current rates from epoch-ms, completing held allocations whose rate changes
+    int kept = 0;
+    for ( int i = 0; i < pool.holding; i++ )
+    {
+      int r = pool.hold[i];
+      double rate = pool.pos[r] < 0 ? 0.0 : pool.rate[r];
+      if ( rate == pool.held[r] )
+        pool.hold[kept++] = r;
+      else
+      {
+        alloc( pool, task, r, from );
+        pool.held[r] = 0.0;
+      }
+    }
+
+    // hold new allocations for usable resources until their rate changes
+    for ( int i = 0; i < pool.active; i++ )
+    {
+      int r = pool.list[i];
+      if ( pool.held[r] == 0.0 && pool.rate[r] > 0.0 )
+      {
+        pool.held[r] = pool.rate[r];
+        pool.since[r] = from;
+        pool.hold[kept++] = r;
+      }
+    }
+    pool.holding = kept;
+  }
+
+  /******************************************* release *******************************************/
+  private void release( Pool pool, Task task, long to )
+  {
+    // complete all held allocations at epoch-ms
+    for ( int i = 0; i < pool.holding; i++ )
+    {
+      int r = pool.hold[i];
+      alloc( pool, task, r, to );
+      pool.held[r] = 0.0;
+    }
+    pool.holding = 0;
+  }
+
+  /******************************************** alloc ********************************************/
+  private void alloc( Pool pool, Task task, int r, long to )
+  {
+    // record held allocation of resource to task up to epoch-ms
+    if ( pool.since[r] < to )
+      pool.work[r].alloc( new DateTime( pool.since[r] ), new DateTime( to ), pool.held[r], task );
   }
 
 }
@@ -93,6 +93,17 @@ public class TaskType
     }
   }
 
+  /******************************************** index ********************************************/
+  int index()
+  {
+    // return number of this task type, the reverse of toString( num )
+    for ( int num = 0; num < TYPES_COUNT; num++ )
+      if ( m_type == toString( num ) )
+        return num;
+
+    throw new IllegalStateException( "type=" + m_type );
+  }
+
   /******************************************** count *********************************************/
   public static int count()
   {
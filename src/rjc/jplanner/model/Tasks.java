@@ -18,28 +18,39 @@
 
 package rjc.jplanner.model;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 
-import rjc.jplanner.JPlanner;
+import rjc.jplanner.Utils;
 import rjc.jplanner.XmlLabels;
 
 /*************************************************************************************************/
 /**************************** Holds the complete list of plan tasks ******************************/
 /*************************************************************************************************/
 
-public class Tasks extends ArrayList<Task>
+public class Tasks extends IndexedList<Task>
 {
   private static final long serialVersionUID = 1L;
 
+  Plan                         m_plan;         // plan these tasks belong to
+  private TaskGraph            m_graph;        // dependency graph used for scheduling, null if needs rebuilding
+  private HashSet<Task>        m_changed;      // tasks changed since last schedule, null if all need scheduling
+  private HashSet<Task>        m_predsChanged; // tasks with predecessors changed since graph last updated
+  private HashSet<Task>        m_resChanged;   // tasks with resources changed since last schedule
+  private volatile TaskColumns m_columns;      // data of lazily loaded tasks, null once all tasks materialised
+
   public class PredecessorsList extends TreeMap<Integer, String>
   {
     private static final long serialVersionUID = 1L;
@@ -66,13 +77,288 @@ public class Tasks extends ArrayList<Task>
     }
   }
 
+  /**************************************** constructor ******************************************/
+  public Tasks( Plan plan )
+  {
+    // construct empty list of tasks belonging to plan
+    m_plan = plan;
+  }
+
+  /****************************************** getIndex *******************************************/
+  @Override
+  int getIndex( Task task )
+  {
+    return task.m_index;
+  }
+
+  /****************************************** setIndex *******************************************/
+  @Override
+  void setIndex( Task task, int index )
+  {
+    task.m_index = index;
+  }
+
+  /********************************************* get *********************************************/
+  @Override
+  public Task get( int index )
+  {
+    // return task, materialising it first if plan was loaded lazily and task not yet needed, columns
+    // are read before the task as they are only released after every task is materialised
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    if ( task == null && columns != null )
+      task = materialise( columns, index );
+    return task;
+  }
+
+  /***************************************** materialise *****************************************/
+  private synchronized Task materialise( TaskColumns columns, int index )
+  {
+    // create task from columns unless another thread has already, and keep in list from now on
+    Task task = super.get( index );
+    if ( task == null && index < columns.count() )
+    {
+      task = columns.task( index );
+      super.set( index, task );
+    }
+    return task;
+  }
+
+  /*************************************** materialiseAll ****************************************/
+  private void materialiseAll()
+  {
+    // materialise all tasks with their predecessors, after which columns are no longer needed
+    if ( m_columns == null )
+      return;
+
+    for ( int index = 0; index < size(); index++ )
+      get( index ).predecessors();
+    m_columns = null;
+  }
+
+  /**************************************** beforeReorder ****************************************/
+  @Override
+  void beforeReorder()
+  {
+    // columns are by original position so materialise all tasks before any move
+    materialiseAll();
+  }
+
+  /****************************************** iterator *******************************************/
+  @Override
+  public Iterator<Task> iterator()
+  {
+    // if loaded lazily iterate using get() so tasks are materialised as reached
+    if ( m_columns == null )
+      return super.iterator();
+
+    return new Iterator<Task>()
+    {
+      private int m_next; // index of next task
+
+      @Override
+      public boolean hasNext()
+      {
+        return m_next < size();
+      }
+
+      @Override
+      public Task next()
+      {
+        if ( m_next >= size() )
+          throw new NoSuchElementException();
+        return get( m_next++ );
+      }
+    };
+  }
+
+  /******************************************* forEach *******************************************/
+  @Override
+  public void forEach( Consumer<? super Task> action )
+  {
+    // perform action on each task, materialising if loaded lazily
+    for ( int index = 0; index < size(); index++ )
+      action.accept( get( index ) );
+  }
+
+  /******************************************** clear ********************************************/
+  @Override
+  public void clear()
+  {
+    // remove all tasks, including any not yet materialised
+    super.clear();
+    m_columns = null;
+  }
+
+  /******************************************* isNull ********************************************/
+  boolean isNull( int index )
+  {
+    // return true if task is null, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.isNull( index ) : task.isNull();
+  }
+
+  /******************************************* indent ********************************************/
+  private int indent( int index )
+  {
+    // return task indent, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.indent( index ) : task.indent();
+  }
+
+  /*************************************** setSummaryStart ***************************************/
+  private void setSummaryStart( int index, int summary )
+  {
+    // set task summary start, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    if ( task == null )
+      columns.setSummaryStart( index, summary );
+    else
+      task.setSummaryStart( summary );
+  }
+
+  /**************************************** setSummaryEnd ****************************************/
+  private void setSummaryEnd( int index, int summaryEnd )
+  {
+    // set task summary end, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    if ( task == null )
+      columns.setSummaryEnd( index, summaryEnd );
+    else
+      task.setSummaryEnd( summaryEnd );
+  }
+
+  /*************************************** copyToSchedule ****************************************/
+  void copyToSchedule( ScheduleColumns columns, int index )
+  {
+    // copy task scheduling data into columns, without materialising it
+    TaskColumns loaded = m_columns;
+    Task task = super.get( index );
+    if ( task == null )
+      loaded.copyToSchedule( columns, index );
+    else
+    {
+      task.copyToSchedule( columns, index );
+      if ( !task.isNull() && !task.predecessorsRead() )
+        loaded.copyPredecessorsToSchedule( columns, index );
+    }
+  }
+
+  /****************************************** priority *******************************************/
+  int priority( int index )
+  {
+    // return task priority, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.priority( index ) : task.priority();
+  }
+
+  /****************************************** isSummary ******************************************/
+  boolean isSummary( int index )
+  {
+    // return true if task is a summary, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.summaryEnd( index ) > 0 : task.isSummary();
+  }
+
+  /**************************************** summaryStart *****************************************/
+  int summaryStart( int index )
+  {
+    // return index of task's summary, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.summaryStart( index ) : task.summaryStart();
+  }
+
+  /****************************************** resources ******************************************/
+  TaskResources resources( int index )
+  {
+    // return task resource assignments, a temporary copy from columns if not materialised
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.resources( index ) : task.resources();
+  }
+
+  /**************************************** usesResources ****************************************/
+  boolean usesResources( int index )
+  {
+    // return true if task has resources assigned, without materialising it
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.numAssignments( index ) > 0 : !task.resources().isEmpty();
+  }
+
+  /************************************* predecessorIndexes **************************************/
+  int[] predecessorIndexes( int index )
+  {
+    // return indexes of task predecessors, from columns if task has not yet read its own
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    if ( task == null || !task.predecessorsRead() )
+      return columns.predecessorIndexes( index );
+
+    Predecessors preds = task.predecessors();
+    int[] indexes = new int[preds.count()];
+    for ( int p = 0; p < indexes.length; p++ )
+      indexes[p] = preds.get( p ).task.m_index;
+    return indexes;
+  }
+
+  /**************************************** predecessors *****************************************/
+  Predecessors predecessors( int index )
+  {
+    // return predecessors of lazily loaded task, materialising the predecessor tasks
+    TaskColumns columns = m_columns;
+    if ( columns == null )
+      return new Predecessors( m_plan );
+    return columns.predecessors( index );
+  }
+
+  /***************************************** setSchedule *****************************************/
+  void setSchedule( int index, long start, long end, long rollupStart, long rollupEnd, TimeSpan duration,
+      TimeSpan work )
+  {
+    // set schedule from columnar schedule pass, into columns if task not yet materialised so stays lazy
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    if ( task == null )
+      task = setLoadedSchedule( columns, index, start, end, duration, work );
+    if ( task != null )
+      task.setSchedule( start, end, rollupStart, rollupEnd, duration, work );
+  }
+
+  /************************************** setLoadedSchedule **************************************/
+  private synchronized Task setLoadedSchedule( TaskColumns columns, int index, long start, long end,
+      TimeSpan duration, TimeSpan work )
+  {
+    // set schedule in columns unless task since materialised by another thread, returning any such task
+    Task task = super.get( index );
+    if ( task == null )
+      columns.setSchedule( index, start, end, duration, work );
+    return task;
+  }
+
+  /********************************************* peek ********************************************/
+  private Task peek( int index )
+  {
+    // return task if materialised, otherwise temporary copy from columns that is not kept
+    TaskColumns columns = m_columns;
+    Task task = super.get( index );
+    return task == null ? columns.task( index ) : task;
+  }
+
   /****************************************** initialise *****************************************/
   public void initialise()
   {
     // initialise list with default tasks (including special task 0)
     clear();
     for ( int count = 0; count <= 20; count++ )
-      add( new Task() );
+      add( new Task( m_plan ) );
 
     setupTaskZero();
   }
@@ -110,13 +396,13 @@ public class Tasks extends ArrayList<Task>
         switch ( xsr.getLocalName() )
         {
           case XmlLabels.XML_TASK:
-            add( new Task( xsr ) );
+            add( new Task( m_plan, xsr ) );
             break;
           case XmlLabels.XML_PREDECESSORS:
             loadPredecessors( xsr );
             break;
           default:
-            JPlanner.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
+            Utils.trace( "Unhandled start element '" + xsr.getLocalName() + "'" );
             break;
         }
     }
@@ -140,42 +426,211 @@ public class Tasks extends ArrayList<Task>
           preds = xsr.getAttributeValue( i );
           break;
         default:
-          JPlanner.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
+          Utils.trace( "Unhandled attribute '" + xsr.getAttributeLocalName( i ) + "'" );
           break;
       }
 
     // set the task predecessors, remembering array starts from zero but id from one
-    get( task ).setValue( Task.SECTION_PRED, new Predecessors( preds ) );
+    get( task ).setValue( Task.SECTION_PRED, new Predecessors( m_plan, preds ) );
   }
 
   /******************************************* writeXML ******************************************/
   public void writeXML( XMLStreamWriter xsw ) throws XMLStreamException
   {
-    // write tasks data to XML stream
+    // write tasks data to XML stream, without materialising tasks if loaded lazily
     xsw.writeStartElement( XmlLabels.XML_TASK_DATA );
-    for ( Task task : this )
-      task.saveToXML( xsw );
+    for ( int index = 0; index < size(); index++ )
+      peek( index ).saveToXML( xsw );
 
     // write predecessors data to XML stream
-    for ( Task task : this )
-      task.savePredecessorToXML( xsw );
+    for ( int index = 0; index < size(); index++ )
+      if ( super.get( index ) == null )
+        m_columns.savePredecessorToXML( xsw, index );
+      else
+        super.get( index ).savePredecessorToXML( xsw );
 
     xsw.writeEndElement(); // XML_TASK_DATA 
   }
 
-  /****************************************** schedule *******************************************/
-  public void schedule()
+  /***************************************** loadBinary ******************************************/
+  public void loadBinary( PlanBinaryReader in, boolean lazy ) throws IOException
+  {
+    // read binary tasks into columns, if lazy tasks are materialised only when first got
+    clear();
+    m_columns = new TaskColumns( m_plan, in );
+    addAll( Collections.nCopies( m_columns.count(), (Task) null ) );
+    if ( !lazy )
+      materialiseAll();
+
+    // set up task 0 which also updates summary markers
+    setupTaskZero();
+  }
+
+  /***************************************** writeBinary *****************************************/
+  public void writeBinary( PlanBinaryWriter out ) throws IOException
+  {
+    // write task records, then resource assignments and predecessor edges of all tasks, without
+    // materialising tasks if loaded lazily
+    out.startSection( PlanBinaryWriter.SECTION_TASKS, size(), Task.BINARY_BYTES );
+    int assignments = 0;
+    int edges = 0;
+    for ( int index = 0; index < size(); index++ )
+    {
+      Task task = super.get( index );
+      if ( task == null )
+      {
+        m_columns.task( index ).saveToBinary( out );
+        assignments += m_columns.numAssignments( index );
+        edges += m_columns.numPredecessors( index );
+      }
+      else
+      {
+        task.saveToBinary( out );
+        assignments += task.numAssignments();
+        edges += task.numPredecessors();
+      }
+    }
+
+    out.startSection( PlanBinaryWriter.SECTION_ASSIGNS, assignments, PlanBinaryWriter.ASSIGN_BYTES );
+    for ( int index = 0; index < size(); index++ )
+      if ( super.get( index ) == null )
+        m_columns.saveResourcesToBinary( out, index );
+      else
+        super.get( index ).saveResourcesToBinary( out );
+
+    out.startSection( PlanBinaryWriter.SECTION_EDGES, edges, PlanBinaryWriter.EDGE_BYTES );
+    for ( int index = 0; index < size(); index++ )
+      if ( super.get( index ) == null )
+        m_columns.savePredecessorsToBinary( out, index );
+      else
+        super.get( index ).savePredecessorsToBinary( out );
+  }
+
+  /**************************************** scheduleOrder ****************************************/
+  synchronized int[] scheduleOrder()
   {
-    // first construct list of tasks in correct order
-    ArrayList<Task> scheduleList = new ArrayList<Task>();
-    for ( int index = 1; index < size(); index++ )
-      if ( !get( index ).isNull() )
-        scheduleList.add( get( index ) );
-    Collections.sort( scheduleList );
+    // return indexes of all tasks in order to be scheduled
+    return graph().scheduleOrder();
+  }
 
-    // schedule tasks in this order
-    for ( int index = 0; index < scheduleList.size(); index++ )
-      scheduleList.get( index ).schedule();
+  /***************************************** components ******************************************/
+  synchronized ArrayList<int[]> components()
+  {
+    // return indexes of tasks split into groups that can be scheduled independently, each in order
+    return graph().components();
+  }
+
+  /***************************************** downstream ******************************************/
+  synchronized int[] downstream()
+  {
+    // return indexes of tasks changed since last schedule and their dependents, in order to be scheduled
+    return graph().downstream( m_changed, m_resChanged );
+  }
+
+  /************************************** clearAllocations ***************************************/
+  void clearAllocations( ResourceWork[] works, int index )
+  {
+    // remove task's allocations from resource works, tasks not materialised have none
+    Task task = super.get( index );
+    if ( task != null )
+      for ( ResourceWork work : works )
+        work.clear( task );
+  }
+
+  /****************************************** scheduled ******************************************/
+  void scheduled( boolean full )
+  {
+    // schedule now in tasks, so record changes from here on to limit next re-schedule to those affected
+    if ( full )
+    {
+      m_changed = new HashSet<Task>();
+      m_resChanged = new HashSet<Task>();
+    }
+    else if ( m_changed != null )
+    {
+      m_changed.clear();
+      m_resChanged.clear();
+    }
+  }
+
+  /**************************************** canReschedule ****************************************/
+  public boolean canReschedule()
+  {
+    // return true if changes since last schedule have been recorded to allow partial re-schedule
+    return m_changed != null;
+  }
+
+  /**************************************** rescheduleAll ****************************************/
+  public void rescheduleAll()
+  {
+    // next re-schedule must schedule all tasks
+    m_changed = null;
+  }
+
+  /******************************************* changed *******************************************/
+  public void changed( Task task, int section, Object newValue )
+  {
+    // record task change so next re-schedule is limited to this task and its dependents
+    if ( section == Task.SECTION_TITLE )
+    {
+      // task becoming null or not-null changes graph structure
+      if ( task.isNull() || newValue == null )
+      {
+        m_graph = null;
+        m_changed = null;
+      }
+      return;
+    }
+
+    if ( section == Task.SECTION_COMMENT || section == Task.SECTION_COST )
+      return;
+
+    // priority changes scheduling order of all tasks, predecessors change graph edges
+    if ( section == Task.SECTION_PRIORITY )
+    {
+      m_graph = null;
+      m_changed = null;
+    }
+    if ( section == Task.SECTION_PRED && m_graph != null )
+      m_predsChanged.add( task );
+
+    // task may have used resources before this change even if not after, so remember it
+    if ( section == Task.SECTION_RES && m_changed != null )
+      m_resChanged.add( task );
+
+    if ( m_changed != null )
+      m_changed.add( task );
+  }
+
+  /******************************************** graph ********************************************/
+  private TaskGraph graph()
+  {
+    // return dependency graph, building if needed or updating for any changed predecessors
+    if ( m_graph == null )
+    {
+      m_graph = new TaskGraph( this );
+      m_predsChanged = new HashSet<Task>();
+    }
+
+    for ( Task task : m_predsChanged )
+      m_graph.predecessorsChanged( task );
+    m_predsChanged.clear();
+
+    return m_graph;
+  }
+
+  /**************************************** hasPredecessor ***************************************/
+  public synchronized boolean hasPredecessor( Task task, Task other )
+  {
+    // return true if task depends on other, directly or indirectly
+    return graph().hasPredecessor( task, other );
+  }
+
+  /***************************************** createsCycle ****************************************/
+  public synchronized boolean createsCycle( Task task, Task pred )
+  {
+    // return true if making pred a predecessor of task would give a circular dependency
+    return graph().createsCycle( task, pred );
   }
 
   /****************************************** canIndent ******************************************/
@@ -284,45 +739,45 @@ public class Tasks extends ArrayList<Task>
   /************************************ updateSummaryMarkers *************************************/
   public void updateSummaryMarkers()
   {
-    // for each task ensure summaryEnd and SummaryStart set correctly
+    // summary structure affects dependency graph & roll-ups, so all tasks will need scheduling
+    m_graph = null;
+    m_changed = null;
+
+    // for each task ensure summaryEnd and SummaryStart set correctly in single pass, using stack
+    // of possible summaries where each has smaller indent than the one above it in the stack, tasks
+    // not yet materialised from lazy load have their markers kept in the columns instead
+    int[] stack = new int[size()];
+    int top = 0;
+    int last = -1;
     for ( int row = 0; row < size(); row++ )
     {
-      Task task = get( row );
-      if ( task.isNull() )
+      Task task = super.get( row );
+      if ( task != null )
+        task.clearRollup();
+      if ( isNull( row ) )
         continue;
 
-      int indent = task.indent();
-
-      // check if summary, and if summary set summary end
-      Task other;
-      int end = -1;
-      int check = row;
-      while ( ++check < size() )
+      // tasks on stack with indent not less than this task have found their summary end
+      int indent = indent( row );
+      while ( top > 0 && indent( stack[top - 1] ) >= indent )
       {
-        other = get( check );
-        if ( other.isNull() )
-          continue;
-
-        if ( other.indent() <= indent )
-          break;
-        else
-          end = check;
+        int summary = stack[--top];
+        setSummaryEnd( summary, last > summary ? last : -1 );
       }
-      task.setSummaryEnd( end );
 
-      // look for summary of this task
-      for ( int start = row - 1; start >= 0; start-- )
-      {
-        other = get( start );
-        if ( other.isNull() )
-          continue;
+      // task on top of stack (if any) is the summary of this task
+      if ( top > 0 )
+        setSummaryStart( row, stack[top - 1] );
 
-        if ( other.indent() < indent )
-        {
-          task.setSummaryStart( start );
-          break;
-        }
-      }
+      stack[top++] = row;
+      last = row;
+    }
+
+    // remaining tasks on stack have summary end at last not-null task
+    while ( top > 0 )
+    {
+      int summary = stack[--top];
+      setSummaryEnd( summary, last > summary ? last : -1 );
     }
   }
 
@@ -80,19 +80,31 @@ public class Time
   /***************************************** fromString ******************************************/
   public static Time fromString( String str )
   {
-    // if simple integer, treats as hours or hours+minutes depending on length
-    try
-    {
-      int num = Integer.valueOf( str );
-      if ( num < 100 )
-        return new Time( num, 0, 0, 0 );
-      else
-        return new Time( num / 100, num % 100, 0, 0 );
-    }
-    catch ( Exception exception )
+    // fast path for fixed width hours:mins:secs.ms as written to XML
+    if ( str.length() == 12 && str.charAt( 2 ) == ':' && str.charAt( 5 ) == ':' && str.charAt( 8 ) == '.' )
     {
+      int hours = Date.digits( str, 0, 2 );
+      int mins = Date.digits( str, 3, 5 );
+      int secs = Date.digits( str, 6, 8 );
+      int ms = Date.digits( str, 9, 12 );
+      if ( hours >= 0 && mins >= 0 && secs >= 0 && ms >= 0 )
+        return new Time( hours, mins, secs, ms );
     }
 
+    // if simple integer, treats as hours or hours+minutes depending on length
+    if ( str.indexOf( ':' ) < 0 )
+      try
+      {
+        int num = Integer.valueOf( str );
+        if ( num < 100 )
+          return new Time( num, 0, 0, 0 );
+        else
+          return new Time( num / 100, num % 100, 0, 0 );
+      }
+      catch ( Exception exception )
+      {
+      }
+
     // split the time hours:mins:secs by colon separator
     String[] parts = str.split( ":" );
     if ( parts.length < 2 )
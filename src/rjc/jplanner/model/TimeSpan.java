@@ -41,6 +41,10 @@ public class TimeSpan
   public static final String NUMPOINT     = "01234567890.";
   public static final String UNITS        = "SMHdwmy";
 
+  // exact powers of ten for parsing numbers with up to fifteen significant digits
+  private static final double[] POWERS    = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+      1e13, 1e14, 1e15 };
+
   /**************************************** constructor ******************************************/
   public TimeSpan()
   {
@@ -60,7 +64,7 @@ public class TimeSpan
       return;
 
     // remove any spaces and determine last character
-    str = str.replaceAll( "\\s+", "" );
+    str = removeSpaces( str );
     char lastchr = str.charAt( str.length() - 1 );
 
     // if last char is not a number digit, check if it is a valid units 
@@ -77,7 +81,7 @@ public class TimeSpan
       }
     }
 
-    m_num = Double.parseDouble( str );
+    m_num = parseNumber( str );
   }
 
   /**************************************** constructor ******************************************/
@@ -91,6 +95,79 @@ public class TimeSpan
       m_num = Math.rint( num * 100.0 ) / 100.0;
   }
 
+  /******************************************** exact ********************************************/
+  static TimeSpan exact( double num, char units )
+  {
+    // construct time-span with number exactly as given, without rounding
+    TimeSpan ts = new TimeSpan();
+    ts.m_num = num;
+    ts.m_units = units;
+    return ts;
+  }
+
+  /**************************************** removeSpaces *****************************************/
+  private static String removeSpaces( String str )
+  {
+    // return string with any white-space removed, only copying if there is some
+    for ( int pos = 0; pos < str.length(); pos++ )
+      if ( isSpace( str.charAt( pos ) ) )
+      {
+        StringBuilder removed = new StringBuilder( str.length() );
+        for ( int i = 0; i < str.length(); i++ )
+          if ( !isSpace( str.charAt( i ) ) )
+            removed.append( str.charAt( i ) );
+        return removed.toString();
+      }
+
+    return str;
+  }
+
+  /******************************************* isSpace *******************************************/
+  private static boolean isSpace( char ch )
+  {
+    // same characters as regular expression \s
+    return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+  }
+
+  /***************************************** parseNumber *****************************************/
+  private static double parseNumber( String str )
+  {
+    // parse plain decimal number directly, giving identical result to Double.parseDouble which is used otherwise
+    int pos = 0;
+    boolean negative = false;
+    if ( str.length() > 0 && ( str.charAt( 0 ) == '-' || str.charAt( 0 ) == '+' ) )
+    {
+      negative = str.charAt( 0 ) == '-';
+      pos++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int decimals = -1;
+    for ( ; pos < str.length(); pos++ )
+    {
+      char ch = str.charAt( pos );
+      if ( ch == '.' && decimals < 0 )
+        decimals = 0;
+      else if ( ch >= '0' && ch <= '9' && digits < POWERS.length - 1 )
+      {
+        mantissa = mantissa * 10 + ch - '0';
+        digits++;
+        if ( decimals >= 0 )
+          decimals++;
+      }
+      else
+        return Double.parseDouble( str );
+    }
+
+    if ( digits == 0 )
+      return Double.parseDouble( str );
+
+    // mantissa and power are exact so single division is correctly rounded like Double.parseDouble
+    double num = decimals > 0 ? mantissa / POWERS[decimals] : mantissa;
+    return negative ? -num : num;
+  }
+
   /***************************************** toString ********************************************/
   @Override
   public String toString()